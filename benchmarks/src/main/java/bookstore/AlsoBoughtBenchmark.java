@@ -0,0 +1,132 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cost of keeping "customers also bought" current. Orders pick one to six
+ * books, mostly from one small series of related titles, with a few series
+ * far more popular than the rest.
+ *
+ * First checks, on 200,000 orders without pruning, that every book's list
+ * holds the books most often bought with it, against pair counts kept in a
+ * plain HashMap. Then records N orders (2,000,000 by default) over 100,000
+ * books with the pair cap at 200,000, so pruning runs, and reports the cost
+ * per order, per pair and per lookup. Checks that the pair count stayed
+ * within the cap; exits with 1 if it didn't or a list was wrong.
+ *
+ * Run: java -Xmx2g -cp benchmarks/target/benchmarks.jar bookstore.AlsoBoughtBenchmark [orders]
+ */
+public class AlsoBoughtBenchmark {
+
+    private static final int SERIES = 5;
+    private static final int LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        boolean failed = !checkLists(5_000, 200_000);
+
+        int books = 100_000;
+        int maxPairs = 200_000;
+        AlsoBought alsoBought = new AlsoBought(maxPairs);
+        Random rnd = new Random(5);
+        long[] nanos = new long[n];
+        long pairs = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            Order order = order(rnd, books, i);
+            int m = order.lineCount();
+            pairs += (long) m * (m - 1) / 2;
+            long start = System.nanoTime();
+            alsoBought.record(order);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long total = System.nanoTime() - t0;
+        Arrays.sort(nanos);
+        long recorded = 0;
+        for (long t : nanos) recorded += t;
+        System.out.printf("%,d orders over %,d books, %,d pairs counted, %,d pairs kept (cap %,d)%n", n, books, pairs,
+                alsoBought.pairCount(), maxPairs);
+        System.out.printf("Update per order: mean %.2f us, p50 %.2f us, p99 %.2f us, p99.9 %.2f us, max %.2f ms%n",
+                recorded / 1e3 / n, nanos[n / 2] / 1e3, nanos[(int) (n * 0.99)] / 1e3, nanos[(int) (n * 0.999)] / 1e3,
+                nanos[n - 1] / 1e6);
+        System.out.printf("Update per pair: %.0f ns; %,.0f orders/s including generating them%n", (double) recorded / pairs,
+                n * 1e9 / total);
+
+        t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < LOOKUPS; i++) sink += alsoBought.get(1 + rnd.nextInt(books)).length;
+        System.out.printf("Lookup: %.0f ns (%.1f books listed on average)%n", (System.nanoTime() - t0) / (double) LOOKUPS,
+                sink / (double) LOOKUPS);
+
+        if (alsoBought.pairCount() > maxPairs) {
+            System.err.println("FAIL: " + alsoBought.pairCount() + " pairs kept");
+            failed = true;
+        }
+        if (failed) System.exit(1);
+        System.out.println("OK");
+    }
+
+    // Every book's list against the top counts from a plain map of every pair
+    private static boolean checkLists(int books, int orders) {
+        AlsoBought alsoBought = new AlsoBought(Integer.MAX_VALUE);
+        Map<Long, Integer> counts = new HashMap<>();
+        Random rnd = new Random(3);
+        for (int i = 0; i < orders; i++) {
+            Order order = order(rnd, books, i);
+            alsoBought.record(order);
+            for (int a = 0; a < order.lineCount(); a++) {
+                for (int b = 0; b < order.lineCount(); b++) {
+                    if (a != b) counts.merge((long) order.bookId(a) << 32 | order.bookId(b), 1, Integer::sum);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> byBook = new HashMap<>();
+        for (Map.Entry<Long, Integer> e : counts.entrySet()) {
+            byBook.computeIfAbsent((int) (e.getKey() >>> 32), k -> new ArrayList<>()).add(e.getValue());
+        }
+        for (int book = 1; book <= books; book++) {
+            List<Integer> expected = byBook.getOrDefault(book, new ArrayList<>());
+            expected.sort((x, y) -> Integer.compare(y, x));
+            int[] listed = alsoBought.get(book);
+            boolean ok = listed.length == Math.min(AlsoBought.TOP, expected.size());
+            for (int i = 0; ok && i < listed.length; i++) {
+                int count = counts.getOrDefault((long) book << 32 | listed[i], 0);
+                ok = count == expected.get(i) && count == alsoBought.count(book, listed[i]);
+            }
+            if (!ok) {
+                System.err.println("FAIL: the list for book " + book + " is not its top " + AlsoBought.TOP);
+                return false;
+            }
+        }
+        System.out.printf("Lists for %,d books match the pair counts of %,d orders%n", books, orders);
+        return true;
+    }
+
+    private static Order order(Random rnd, int books, int i) {
+        int series = books / SERIES;
+        // Popularity falls off steeply: the low-numbered series sell most
+        int first = 1 + (int) (Math.pow(rnd.nextDouble(), 3) * series) * SERIES;
+        int m = 1 + Math.min(5, (int) (-Math.log(1 - rnd.nextDouble()) * 1.5));
+        int[] lines = new int[m * 3];
+        for (int k = 0; k < m; k++) {
+            int id;
+            do {
+                id = rnd.nextInt(4) == 0 ? 1 + rnd.nextInt(books) : first + rnd.nextInt(SERIES);
+            } while (contains(lines, k, id));
+            lines[k * 3] = id;
+            lines[k * 3 + 1] = 1;
+            lines[k * 3 + 2] = 50_000;
+        }
+        return new Order("user" + (i % 1000), i, lines);
+    }
+
+    private static boolean contains(int[] lines, int count, int id) {
+        for (int j = 0; j < count; j++) if (lines[j * 3] == id) return true;
+        return false;
+    }
+}
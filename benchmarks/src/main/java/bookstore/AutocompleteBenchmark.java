@@ -0,0 +1,66 @@
+package bookstore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures suggestion lookup latency (including the hand-off to the
+ * autocomplete thread) for one- to four-letter prefixes on a catalog of
+ * 1,000,000 books, and the cost of recording orders.
+ *
+ * Run: java -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.AutocompleteBenchmark [books]
+ */
+public class AutocompleteBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random rnd = new Random(7);
+        Catalog catalog = new Catalog();
+        for (int i = 1; i <= n; i++) {
+            catalog.add(Book.of(i, word(rnd) + " " + word(rnd) + " " + word(rnd), word(rnd) + " " + word(rnd),
+                    100 + rnd.nextInt(900), 10));
+        }
+
+        long t0 = System.nanoTime();
+        Autocomplete autocomplete = new Autocomplete(catalog, new OrderStore());
+        autocomplete.lookup("a", 1).get();
+        System.out.printf("Built suggestions for %,d books in %d ms%n", n, (System.nanoTime() - t0) / 1_000_000);
+
+        int orders = 100_000;
+        t0 = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            int[] lines = new int[3 * 3];
+            for (int k = 0; k < 3; k++) {
+                Book b = catalog.get(1 + (int) Math.abs(rnd.nextGaussian() * n / 50) % n);
+                lines[k * 3] = b.getId();
+                lines[k * 3 + 1] = 1;
+                lines[k * 3 + 2] = Order.toPaise(b.getPrice());
+            }
+            autocomplete.recordOrder(new Order("user", i, lines));
+        }
+        autocomplete.lookup("a", 1).get();
+        System.out.printf("Recorded %,d orders: %.2f us/order%n", orders, (System.nanoTime() - t0) / 1e3 / orders);
+
+        for (int len = 1; len <= 4; len++) {
+            int lookups = 20_000;
+            long[] latencies = new long[lookups];
+            for (int i = 0; i < lookups; i++) {
+                String prefix = catalog.get(1 + rnd.nextInt(n)).getTitle().substring(0, len);
+                long s = System.nanoTime();
+                autocomplete.lookup(prefix, 8).get();
+                latencies[i] = System.nanoTime() - s;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("Prefix length %d: p50 %.1f us, p99 %.1f us, max %.1f us%n", len,
+                    latencies[lookups / 2] / 1e3, latencies[lookups * 99 / 100] / 1e3, latencies[lookups - 1] / 1e3);
+        }
+        autocomplete.shutdown();
+    }
+
+    private static String word(Random rnd) {
+        char[] c = new char[3 + rnd.nextInt(6)];
+        for (int i = 0; i < c.length; i++) c[i] = (char) ('a' + rnd.nextInt(26));
+        c[0] = Character.toUpperCase(c[0]);
+        return new String(c);
+    }
+}
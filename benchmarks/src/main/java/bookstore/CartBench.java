@@ -0,0 +1,91 @@
+package bookstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart and checkout: adding a book to a cart and removing it again (one
+ * stock hold taken and released), totalling an order of several lines, and
+ * placing a two-book order end to end through the checkout pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-Xms1g", "-Xmx2g"})
+public class CartBench {
+
+    private static final int BOOKS = 10_000;
+
+    /** The books of an order, for totalling. */
+    @State(Scope.Benchmark)
+    public static class Lines {
+        @Param({"1", "10", "100"})
+        int orderLines;
+
+        List<Book> items = new ArrayList<>();
+
+        @Setup
+        public void setUp() {
+            for (int i = 1; i <= orderLines; i++) items.add(Book.of(i, "Book " + i, "Author", 100 + i, 1));
+        }
+    }
+
+    private BookStore store;
+    private Cart cart;
+    private User user;
+    private int next;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        store = StoreFixture.store(BOOKS);
+        cart = new Cart();
+        user = new User("shopper", "unused", false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    // Each hold's expiry stays queued until the hold wheel's next tick, so a burst of them outlives a
+    // young collection every few seconds; iterations long enough to span several smooth that out
+    @Benchmark
+    @Warmup(iterations = 3, time = 5)
+    @Measurement(iterations = 6, time = 5)
+    public Book addAndRemove() {
+        int id = 1 + (next++ % BOOKS);
+        Book added = store.addToCart(cart, id);
+        store.removeFromCart(cart, id);
+        return added;
+    }
+
+    @Benchmark
+    public double orderTotal(Lines lines) {
+        return new Order(user.username, lines.items).total();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Order placeOrder() {
+        int id = 1 + (next++ % (BOOKS - 1));
+        store.addToCart(cart, id);
+        store.addToCart(cart, id + 1);
+        return store.placeOrder(user, cart);
+    }
+}
@@ -0,0 +1,58 @@
+package bookstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Book lookup by id and catalog search (Home search box) at several catalog sizes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-Xms1g", "-Xmx2g"})
+public class CatalogBench {
+
+    @Param({"1000", "100000", "1000000"})
+    int books;
+
+    private BookStore store;
+    private int[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        store = StoreFixture.store(books);
+        Random rnd = new Random(1);
+        ids = new int[4096];
+        for (int i = 0; i < ids.length; i++) ids[i] = 1 + rnd.nextInt(books);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    @Benchmark
+    public Book findBookById() {
+        return store.findBook(ids[next++ & (ids.length - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] search() {
+        return store.search(StoreFixture.QUERIES[next++ % StoreFixture.QUERIES.length], 1000);
+    }
+}
@@ -0,0 +1,80 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures Catalog lookup and mutation cost from 10 to 1,000,000 books,
+ * next to the linear scan that findBookById used to do.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.CatalogBenchmark
+ */
+public class CatalogBenchmark {
+
+    private static final int[] SIZES = {10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    private static final int OPS = 2_000_000;
+    private static final int SCAN_OPS = 20_000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %14s %14s %14s %14s%n", "books", "get ns/op", "miss ns/op", "del+add ns/op", "scan ns/op");
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            for (int n : SIZES) {
+                run(n, warmup);
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static void run(int n, boolean warmup) {
+        Catalog catalog = new Catalog();
+        List<Book> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Book b = Book.of(i * 7 + 1, "Title " + i, "Author " + (i % 1000), 100 + i % 900, i % 50);
+            catalog.add(b);
+            list.add(b);
+        }
+        int[] ids = new int[4096];
+        Random rnd = new Random(n);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rnd.nextInt(n) * 7 + 1;
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            sink += catalog.get(ids[i & 4095]).getStock();
+        }
+        double get = (System.nanoTime() - t0) / (double) OPS;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            if (catalog.contains(ids[i & 4095] + 3)) sink++;
+        }
+        double miss = (System.nanoTime() - t0) / (double) OPS;
+
+        int mutations = OPS / 4;
+        t0 = System.nanoTime();
+        for (int i = 0; i < mutations; i++) {
+            Book b = catalog.remove(ids[i & 4095]);
+            catalog.add(b);
+        }
+        double mutate = (System.nanoTime() - t0) / (double) mutations;
+
+        int scans = Math.max(20, SCAN_OPS / Math.max(1, n / 1_000));
+        t0 = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            int id = ids[i & 4095];
+            for (Book b : list) {
+                if (b.getId() == id) { sink += b.getStock(); break; }
+            }
+        }
+        double scan = (System.nanoTime() - t0) / (double) scans;
+
+        if (!warmup) {
+            System.out.printf("%10d %14.1f %14.1f %14.1f %14.1f%n", n, get, miss, mutate, scan);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package bookstore;
+
+/**
+ * Heap footprint of the catalog itself (books, rows and id index, without
+ * the search indexes): one object per book against the columnar layout.
+ * Fills each layout with the same N books, where every author has about
+ * twenty titles, and measures the retained heap after a full GC. Runs at
+ * 1,000,000 and 10,000,000 books by default and fails if the columnar
+ * catalog isn't at least 30% smaller. Also checks that both layouts
+ * answer the same for a sample of books, including a reservation and a
+ * delete.
+ *
+ * Run: java -Xmx6g -cp benchmarks/target/benchmarks.jar bookstore.CatalogFootprintBenchmark [books...]
+ */
+public class CatalogFootprintBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[] {1_000_000, 10_000_000};
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        boolean failed = false;
+        for (int n : sizes) {
+            long objectBytes = measure(n, false);
+            long columnarBytes = measure(n, true);
+            double saved = 1 - (double) columnarBytes / objectBytes;
+            System.out.printf("%,d books: object %d bytes/book, columnar %d bytes/book (%.0f%% less)%n",
+                    n, objectBytes / n, columnarBytes / n, saved * 100);
+            if (saved < 0.30) failed = true;
+        }
+        if (failed) {
+            System.err.println("FAIL: expected the columnar catalog to be at least 30% smaller");
+            System.exit(1);
+        }
+    }
+
+    private static long measure(int n, boolean columnar) {
+        long base = usedHeap();
+        Catalog catalog = new Catalog(columnar);
+        catalog.ensureCapacity(n);
+        for (int i = 1; i <= n; i++) catalog.add(book(i, n));
+        long bytes = usedHeap() - base;
+        check(catalog, n);
+        return bytes;
+    }
+
+    // Distinct strings per book, as a parser would produce them
+    private static Book book(int i, int n) {
+        return Book.of(i, "Title " + Integer.toString(i, 36) + " volume " + (i % 97),
+                "Author " + (i % Math.max(1, n / 20)), 100 + i % 900, 1 + i % 50);
+    }
+
+    private static void check(Catalog catalog, int n) {
+        for (int i = 1; i <= n; i += n / 1000) {
+            Book expected = book(i, n);
+            Book b = catalog.get(i);
+            if (b == null || b.getId() != i || !b.getTitle().equals(expected.getTitle())
+                    || !b.getAuthor().equals(expected.getAuthor()) || b.getPrice() != expected.getPrice()
+                    || b.getStock() != expected.getStock()) {
+                fail("book " + i + " differs in the " + (catalog.isColumnar() ? "columnar" : "object") + " catalog");
+            }
+        }
+        Book first = catalog.get(1);
+        if (!first.tryReserve(1) || first.getStock() != book(1, n).getStock() - 1 || first.getReserved() != 1) {
+            fail("reservation");
+        }
+        first.update("Renamed", first.getAuthor(), first.getPrice());
+        if (catalog.remove(1) != first || catalog.get(1) != null || first.isListed()) fail("delete");
+        first.release(1);
+        if (!first.getTitle().equals("Renamed") || first.getReserved() != 0) fail("removed book still usable");
+    }
+
+    private static void fail(String what) {
+        System.err.println("FAIL: " + what);
+        System.exit(1);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
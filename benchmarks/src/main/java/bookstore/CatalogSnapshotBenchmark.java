@@ -0,0 +1,169 @@
+package bookstore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Catalog reads while an admin keeps writing. Reader threads look books up
+ * by id and fetch pages of the table, first on their own, then while a
+ * writer updates, adds and deletes books at a steady rate, and finally the
+ * way readers worked before catalog snapshots: under the catalog lock.
+ *
+ * Checks that, with snapshots, no reader ever blocked on a lock, that read
+ * throughput per reader CPU second stayed within 20% of the read-only run,
+ * and that no reader saw half of an update (each update sets a title that
+ * names its own price).
+ *
+ * Run: java -Xmx2g -cp benchmarks/target/benchmarks.jar bookstore.CatalogSnapshotBenchmark [books] [readers] [writes/s]
+ */
+public class CatalogSnapshotBenchmark {
+
+    private static final long PHASE_NANOS = 5_000_000_000L;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int writeRate = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        BookStore store = new BookStore(60_000);
+        store.catalog().ensureCapacity(n + 1000);
+        for (int i = 1; i <= n; i++) store.addBook(i, title(i, 100), "Author " + (i % 5000), 100, 10);
+        store.searchIndex().awaitReady();
+        System.out.printf("%,d books, %d readers, admin writes at %,d/s%n", n, readers, writeRate);
+
+        Phase alone = run(store, n, readers, 0, false);
+        alone.print("reads only");
+        Phase mixed = run(store, n, readers, writeRate, false);
+        mixed.print("reads during writes");
+        Phase locked = run(store, n, readers, writeRate, true);
+        locked.print("reads under the lock, during writes");
+        store.shutdown();
+
+        boolean failed = false;
+        if (mixed.blocked > 0) {
+            System.err.println("FAIL: readers blocked " + mixed.blocked + " times on a lock");
+            failed = true;
+        }
+        if (mixed.perCpuSecond() < alone.perCpuSecond() * 0.8) {
+            System.err.println("FAIL: reads per CPU second dropped by more than 20% during writes");
+            failed = true;
+        }
+        if (mixed.torn + locked.torn > 0) {
+            System.err.println("FAIL: " + (mixed.torn + locked.torn) + " reads saw a half-applied update");
+            failed = true;
+        }
+        if (failed) System.exit(1);
+        System.out.println("OK");
+    }
+
+    private static final class Phase {
+        long reads, writes, torn, blocked, readerCpuNanos, nanos;
+
+        double perCpuSecond() { return reads * 1e9 / Math.max(1, readerCpuNanos); }
+
+        void print(String what) {
+            System.out.printf("%-36s %,12.0f reads/s %,12.0f reads/CPU-s  %,8d writes  %,8d times blocked%n", what,
+                    reads * 1e9 / nanos, perCpuSecond(), writes, blocked);
+        }
+    }
+
+    private static Phase run(BookStore store, int n, int readerCount, int writeRate, boolean lockedReads)
+            throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong torn = new AtomicLong();
+        Catalog catalog = store.catalog();
+        Thread[] readers = new Thread[readerCount];
+        for (int r = 0; r < readerCount; r++) {
+            readers[r] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long count = 0;
+                while (!stop.get()) {
+                    if ((count & 15) == 15) {
+                        List<Book> page;
+                        if (lockedReads) {
+                            synchronized (catalog) {
+                                page = store.books(rnd.nextInt(n - 50), 50);
+                            }
+                        } else {
+                            page = store.books(rnd.nextInt(n - 50), 50);
+                        }
+                        for (Book b : page) if (b == null) torn.incrementAndGet();
+                    } else {
+                        int id = 1 + rnd.nextInt(n);
+                        Book.Values v;
+                        if (lockedReads) {
+                            synchronized (catalog) {
+                                Book b = catalog.get(id);
+                                v = b == null ? null : b.values();
+                            }
+                        } else {
+                            Book b = store.findBook(id);
+                            v = b == null ? null : b.values();
+                        }
+                        if (v != null && !v.title.endsWith(" at " + (int) v.price)) torn.incrementAndGet();
+                    }
+                    count++;
+                }
+                reads.addAndGet(count);
+            }, "reader-" + r);
+        }
+
+        AtomicLong writes = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long interval = writeRate == 0 ? 0 : 1_000_000_000L / writeRate;
+            long next = System.nanoTime();
+            int extra = n + 1;
+            while (writeRate > 0 && !stop.get()) {
+                long count = writes.incrementAndGet();
+                if (count % 10 == 0) {
+                    store.addBook(extra, title(extra, 100), "Author", 100, 1);
+                    store.deleteBook(extra++);
+                } else {
+                    int id = 1 + rnd.nextInt(n);
+                    int price = 100 + rnd.nextInt(900);
+                    store.updateBook(id, title(id, price), "Author " + (id % 5000), price, 10);
+                }
+                next += interval;
+                long wait = next - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+        }, "admin-writer");
+
+        long[] blockedBefore = new long[readerCount];
+        long start = System.nanoTime();
+        for (Thread t : readers) t.start();
+        writer.start();
+        for (int r = 0; r < readerCount; r++) blockedBefore[r] = blockedCount(readers[r]);
+        Thread.sleep(PHASE_NANOS / 1_000_000);
+
+        Phase phase = new Phase();
+        for (int r = 0; r < readerCount; r++) {
+            phase.blocked += blockedCount(readers[r]) - blockedBefore[r];
+            phase.readerCpuNanos += THREADS.getThreadCpuTime(readers[r].getId());
+        }
+        stop.set(true);
+        for (Thread t : readers) t.join();
+        writer.join();
+        phase.nanos = System.nanoTime() - start;
+        phase.reads = reads.get();
+        phase.writes = writes.get();
+        phase.torn = torn.get();
+        return phase;
+    }
+
+    private static long blockedCount(Thread t) {
+        return THREADS.getThreadInfo(t.getId()).getBlockedCount();
+    }
+
+    private static String title(int id, int price) {
+        return "Book " + id + " at " + price;
+    }
+}
@@ -0,0 +1,74 @@
+package bookstore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checkout throughput with group commit. A store persisted in a scratch
+ * data directory takes orders of two books each from a number of concurrent
+ * shoppers, each waiting for its order to be durable before placing the
+ * next. Prints orders/sec and orders per fsync for every combination of
+ * checkout batch limit and concurrency; a batch limit of 1 is one fsync per
+ * order.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.CheckoutBenchmark [seconds per run]
+ */
+public class CheckoutBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final int[] BATCH_LIMITS = {1, 16, 256};
+    private static final int[] SHOPPERS = {1, 8, 64, 256};
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-checkout-" + System.nanoTime());
+        BookStore store = new BookStore(60_000, dir);
+        for (int i = 1; i <= BOOKS; i++) {
+            store.addBook(i, "Book " + i, "Author " + (i % 100), 100 + i % 900, 100_000_000);
+        }
+        store.register("shopper", "secret");
+        User user = store.login("shopper", "secret");
+
+        System.out.printf("%-8s %-9s %12s %14s%n", "batch", "shoppers", "orders/sec", "orders/fsync");
+        for (int batch : BATCH_LIMITS) {
+            store.checkoutPipeline().setMaxBatch(batch);
+            for (int shoppers : SHOPPERS) {
+                run(store, user, 0.5, shoppers); // warm-up
+                long syncsBefore = store.checkoutPipeline().batches();
+                long[] result = run(store, user, seconds, shoppers);
+                long syncs = store.checkoutPipeline().batches() - syncsBefore;
+                System.out.printf("%-8d %-9d %,12.0f %14.1f%n", batch, shoppers, result[0] / seconds,
+                        (double) result[0] / Math.max(1, syncs));
+            }
+        }
+        store.shutdown();
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+    }
+
+    private static long[] run(BookStore store, User user, double seconds, int shoppers) throws InterruptedException {
+        LongAdder orders = new LongAdder();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < shoppers; t++) {
+            Thread th = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Cart cart = new Cart();
+                    int first = 1 + rnd.nextInt(BOOKS);
+                    store.addToCart(cart, first);
+                    store.addToCart(cart, 1 + (first + rnd.nextInt(BOOKS - 1)) % BOOKS);
+                    store.submitOrder(user, cart).join();
+                    orders.increment();
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        for (Thread th : threads) th.join();
+        return new long[] {orders.sum()};
+    }
+}
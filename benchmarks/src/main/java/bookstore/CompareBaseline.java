@@ -0,0 +1,86 @@
+package bookstore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a JMH run (-rf json) with the checked-in baseline and flags every
+ * benchmark that got slower by more than the threshold. All scores are
+ * average times, so higher is worse. Exits with status 1 if anything
+ * regressed. Also reads ShopperLoadBenchmark summaries, which list their
+ * results the same way.
+ *
+ * A baseline whose own error (JMH's 99.9% confidence half-width) is wider
+ * than the threshold can't tell a regression from noise, so such entries
+ * are listed as NOISY and don't fail the run; re-record them with more
+ * iterations or forks.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.CompareBaseline
+ *          benchmarks/baseline.json results.json [threshold %, default 20]
+ */
+public class CompareBaseline {
+
+    // Matches JMH's pretty-printed JSON: each result's name, its params (if any), then its primary score and error
+    private static final Pattern RESULT = Pattern.compile(
+            "\"benchmark\"\\s*:\\s*\"([^\"]+)\"(.*?)\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.eE]+)"
+                    + "(?:\\s*,\\s*\"scoreError\"\\s*:\\s*\"?([-0-9.eENa]+)\"?)?"
+                    + ".*?\"scoreUnit\"\\s*:\\s*\"([^\"]+)\"", Pattern.DOTALL);
+    private static final Pattern PARAMS = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)\\}");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline <baseline.json> <results.json> [threshold %]");
+            System.exit(2);
+        }
+        Map<String, double[]> baseline = read(args[0]);
+        Map<String, double[]> current = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 20;
+
+        int regressions = 0, noisy = 0;
+        System.out.printf("%-70s %12s %9s %12s %8s%n", "benchmark", "baseline", "error", "now", "change");
+        for (Map.Entry<String, double[]> e : current.entrySet()) {
+            double[] before = baseline.get(e.getKey());
+            double now = e.getValue()[0];
+            if (before == null) {
+                System.out.printf("%-70s %12s %9s %12.3f %8s%n", e.getKey(), "-", "-", now, "new");
+                continue;
+            }
+            double change = (now - before[0]) / before[0] * 100;
+            // NaN (a single iteration) counts as unknown, not as noisy
+            double error = before[1] / before[0] * 100;
+            boolean trusted = !(error > threshold);
+            boolean regressed = trusted && change > threshold;
+            if (regressed) regressions++;
+            if (!trusted) noisy++;
+            System.out.printf("%-70s %12.3f %8.1f%% %12.3f %+7.1f%%%s%n", e.getKey(), before[0], error, now, change,
+                    regressed ? "  SLOWER" : trusted ? "" : "  NOISY");
+        }
+        System.out.printf("%d of %d benchmarks more than %.0f%% slower than the baseline%n",
+                regressions, current.size(), threshold);
+        if (noisy > 0) {
+            System.out.printf("%d not checked: their baseline error is over %.0f%%; re-record them%n", noisy, threshold);
+        }
+        if (regressions > 0) System.exit(1);
+    }
+
+    // Benchmark name plus params and unit -> {score, error}; the error is NaN where JMH gives none
+    private static Map<String, double[]> read(String file) throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        Matcher m = RESULT.matcher(json);
+        while (m.find()) {
+            String name = m.group(1).replaceFirst("^bookstore\\.", "");
+            Matcher p = PARAMS.matcher(m.group(2));
+            if (p.find()) name += " [" + p.group(1).replaceAll("[\\s\"]", "") + "]";
+            double error = m.group(4) == null ? Double.NaN : Double.parseDouble(m.group(4));
+            scores.put(name + " (" + m.group(5) + ")", new double[] {Double.parseDouble(m.group(3)), error});
+        }
+        return scores;
+    }
+}
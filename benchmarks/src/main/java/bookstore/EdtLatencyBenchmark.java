@@ -0,0 +1,91 @@
+package bookstore;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares EDT responsiveness when store operations run on the EDT itself
+ * (the old event handlers) against running them through StoreService. An
+ * EdtLatencyProbe measures how long the EDT takes to pick up events while a
+ * burst of searches, cart operations and checkouts is being handled.
+ * Runs headless; only the event queue is used.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.EdtLatencyBenchmark [books] [operations]
+ */
+public class EdtLatencyBenchmark {
+
+    private static final String[] QUERIES = {"java guide", "clean code martin", "algorithms design", "vol 9", "head first sierra", "patterns bloch"};
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        BookStore store = new BookStore(60_000);
+        String[] words = {"Clean", "Code", "Java", "Effective", "Algorithms", "Design", "Patterns", "Head", "First", "Guide"};
+        String[] authors = {"Robert Martin", "Joshua Bloch", "Thomas Cormen", "Kathy Sierra", "Erich Gamma"};
+        for (int i = 1; i <= books; i++) {
+            String title = words[i % words.length] + " " + words[(i / 7) % words.length] + " Vol " + i;
+            store.addBook(i, title, authors[i % authors.length], 100 + i % 900, 1_000_000);
+        }
+        StoreService service = new StoreService(store);
+        System.out.printf("Catalog of %,d books, %d operations per mode%n", books, operations);
+
+        EdtLatencyProbe probe = new EdtLatencyProbe(5, EdtLatencyProbe.FRAME_MILLIS);
+        probe.start();
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1; // first round warms up both paths
+            run("on the EDT", operations, probe, report, (i, done) -> {
+                workload(store, i);
+                done.run();
+            });
+            run("via StoreService", operations, probe, report, (i, done) ->
+                    CompletableFuture.allOf(asyncWorkload(service, i))
+                            .whenComplete((r, e) -> SwingUtilities.invokeLater(done)));
+        }
+        probe.stop();
+        service.shutdown();
+        store.shutdown();
+    }
+
+    interface Handler {
+        void handle(int i, Runnable done);
+    }
+
+    // Posts each operation as an EDT event, like a button click, and waits for all to finish
+    private static void run(String name, int operations, EdtLatencyProbe probe, boolean report, Handler handler)
+            throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(operations);
+        probe.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int op = i;
+            SwingUtilities.invokeLater(() -> handler.handle(op, finished::countDown));
+            Thread.sleep(2);
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-17s %6d ms total, EDT max delay %7.2f ms, %d of %d probes over one frame%n",
+                    name, elapsed / 1_000_000, probe.maxLatencyNanos() / 1e6, probe.stalls(), probe.samples());
+        }
+    }
+
+    private static void workload(BookStore store, int i) {
+        store.search(QUERIES[i % QUERIES.length], 1000);
+        Cart cart = new Cart();
+        store.addToCart(cart, 1 + i % 1000);
+        store.addToCart(cart, 1001 + i % 1000);
+        store.placeOrder(new User("user", "1234", false), cart);
+    }
+
+    private static CompletableFuture<?>[] asyncWorkload(StoreService service, int i) {
+        Session session = service.store().openSession(new User("user", "1234", false));
+        CompletableFuture<?> search = service.search(QUERIES[i % QUERIES.length], 1000);
+        CompletableFuture<?> order = service.addToCart(session.id, 1 + i % 1000)
+                .thenCompose(b -> service.addToCart(session.id, 1001 + i % 1000))
+                .thenCompose(b -> service.placeOrder(session.id))
+                .thenCompose(o -> service.logout(session.id));
+        return new CompletableFuture<?>[] {search, order};
+    }
+}
@@ -0,0 +1,163 @@
+package bookstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thousands of concurrent clients against the headless HTTP API on
+ * localhost. Each client logs in, searches, adds a book to its cart, places
+ * the order, reads its order history and logs out, all released at once.
+ * Prints requests/sec and latency percentiles, then checks that every
+ * request succeeded and that the store took exactly one order and one unit
+ * of stock per client. Exits with status 1 if a check fails.
+ *
+ * Password hashing is turned down (unless -Dbookstore.passwordIterations is
+ * given) so the run measures the API rather than PBKDF2; LoginBenchmark
+ * covers that.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.HttpApiBenchmark [clients]
+ */
+public class HttpApiBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final int STOCK = 1_000;
+    private static final int ACCOUNTS = 100;
+    private static final int STEPS = 6;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        if (System.getProperty("bookstore.passwordIterations") == null) {
+            System.setProperty("bookstore.passwordIterations", "1000");
+        }
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-http-" + System.nanoTime());
+        BookStore store = new BookStore(60_000, dir);
+        for (int i = 1; i <= BOOKS; i++) {
+            store.addBook(i, "Book " + i + (i % 10 == 0 ? " Java" : ""), "Author " + (i % 100), 100 + i % 900, STOCK);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) store.register("shopper" + i, "secret");
+        StoreService service = new StoreService(store);
+        StoreHttpServer server = new StoreHttpServer(service, 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.port() + "/api/";
+
+        long[] latencies = new long[clients * STEPS];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    Client http = new Client(base, latencies, recorded);
+                    String login = http.call("POST", "login", "username=shopper" + (client % ACCOUNTS) + "&password=secret");
+                    http.session = field(login, "session");
+                    http.call("GET", "books?q=java&limit=20", null);
+                    http.call("POST", "cart", "bookId=" + (1 + client % BOOKS));
+                    http.call("POST", "orders", null);
+                    http.call("GET", "orders?limit=10", null);
+                    http.call("POST", "logout", null);
+                } catch (Exception e) {
+                    if (failures.incrementAndGet() <= 5) System.err.println("client " + client + ": " + e);
+                } finally {
+                    done.countDown();
+                }
+            }, "client-" + c);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        int requests = recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, requests);
+        Arrays.sort(sorted);
+        System.out.printf("%,d clients, %,d requests in %.2f s: %,.0f requests/s%n",
+                clients, requests, seconds, requests / seconds);
+        if (requests > 0) {
+            System.out.printf("latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", sorted[requests / 2] / 1e6,
+                    sorted[(int) (requests * 0.99)] / 1e6, sorted[requests - 1] / 1e6);
+        }
+
+        boolean ok = check("every request succeeded", failures.get() == 0 && requests == clients * STEPS);
+        ok &= check("one order per client", store.orderCount() == clients);
+        long held = 0;
+        for (int i = 1; i <= BOOKS; i++) held += STOCK - store.findBook(i).getStock();
+        ok &= check("one unit of stock per client", held == clients);
+        ok &= check("every session logged out", store.sessions().size() == 0);
+
+        server.stop();
+        service.shutdown();
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+        if (!ok) System.exit(1);
+    }
+
+    /** One client's connection settings and its session. */
+    private static final class Client {
+        final String base;
+        final long[] latencies;
+        final AtomicInteger recorded;
+        String session;
+
+        Client(String base, long[] latencies, AtomicInteger recorded) {
+            this.base = base;
+            this.latencies = latencies;
+            this.recorded = recorded;
+        }
+
+        // Sends the request and returns the body; anything but 200 is an error
+        String call(String method, String path, String form) throws IOException {
+            long t = System.nanoTime();
+            HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection();
+            conn.setRequestMethod(method);
+            if (session != null) conn.setRequestProperty("X-Session", session);
+            if (form != null) {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(form.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = conn.getResponseCode();
+            String body = read(status == 200 ? conn.getInputStream() : conn.getErrorStream());
+            latencies[recorded.getAndIncrement()] = System.nanoTime() - t;
+            if (status != 200) throw new IOException(method + " " + path + ": " + status + " " + body);
+            return body;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        if (in == null) return "";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        try (InputStream s = in) {
+            for (int n; (n = s.read(buf)) > 0; ) body.write(buf, 0, n);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Good enough for the flat objects the API returns
+    private static String field(String json, String name) {
+        String key = "\"" + name + "\":\"";
+        int from = json.indexOf(key) + key.length();
+        return json.substring(from, json.indexOf('"', from));
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+}
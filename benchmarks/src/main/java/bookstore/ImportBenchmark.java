@@ -0,0 +1,102 @@
+package bookstore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Times a bulk catalog import and export. Writes a CSV of synthetic books
+ * (1,000,000 by default) with a few quoted titles, malformed lines and
+ * duplicate ids mixed in, imports it into a store persisted in a scratch
+ * data directory, exports the result and imports the export into a second
+ * store. Checks that the bad lines were refused with the right line
+ * numbers, that the round trip kept every book, and that a reopened store
+ * has them all.
+ *
+ * Run: java -Xms1g -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.ImportBenchmark [books]
+ */
+public class ImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File tmp = new File(System.getProperty("java.io.tmpdir"), "bookstore-import-" + System.nanoTime());
+        tmp.mkdirs();
+        File csv = new File(tmp, "feed.csv");
+        File exported = new File(tmp, "export.tsv");
+
+        // Every 100,000th line is malformed and every 250,000th repeats the previous id
+        int bad = 0;
+        long t0 = System.nanoTime();
+        Random rnd = new Random(42);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8))) {
+            out.write("id,title,author,price,stock\n");
+            for (int i = 1; i <= n; i++) {
+                if (i % 100_000 == 0) {
+                    out.write(i + ",missing fields\n");
+                    bad++;
+                    continue;
+                }
+                int id = i % 250_000 == 0 ? i - 1 : i;
+                if (id != i) bad++;
+                String title = i % 1000 == 0 ? "\"Title " + i + ", \"\"Annotated\"\"\"" : "Title " + Integer.toString(i, 36);
+                out.write(id + "," + title + ",Author " + (i % 5000) + "," + (100 + rnd.nextInt(900)) + ".5,"
+                        + rnd.nextInt(50) + "\n");
+            }
+        }
+        System.out.printf("Wrote %,d lines (%,d KB) in %d ms%n", n, csv.length() / 1024, (System.nanoTime() - t0) / 1_000_000);
+
+        File dir = new File(tmp, "data");
+        BookStore store = new BookStore(60_000, dir);
+        System.gc();
+        t0 = System.nanoTime();
+        CatalogCsv.Result result = store.importBooks(csv, done -> { });
+        long importMillis = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("Imported %,d books in %d ms (%,.0f rows/s), %,d lines skipped%n",
+                result.imported, importMillis, n * 1000.0 / Math.max(1, importMillis), result.rejected);
+        check(result.rejected == bad, "skipped " + result.rejected + ", expected " + bad);
+        check(result.imported == n - bad, "imported " + result.imported);
+        // Line 1 is the header, so book i is on line i + 1
+        check(n < 100_000 || result.errors.get(0).startsWith("line 100001:"), "line number of the first bad line: " + result.errors);
+        check(n < 1000 || store.findBook(1000).getTitle().equals("Title 1000, \"Annotated\""), "quoted title");
+        check(store.search("annotated", 10).length > 0, "imported books are searchable");
+
+        t0 = System.nanoTime();
+        int written = store.exportBooks(exported, done -> { });
+        System.out.printf("Exported %,d books (%,d KB) in %d ms%n", written, exported.length() / 1024,
+                (System.nanoTime() - t0) / 1_000_000);
+        check(written == store.catalog().size(), "exported " + written);
+        int expected = store.catalog().size();
+        store.shutdown();
+
+        BookStore copy = new BookStore(60_000);
+        t0 = System.nanoTime();
+        CatalogCsv.Result again = copy.importBooks(exported, done -> { });
+        System.out.printf("Re-imported the export (TSV) into an in-memory store in %d ms%n", (System.nanoTime() - t0) / 1_000_000);
+        check(again.imported == expected && again.rejected == 0, "round trip: " + again.summary());
+        check(n < 1000 || copy.findBook(1000).getTitle().equals("Title 1000, \"Annotated\""), "round-tripped quoted title");
+        copy.shutdown();
+
+        BookStore reopened = new BookStore(60_000, dir);
+        check(reopened.catalog().size() == expected, "reopened store has " + reopened.catalog().size());
+        reopened.shutdown();
+        System.out.println("All checks passed");
+
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+        csv.delete();
+        exported.delete();
+        tmp.delete();
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            System.err.println("Check failed: " + what);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package bookstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the account at login among many registered users. Password
+ * verification is deliberately slow and independent of the user count;
+ * LoginBenchmark measures it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-Xms1g", "-Xmx2g"})
+public class LoginBench {
+
+    @Param({"1000", "100000", "1000000"})
+    int users;
+
+    private UserDirectory directory;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        directory = new UserDirectory();
+        for (int i = 0; i < users; i++) directory.add(new User("reader" + i, "unused", false));
+        Random rnd = new Random(3);
+        names = new String[4096];
+        // Typed names, so the lookup pays for normalizing them
+        for (int i = 0; i < names.length; i++) names[i] = " Reader" + rnd.nextInt(users);
+    }
+
+    @Benchmark
+    public User lookup() {
+        return directory.get(names[next++ & (names.length - 1)]);
+    }
+}
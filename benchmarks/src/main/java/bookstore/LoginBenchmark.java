@@ -0,0 +1,145 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Login throughput with a million registered users. Every user shares one
+ * password hash made at the default cost, so filling the directory takes
+ * seconds rather than hours while each login still pays for a full hash.
+ *
+ * Reports the user lookup against the old scan of a user list, then fires a
+ * burst of logins through StoreService while timing searches on the store's
+ * worker pool; those should stay fast because hashing runs on its own pool.
+ * Also checks that wrong passwords and unknown users are refused and that
+ * concurrent registrations of one name let exactly one through. Exits with
+ * status 1 if a check fails.
+ *
+ * Run: java -Xmx2g -cp benchmarks/target/benchmarks.jar bookstore.LoginBenchmark [users] [logins]
+ */
+public class LoginBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int logins = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Random rnd = new Random(11);
+
+        BookStore store = new BookStore(BookStore.HOLD_MILLIS);
+        store.initSampleData();
+        StoreService service = new StoreService(store);
+        String shared = new PasswordHasher().hash("secret");
+
+        long t0 = System.nanoTime();
+        List<User> list = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User u = new User("reader" + i, shared, false);
+            store.users().add(u);
+            list.add(u);
+        }
+        System.out.printf("registered %,d users in %.1f s%n", store.users().size(), (System.nanoTime() - t0) / 1e9);
+
+        long[] lookup = new long[100_000];
+        for (int i = 0; i < lookup.length; i++) {
+            String name = "reader" + rnd.nextInt(userCount);
+            long t = System.nanoTime();
+            store.users().get(name);
+            lookup[i] = System.nanoTime() - t;
+        }
+        long[] scan = new long[20];
+        for (int i = 0; i < scan.length; i++) {
+            String name = "reader" + rnd.nextInt(userCount);
+            long t = System.nanoTime();
+            scanFor(list, name);
+            scan[i] = System.nanoTime() - t;
+        }
+        System.out.printf("lookup p50 %.2f us, list scan p50 %.1f us%n", median(lookup) / 1e3, median(scan) / 1e3);
+
+        boolean ok = true;
+        // Warm up the hash before timing it
+        for (int i = 0; i < 10; i++) store.login("reader" + i, "secret");
+        ok &= check("wrong password refused", refused(() -> store.login("reader1", "wrong")));
+        ok &= check("unknown user refused", refused(() -> store.login("nobody-here", "secret")));
+        ok &= check("name lookup ignores case", store.login(" Reader2 ", "secret").username.equals("reader2"));
+
+        AtomicInteger succeeded = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] racers = new Thread[8];
+        for (int i = 0; i < racers.length; i++) {
+            racers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    store.register("newcomer", "pw" + Thread.currentThread().getId());
+                    succeeded.incrementAndGet();
+                } catch (StoreException | InterruptedException e) {
+                    // Lost the race
+                }
+            });
+            racers[i].start();
+        }
+        start.countDown();
+        for (Thread t : racers) t.join();
+        ok &= check("one of 8 racing registrations wins", succeeded.get() == 1);
+
+        List<CompletableFuture<Session>> burst = new ArrayList<>(logins);
+        long[] searches = new long[logins];
+        int searched = 0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < logins; i++) burst.add(service.login("reader" + rnd.nextInt(userCount), "secret"));
+        // A search at a time on the store pool while the logins are being verified
+        while (searched < searches.length && !burst.get(burst.size() - 1).isDone()) {
+            long t = System.nanoTime();
+            service.search("java", 10).join();
+            searches[searched++] = System.nanoTime() - t;
+        }
+        int loggedIn = 0;
+        for (CompletableFuture<Session> f : burst) {
+            if (f.handle((u, e) -> u != null).join()) loggedIn++;
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%d logins in %.2f s: %.1f logins/s (%d verify threads)%n",
+                logins, seconds, logins / seconds, BookStore.VERIFY_THREADS);
+        if (searched > 0) {
+            long[] s = Arrays.copyOf(searches, searched);
+            Arrays.sort(s);
+            System.out.printf("%d searches during the burst: p50 %.2f ms, max %.2f ms%n",
+                    searched, s[searched / 2] / 1e6, s[searched - 1] / 1e6);
+        }
+        ok &= check("every login in the burst succeeded", loggedIn == logins);
+
+        service.shutdown();
+        if (!ok) System.exit(1);
+    }
+
+    // What login used to do: walk the list comparing names
+    private static User scanFor(List<User> users, String name) {
+        for (User u : users) {
+            if (u.username.equals(name)) return u;
+        }
+        return null;
+    }
+
+    private static boolean refused(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (StoreException e) {
+            return true;
+        }
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
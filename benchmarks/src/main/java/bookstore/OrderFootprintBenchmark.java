@@ -0,0 +1,85 @@
+package bookstore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap footprint of the order history: the old representation (a list of
+ * copied Books plus a timestamp string per order) against the compact Order.
+ * Keeps N orders of three books each alive, measures the retained heap of
+ * each form after a full GC and fails if the compact form isn't at least
+ * three times smaller.
+ *
+ * Run: java -Xmx2g -cp benchmarks/target/benchmarks.jar bookstore.OrderFootprintBenchmark [orders]
+ */
+public class OrderFootprintBenchmark {
+
+    private static final int ITEMS = 3;
+
+    /** The shape orders had before: deep-copied cart Books and a LocalDateTime string. */
+    static final class LegacyOrder {
+        final String user;
+        final List<Book> items;
+        final double total;
+        final String timestamp;
+
+        LegacyOrder(String user, List<Book> items, double total) {
+            this.user = user;
+            this.items = new ArrayList<>(items);
+            this.total = total;
+            this.timestamp = LocalDateTime.now().toString();
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Book[] catalog = new Book[1000];
+        for (int i = 0; i < catalog.length; i++) {
+            catalog[i] = Book.of(i + 1, "Title of book " + i, "Author " + i % 50, 100 + i, 1_000);
+        }
+        String[] users = new String[1000];
+        for (int i = 0; i < users.length; i++) users[i] = "user" + i;
+
+        long base = usedHeap();
+        List<LegacyOrder> legacy = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<Book> cartCopies = new ArrayList<>(ITEMS);
+            double total = 0;
+            for (int j = 0; j < ITEMS; j++) {
+                Book b = catalog[(i * 7 + j * 131) % catalog.length];
+                cartCopies.add(Book.of(b.getId(), b.getTitle(), b.getAuthor(), b.getPrice(), b.getStock()));
+                total += b.getPrice();
+            }
+            legacy.add(new LegacyOrder(users[i % users.length], cartCopies, total));
+        }
+        long legacyBytes = usedHeap() - base;
+        if (legacy.size() != n) throw new AssertionError(); // keeps the list reachable until measured
+        legacy = null;
+
+        base = usedHeap();
+        List<Order> compact = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<Book> items = new ArrayList<>(ITEMS);
+            for (int j = 0; j < ITEMS; j++) items.add(catalog[(i * 7 + j * 131) % catalog.length]);
+            // A new String per order, as replay produces; Order shares one per user
+            compact.add(new Order(new String(users[i % users.length]), items));
+        }
+        long compactBytes = usedHeap() - base;
+        if (compact.size() != n) throw new AssertionError();
+
+        double ratio = (double) legacyBytes / compactBytes;
+        System.out.printf("%,d orders of %d books: legacy %d bytes/order, compact %d bytes/order (%.1fx smaller)%n",
+                n, ITEMS, legacyBytes / n, compactBytes / n, ratio);
+        if (ratio < 3) {
+            System.err.println("FAIL: expected the compact orders to be at least 3x smaller");
+            System.exit(1);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,70 @@
+package bookstore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Cost of opening one user's order history as the store grows. Fills an
+ * OrderStore with N orders spread over 10,000 users and times fetching the
+ * first page (50 orders) of random users' histories, against the old
+ * approach of scanning every order for the user's. The page lookup should
+ * stay flat from 1k to 10M orders while the scan grows linearly.
+ *
+ * Run: java -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.OrderHistoryBenchmark [max orders]
+ */
+public class OrderHistoryBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int PAGE = 50;
+    private static final int LOOKUPS = 20_000;
+
+    public static void main(String[] args) {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) users[i] = "user" + i;
+        Random rnd = new Random(7);
+
+        OrderStore store = new OrderStore();
+        int[] lines = {1, 1, 45000, 2, 1, 55000};
+        long now = System.currentTimeMillis();
+        System.out.printf("%12s %16s %16s%n", "orders", "page p50 (us)", "scan p50 (us)");
+        for (int size = 1_000; size <= max; size *= 10) {
+            while (store.size() < size) {
+                int n = store.size();
+                store.add(new Order(users[rnd.nextInt(USERS)], now + n, lines));
+            }
+            long[] page = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                String user = users[rnd.nextInt(USERS)];
+                long t0 = System.nanoTime();
+                store.page(user, OrderStore.NEWEST, PAGE);
+                page[i] = System.nanoTime() - t0;
+            }
+            // The scan is slow at the larger sizes; a few lookups give a stable median
+            int scans = size >= 1_000_000 ? 5 : 200;
+            long[] scan = new long[scans];
+            for (int i = 0; i < scans; i++) {
+                String user = users[rnd.nextInt(USERS)];
+                long t0 = System.nanoTime();
+                scanFor(store, user);
+                scan[i] = System.nanoTime() - t0;
+            }
+            System.out.printf("%,12d %16.2f %16.2f%n", size, median(page) / 1e3, median(scan) / 1e3);
+        }
+    }
+
+    // What refreshOrdersTable used to do: walk every order, newest first, keeping the user's
+    private static int scanFor(OrderStore store, String user) {
+        int found = 0;
+        for (Order o : store.page(null, OrderStore.NEWEST, Integer.MAX_VALUE).orders) {
+            if (o.user.equals(user) && ++found == PAGE) break;
+        }
+        return found;
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,79 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures how fast a persisted store comes back up. Fills a store in a
+ * scratch data directory with synthetic books (1,000,000 by default),
+ * compacts it into a snapshot, appends a journal tail of stock changes and
+ * orders, and then times reopening it: mapping the snapshot plus replaying
+ * the tail. Also checks the reopened store against the one that wrote it.
+ *
+ * Run: java -Xms1g -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.PersistenceBenchmark [books] [tail orders]
+ */
+public class PersistenceBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int tail = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-bench-" + System.nanoTime());
+        Random rnd = new Random(42);
+
+        BookStore store = new BookStore(60_000, dir);
+        long t0 = System.nanoTime();
+        for (int i = 1; i <= n; i++) {
+            store.addBook(i, "Title " + Integer.toString(i, 36) + " volume " + (i % 97), "Author " + (i % 5000),
+                    100 + rnd.nextInt(900), 1_000);
+        }
+        store.register("reader", "secret");
+        System.out.printf("Journaled %,d books in %d ms%n", n, (System.nanoTime() - t0) / 1_000_000);
+
+        t0 = System.nanoTime();
+        store.compact();
+        System.out.printf("Compacted into a %,d KB snapshot in %d ms%n",
+                Snapshot.file(dir, Snapshot.latest(dir)).length() / 1024, (System.nanoTime() - t0) / 1_000_000);
+
+        User user = store.login("reader", "secret");
+        for (int i = 0; i < tail; i++) {
+            Cart cart = new Cart();
+            store.addToCart(cart, 1 + rnd.nextInt(n));
+            store.placeOrder(user, cart);
+        }
+        store.updateBook(1, "Renamed", "", 1, 5);
+        store.deleteBook(2);
+        long[] segments = Journal.segments(dir);
+        System.out.printf("Journal tail: %,d orders, %,d KB%n", tail,
+                Journal.segmentFile(dir, segments[segments.length - 1]).length() / 1024);
+        int probe = 3 + rnd.nextInt(n - 3);
+        int expectedStock = store.findBook(probe).getStock();
+        store.shutdown();
+
+        for (int run = 0; run < 3; run++) {
+            System.gc();
+            t0 = System.nanoTime();
+            BookStore reopened = new BookStore(60_000, dir);
+            long millis = (System.nanoTime() - t0) / 1_000_000;
+            System.out.printf("Reopened %,d books, %,d orders in %d ms%n",
+                    reopened.catalog().size(), reopened.orderCount(), millis);
+            check(reopened.catalog().size() == n - 1, "book count");
+            check(reopened.orderCount() == tail, "order count");
+            check(reopened.findBook(1).getTitle().equals("Renamed"), "update");
+            check(reopened.findBook(2) == null, "delete");
+            check(reopened.findBook(probe).getStock() == expectedStock, "stock of book " + probe);
+            reopened.login("reader", "secret");
+            reopened.shutdown();
+        }
+
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            System.err.println("Mismatch after reopening: " + what);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency stress test for ReservationEngine. Many threads reserve,
+ * release, commit and abandon holds on a small set of hot books, which
+ * forces heavy CAS contention. Once all abandoned holds have expired, every
+ * book must satisfy available + sold == initial stock with nothing reserved
+ * and nothing oversold. Exits with status 1 on any violation.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.ReservationStressBenchmark [threads] [seconds]
+ */
+public class ReservationStressBenchmark {
+
+    private static final int BOOKS = 32;
+    private static final int INITIAL_STOCK = 1_000_000;
+    private static final long HOLD_MILLIS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Book[] books = new Book[BOOKS];
+        for (int i = 0; i < BOOKS; i++) books[i] = Book.of(i + 1, "Book " + i, "Author", 100, INITIAL_STOCK);
+        ReservationEngine engine = new ReservationEngine(HOLD_MILLIS);
+        AtomicLongArray sold = new AtomicLongArray(BOOKS);
+        LongAdder ops = new LongAdder();
+        LongAdder soldOut = new LongAdder();
+        LongAdder negativeSeen = new LongAdder();
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long local = 0;
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    int b = rnd.nextInt(BOOKS);
+                    int qty = 1 + rnd.nextInt(3);
+                    ReservationEngine.Hold hold = engine.reserve(books[b], qty);
+                    local++;
+                    if (hold == null) {
+                        soldOut.increment();
+                        continue;
+                    }
+                    // Mostly released (cart churn), some sold, a few abandoned for the timer wheel
+                    int action = rnd.nextInt(1000);
+                    if (action < 5) {
+                        if (engine.commit(hold)) sold.addAndGet(b, qty);
+                    } else if (action >= 998) {
+                        // Abandoned: expiry has to give these units back
+                    } else {
+                        engine.release(hold);
+                    }
+                }
+                ops.add(local);
+            }, "shopper-" + t);
+            workers.add(w);
+        }
+        Thread monitor = new Thread(() -> {
+            while (System.nanoTime() < deadline) {
+                for (Book book : books) {
+                    if (book.getStock() < 0 || book.getReserved() < 0) negativeSeen.increment();
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        for (Thread w : workers) w.start();
+        monitor.start();
+        for (Thread w : workers) w.join();
+        monitor.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // Let every abandoned hold expire
+        Thread.sleep(HOLD_MILLIS * 5);
+        engine.shutdown();
+
+        boolean ok = negativeSeen.sum() == 0;
+        long totalSold = 0;
+        for (int b = 0; b < BOOKS; b++) {
+            Book book = books[b];
+            long s = sold.get(b);
+            totalSold += s;
+            if (book.getReserved() != 0 || book.getStock() + s != INITIAL_STOCK || s > INITIAL_STOCK) {
+                ok = false;
+                System.out.printf("VIOLATION book %d: available %d, reserved %d, sold %d, initial %d%n",
+                        book.getId(), book.getStock(), book.getReserved(), s, INITIAL_STOCK);
+            }
+        }
+
+        System.out.printf("%d threads, %.1f s: %,d reserve attempts (%,.0f ops/s), %,d refused for lack of stock%n",
+                threads, elapsed, ops.sum(), ops.sum() / elapsed, soldOut.sum());
+        System.out.printf("holds: %,d reserved, %,d released, %,d committed, %,d expired; %,d units sold%n",
+                engine.reservedCount(), engine.releasedCount(), engine.committedCount(), engine.expiredCount(), totalSold);
+        System.out.println(ok ? "OK: no oversell, stock conserved" : "FAILED: inventory invariant violated");
+        if (!ok) System.exit(1);
+    }
+}
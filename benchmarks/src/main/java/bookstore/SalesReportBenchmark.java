@@ -0,0 +1,201 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cost of the admin sales report as the store grows. Fills an OrderStore
+ * with N orders of one to three books (from 50,000) spread over 10,000
+ * users and the last 60 days, and at each size checks the report against
+ * totals worked out by scanning every order, then times the report against
+ * that scan. The report should stay flat from 1k to 10M orders, under
+ * REPORT_BUDGET_MS at the median, while the scan grows linearly; it exits
+ * with 1 if a check fails or the report is over budget. Finishes by
+ * exporting every total.
+ *
+ * Run: java -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.SalesReportBenchmark [max orders]
+ */
+public class SalesReportBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int BOOKS = 50_000;
+    private static final int DAYS = 60;
+    private static final int TOP = 20;
+    private static final int REPORTS = 200;
+    private static final double REPORT_BUDGET_MS = 50;
+
+    public static void main(String[] args) throws IOException {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) users[i] = "user" + i;
+        int[] prices = new int[BOOKS + 1];
+        Random rnd = new Random(11);
+        for (int id = 1; id <= BOOKS; id++) prices[id] = 10_000 + rnd.nextInt(90_000);
+
+        OrderStore store = new OrderStore();
+        SalesAnalytics sales = store.sales();
+        long now = System.currentTimeMillis();
+        long span = DAYS * 24 * 3_600_000L;
+        boolean failed = false;
+        System.out.printf("%12s %16s %16s %16s%n", "orders", "report p50 (ms)", "report max (ms)", "scan (ms)");
+        for (int size = 1_000; size <= max; size *= 10) {
+            long t0 = System.nanoTime();
+            int before = store.size();
+            while (store.size() < size) {
+                int n = store.size();
+                int count = 1 + rnd.nextInt(3);
+                int[] lines = new int[count * 3];
+                for (int i = 0; i < count; i++) {
+                    // A few books sell far more than the rest, as in a real shop
+                    int id = rnd.nextInt(4) == 0 ? 1 + rnd.nextInt(100) : 1 + rnd.nextInt(BOOKS);
+                    lines[i * 3] = id;
+                    lines[i * 3 + 1] = 1 + rnd.nextInt(2);
+                    lines[i * 3 + 2] = prices[id];
+                }
+                // Placed in time order, ending now
+                store.add(new Order(users[rnd.nextInt(USERS)], now - span + span / max * n, lines));
+            }
+            long recordNanos = System.nanoTime() - t0;
+
+            long[] report = new long[REPORTS];
+            SalesAnalytics.Report last = null;
+            for (int i = 0; i < REPORTS; i++) {
+                t0 = System.nanoTime();
+                last = sales.report(TOP, 30, 24, now);
+                report[i] = System.nanoTime() - t0;
+            }
+            t0 = System.nanoTime();
+            Scan scan = scan(store);
+            long scanNanos = System.nanoTime() - t0;
+            Arrays.sort(report);
+            double p50 = report[REPORTS / 2] / 1e6;
+            System.out.printf("%,12d %16.3f %16.3f %16.1f   (recorded at %.2f us/order)%n", size, p50,
+                    report[REPORTS - 1] / 1e6, scanNanos / 1e6, recordNanos / 1e3 / (size - before));
+
+            String mismatch = scan.compare(last);
+            if (mismatch != null) {
+                System.err.println("FAIL at " + size + " orders: " + mismatch);
+                failed = true;
+            }
+            if (p50 > REPORT_BUDGET_MS) {
+                System.err.printf("FAIL: report took %.1f ms at %,d orders%n", p50, size);
+                failed = true;
+            }
+        }
+
+        File file = File.createTempFile("sales", ".csv");
+        try {
+            long t0 = System.nanoTime();
+            int rows = sales.export(file);
+            System.out.printf("Exported %,d rows (%,d KB) in %d ms%n", rows, file.length() / 1024,
+                    (System.nanoTime() - t0) / 1_000_000);
+        } finally {
+            file.delete();
+        }
+        if (failed) System.exit(1);
+        System.out.println("OK");
+    }
+
+    /** The report's numbers the old way: a pass over every order. */
+    private static final class Scan {
+        long orders, units, paise;
+        final Map<Integer, long[]> books = new HashMap<>();
+        final Map<String, long[]> customers = new HashMap<>();
+        final Map<String, long[]> days = new HashMap<>();
+        final Map<String, long[]> hours = new HashMap<>();
+
+        String compare(SalesAnalytics.Report report) {
+            if (report.orders != orders || report.units != units || report.paise != paise) {
+                return "totals " + report.orders + "/" + report.units + "/" + report.paise + ", expected "
+                        + orders + "/" + units + "/" + paise;
+            }
+            if (report.books != books.size() || report.customers != customers.size()) return "book or customer count";
+            long previous = Long.MAX_VALUE;
+            for (SalesAnalytics.Row row : report.topBooks) {
+                long[] expected = books.get((int) row.key);
+                if (expected == null || expected[0] != row.count || expected[1] != row.paise) return "book " + row.key;
+                if (row.paise > previous) return "top books out of order";
+                previous = row.paise;
+            }
+            if (report.topBooks.size() != Math.min(TOP, books.size())
+                    || countAbove(books.values(), previous) != countAbove(report.topBooks, previous)) {
+                return "top books missed a book";
+            }
+            previous = Long.MAX_VALUE;
+            for (SalesAnalytics.Row row : report.topCustomers) {
+                long[] expected = customers.get(row.label);
+                if (expected == null || expected[0] != row.count || expected[1] != row.paise) return "customer " + row.label;
+                if (row.paise > previous) return "top customers out of order";
+                previous = row.paise;
+            }
+            if (report.topCustomers.size() != Math.min(TOP, customers.size())
+                    || countAbove(customers.values(), previous) != countAbove(report.topCustomers, previous)) {
+                return "top customers missed a customer";
+            }
+            for (SalesAnalytics.Row row : report.days) {
+                if (!matches(days.get(row.label), row)) return "day " + row.label;
+            }
+            for (SalesAnalytics.Row row : report.hours) {
+                if (!matches(hours.get(row.label), row)) return "hour " + row.label;
+            }
+            return null;
+        }
+
+        // Everything above the lowest amount listed must be listed
+        private static int countAbove(Collection<long[]> totals, long lowest) {
+            int above = 0;
+            for (long[] t : totals) if (t[1] > lowest) above++;
+            return above;
+        }
+
+        private static int countAbove(List<SalesAnalytics.Row> rows, long lowest) {
+            int above = 0;
+            for (SalesAnalytics.Row row : rows) if (row.paise > lowest) above++;
+            return above;
+        }
+
+        private static boolean matches(long[] expected, SalesAnalytics.Row row) {
+            return expected == null ? row.count == 0 && row.paise == 0
+                    : expected[0] == row.count && expected[1] == row.paise;
+        }
+    }
+
+    private static Scan scan(OrderStore store) {
+        Scan scan = new Scan();
+        ZoneId zone = ZoneId.systemDefault();
+        for (Order o : store.all()) {
+            long total = 0;
+            for (int i = 0; i < o.lineCount(); i++) {
+                long amount = (long) o.quantity(i) * o.paise(i);
+                long[] book = scan.books.computeIfAbsent(o.bookId(i), k -> new long[2]);
+                book[0] += o.quantity(i);
+                book[1] += amount;
+                scan.units += o.quantity(i);
+                total += amount;
+            }
+            scan.orders++;
+            scan.paise += total;
+            long[] customer = scan.customers.computeIfAbsent(o.user, k -> new long[2]);
+            customer[0]++;
+            customer[1] += total;
+            LocalDateTime placed = LocalDateTime.ofInstant(Instant.ofEpochMilli(o.placedAt), zone);
+            String hour = placed.toLocalDate() + (placed.getHour() < 10 ? "T0" : "T") + placed.getHour();
+            long[] d = scan.days.computeIfAbsent(placed.toLocalDate().toString(), k -> new long[2]);
+            d[0]++;
+            d[1] += total;
+            long[] h = scan.hours.computeIfAbsent(hour, k -> new long[2]);
+            h[0]++;
+            h[1] += total;
+        }
+        return scan;
+    }
+}
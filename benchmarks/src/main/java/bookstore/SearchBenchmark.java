@@ -0,0 +1,136 @@
+package bookstore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds a SearchIndex over a synthetic catalog (1,000,000 books by default)
+ * and measures query latency for whole and partial words, plus the cost of
+ * keeping the index current on title changes and on an import whose ids
+ * arrive out of order.
+ *
+ * Run: java -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.SearchBenchmark [books]
+ */
+public class SearchBenchmark {
+
+    private static final int QUERIES = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random rnd = new Random(42);
+        String[] vocabulary = syllableWords(rnd, 20_000);
+        String[] surnames = syllableWords(rnd, 30_000);
+        String[] firstNames = Arrays.copyOf(syllableWords(rnd, 2_000), 2_000);
+
+        // Ids 1 to imported are left free for the unsorted import at the end
+        int imported = Math.max(1, n / 10);
+        Catalog catalog = new Catalog();
+        for (int i = 1; i <= n; i++) {
+            catalog.add(Book.of(imported + i, title(rnd, vocabulary), firstNames[rnd.nextInt(firstNames.length)] + " "
+                    + surnames[zipf(rnd, surnames.length)], 100 + rnd.nextInt(900), rnd.nextInt(50)));
+        }
+
+        long t0 = System.nanoTime();
+        SearchIndex index = new SearchIndex(catalog);
+        index.awaitReady();
+        System.out.printf("Indexed %,d books into %,d grams in %d ms%n", n, index.gramCount(),
+                (System.nanoTime() - t0) / 1_000_000);
+
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Book b = catalog.get(imported + 1 + rnd.nextInt(n));
+            String[] words = b.getTitle().split(" ");
+            String q = words[rnd.nextInt(words.length)];
+            switch (i % 4) {
+                case 0: break;                                                   // whole word
+                case 1: q = q.substring(0, Math.max(3, q.length() / 2)); break; // partial word
+                case 2: q = q + " " + words[(i / 4) % words.length]; break;      // two words
+                default: q = q + " " + b.getAuthor().split(" ")[1].substring(0, 3); // title + author prefix
+            }
+            queries[i] = q;
+        }
+
+        long results = 0;
+        for (int i = 0; i < QUERIES / 4; i++) {
+            results += index.search(queries[i], 50).length; // warm-up
+        }
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long s = System.nanoTime();
+            results += index.search(queries[i], 50).length;
+            latencies[i] = System.nanoTime() - s;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("Query latency over %,d queries: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms (%,d hits)%n",
+                QUERIES, Arrays.stream(latencies).average().orElse(0) / 1e6, latencies[QUERIES / 2] / 1e6,
+                latencies[QUERIES * 99 / 100] / 1e6, latencies[QUERIES - 1] / 1e6, results);
+
+        int updates = 2_000;
+        t0 = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            Book b = catalog.get(imported + 1 + rnd.nextInt(n));
+            b.update(title(rnd, vocabulary), b.getAuthor(), b.getPrice());
+        }
+        System.out.printf("Title update incl. reindex: %.3f ms/op%n", (System.nanoTime() - t0) / 1e6 / updates);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            catalog.get(imported + 1 + rnd.nextInt(n)).setStock(rnd.nextInt(50));
+        }
+        System.out.printf("Stock update (no reindex): %.3f us/op%n", (System.nanoTime() - t0) / 1e3 / updates);
+
+        // An unsorted import of ids below every listed one, in random order: each posting lands at the
+        // front of its list, the costliest place to insert; then the same books are deleted again
+        int[] ids = new int[imported];
+        for (int i = 0; i < imported; i++) ids[i] = i + 1;
+        for (int i = imported - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+        t0 = System.nanoTime();
+        for (int id : ids) {
+            catalog.add(Book.of(id, title(rnd, vocabulary), firstNames[rnd.nextInt(firstNames.length)] + " "
+                    + surnames[zipf(rnd, surnames.length)], 100 + rnd.nextInt(900), rnd.nextInt(50)));
+        }
+        System.out.printf("Unsorted import of %,d books incl. index: %.3f us/book%n", imported,
+                (System.nanoTime() - t0) / 1e3 / imported);
+        t0 = System.nanoTime();
+        for (int id : ids) catalog.remove(id);
+        System.out.printf("Delete of the same books incl. index: %.3f us/book%n", (System.nanoTime() - t0) / 1e3 / imported);
+    }
+
+    private static String title(Random rnd, String[] vocabulary) {
+        StringBuilder sb = new StringBuilder();
+        int words = 2 + rnd.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            String word = vocabulary[zipf(rnd, vocabulary.length)];
+            sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return sb.toString();
+    }
+
+    // Skewed pick: low indexes are much more common, like real word frequencies
+    private static int zipf(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, u)) - 1);
+    }
+
+    private static String[] syllableWords(Random rnd, int count) {
+        String[] syllables = {"al", "go", "rith", "ma", "de", "sign", "pat", "tern", "co", "ja", "va", "ef",
+                "fec", "tive", "clean", "code", "head", "first", "in", "tro", "struc", "ture", "da", "ta",
+                "sys", "tem", "net", "work", "pro", "gram", "ming", "lo", "gic", "ar", "chi", "tec"};
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = 2 + rnd.nextInt(3);
+            for (int p = 0; p < parts; p++) {
+                sb.append(syllables[rnd.nextInt(syllables.length)]);
+            }
+            words[i] = sb.toString();
+        }
+        return words;
+    }
+}
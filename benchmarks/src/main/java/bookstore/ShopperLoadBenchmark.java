@@ -0,0 +1,323 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load: N shoppers, each on a virtual thread of its own (a
+ * platform thread before JDK 21), go through StoreService the way the
+ * panels do. A visit logs in, browses or searches one to four times, adds
+ * one to three books to the cart, sometimes removes one, places the order
+ * and logs out; between steps the shopper thinks for a random time around
+ * the given mean. A few popular books have little stock, so some adds and
+ * orders are refused as sold out.
+ *
+ * After a warm-up, prints throughput (steps done, not counting refusals)
+ * and latency percentiles per step, refusals included.
+ * When every shopper has finished its last visit, checks that no book was
+ * oversold, that every book's starting stock equals what is left plus what
+ * orders took, that logging out released every hold, and that the store
+ * (and its sales totals) saw exactly the orders the shoppers placed.
+ *
+ * Writes the results as JSON for comparing builds. Each step's p50 and
+ * p99, and milliseconds per order (the inverse of throughput), are also
+ * listed in JMH's result layout, so CompareBaseline can diff two runs.
+ * Exits with 1 if a check fails or a step failed other than by refusal.
+ *
+ * Password hashing is turned down (unless -Dbookstore.passwordIterations
+ * is given) so the run measures the store rather than PBKDF2.
+ *
+ * Run: java -cp benchmarks/target/benchmarks.jar bookstore.ShopperLoadBenchmark
+ *          [shoppers, default 1000] [seconds, default 30] [mean think ms, default 20] [summary, default shopper-load.json]
+ */
+public class ShopperLoadBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final int STOCK = 1_000_000;
+    private static final int POPULAR = 20;
+    private static final int POPULAR_STOCK = 100;
+    private static final int ACCOUNTS = 500;
+    private static final int WARMUP_SECONDS = 5;
+    private static final String[] QUERIES = {"java", "clean code", "design", "goetz", "vol 12", "patterns guide"};
+
+    enum Step {
+        LOGIN("login"), BROWSE("browse"), SEARCH("search"), ADD_TO_CART("add-to-cart"),
+        REMOVE_FROM_CART("remove-from-cart"), PLACE_ORDER("place-order"), LOGOUT("logout");
+
+        final String label;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder refused = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Step(String label) { this.label = label; }
+    }
+
+    /** A step's work; StoreException is a refusal, anything else an error. */
+    private interface Call<T> {
+        T run();
+    }
+
+    private static final AtomicLongArray SOLD = new AtomicLongArray(BOOKS + 1);
+    private static final LongAdder ORDERS = new LongAdder();
+    private static final LongAdder VISITS = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        double think = args.length > 2 ? Double.parseDouble(args[2]) : 20;
+        File summary = new File(args.length > 3 ? args[3] : "shopper-load.json");
+        if (System.getProperty("bookstore.passwordIterations") == null) {
+            System.setProperty("bookstore.passwordIterations", "1000");
+        }
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-load-" + System.nanoTime());
+        BookStore store = new BookStore(60_000, dir);
+        store.catalog().ensureCapacity(BOOKS);
+        for (int i = 1; i <= BOOKS; i++) {
+            String title = StoreFixture.WORDS[i % StoreFixture.WORDS.length] + " "
+                    + StoreFixture.WORDS[(i / 7) % StoreFixture.WORDS.length] + " Vol " + i;
+            store.addBook(i, title, StoreFixture.AUTHORS[i % StoreFixture.AUTHORS.length], 100 + i % 900,
+                    i <= POPULAR ? POPULAR_STOCK : STOCK);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) store.register("shopper" + i, "secret");
+        store.searchIndex().awaitReady();
+        long ordersBefore = store.orderCount();
+        StoreService service = new StoreService(store);
+
+        ExecutorService threads = StoreExecutor.newVirtualThreadExecutor();
+        boolean virtual = threads != null;
+        if (!virtual) threads = Executors.newCachedThreadPool();
+        System.out.printf("%,d shoppers on %s threads, %d s after a %d s warm-up, thinking %.0f ms on average%n",
+                shoppers, virtual ? "virtual" : "platform", seconds, WARMUP_SECONDS, think);
+
+        long warmupEnd = System.nanoTime() + WARMUP_SECONDS * 1_000_000_000L;
+        long deadline = warmupEnd + seconds * 1_000_000_000L;
+        for (int s = 0; s < shoppers; s++) {
+            String account = "shopper" + (s % ACCOUNTS);
+            threads.execute(() -> shop(service, account, think, deadline));
+        }
+
+        // The measured window starts once the warm-up is over
+        Thread.sleep(WARMUP_SECONDS * 1000L);
+        LatencyHistogram.Snapshot[] before = new LatencyHistogram.Snapshot[Step.values().length];
+        long[] refusedBefore = new long[before.length];
+        long[] errorsBefore = new long[before.length];
+        for (Step step : Step.values()) {
+            before[step.ordinal()] = step.latency.snapshot();
+            refusedBefore[step.ordinal()] = step.refused.sum();
+            errorsBefore[step.ordinal()] = step.errors.sum();
+        }
+        long placedBefore = ORDERS.sum();
+        long visitsBefore = VISITS.sum();
+        long t0 = System.nanoTime();
+        Thread.sleep(Math.max(0, (deadline - t0) / 1_000_000));
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        LatencyHistogram.Snapshot[] window = new LatencyHistogram.Snapshot[before.length];
+        long steps = 0;
+        for (Step step : Step.values()) {
+            window[step.ordinal()] = step.latency.snapshot().minus(before[step.ordinal()]);
+        }
+        long orders = ORDERS.sum() - placedBefore;
+        long visits = VISITS.sum() - visitsBefore;
+        long[] refused = new long[before.length];
+        long[] errors = new long[before.length];
+        for (Step step : Step.values()) {
+            refused[step.ordinal()] = step.refused.sum() - refusedBefore[step.ordinal()];
+            errors[step.ordinal()] = step.errors.sum() - errorsBefore[step.ordinal()];
+            steps += window[step.ordinal()].count - refused[step.ordinal()] - errors[step.ordinal()];
+        }
+
+        // Shoppers finish the visit they are on, so every cart is ordered or released
+        threads.shutdown();
+        if (!threads.awaitTermination(5, TimeUnit.MINUTES)) System.err.println("Shoppers still running after 5 minutes");
+
+        System.out.printf("%,d visits, %,d orders, %,d steps done: %,.1f orders/s, %,.0f steps/s%n", visits, orders, steps,
+                orders / elapsed, steps / elapsed);
+        System.out.printf("%-17s %10s %9s %7s %9s %9s %9s %9s %9s%n", "step", "count", "refused", "errors",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Step step : Step.values()) {
+            LatencyHistogram.Snapshot w = window[step.ordinal()];
+            System.out.printf("%-17s %,10d %,9d %,7d %9.3f %9.3f %9.3f %9.3f %9.3f%n", step.label, w.count,
+                    refused[step.ordinal()], errors[step.ordinal()], w.percentile(0.5) / 1e6, w.percentile(0.9) / 1e6,
+                    w.percentile(0.99) / 1e6, w.percentile(0.999) / 1e6, w.max() / 1e6);
+        }
+
+        // Inventory: every unit is on the shelf or in an order, none held, none sold twice
+        long oversold = 0, mismatched = 0, held = 0, sold = 0;
+        for (int id = 1; id <= BOOKS; id++) {
+            Book book = store.findBook(id);
+            int initial = id <= POPULAR ? POPULAR_STOCK : STOCK;
+            if (book.getStock() < 0 || SOLD.get(id) > initial) oversold++;
+            if (book.getStock() + book.getReserved() + SOLD.get(id) != initial) mismatched++;
+            held += book.getReserved();
+            sold += SOLD.get(id);
+        }
+        long placed = ORDERS.sum();
+        SalesAnalytics.Report sales = store.salesReport(0, 0, 0);
+        long errorCount = 0;
+        for (Step step : Step.values()) errorCount += step.errors.sum();
+        boolean ok = check("no step failed except by refusal", errorCount == 0);
+        ok &= check("no book oversold", oversold == 0);
+        ok &= check("stock conserved: on the shelf + ordered = starting stock, for every book", mismatched == 0);
+        ok &= check("no stock held after every shopper logged out", held == 0 && store.sessions().size() == 0);
+        ok &= check("the store took exactly the orders placed", store.orderCount() - ordersBefore == placed);
+        ok &= check("sales totals match the units ordered", sales.units == sold && sales.orders == placed);
+
+        String json = summary(shoppers, seconds, think, virtual, elapsed, visits, orders, steps, window, refused, errors,
+                oversold, mismatched, held, ok);
+        Files.write(summary.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Summary written to " + summary.getPath());
+
+        service.shutdown();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+        if (!ok) System.exit(1);
+    }
+
+    // One shopper: visits until the deadline, always finishing the visit it is on
+    private static void shop(StoreService service, String account, double think, long deadline) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        double backoff = Math.max(1, think);
+        while (System.nanoTime() < deadline) {
+            Session session = step(Step.LOGIN, () -> service.login(account, "secret").join());
+            if (session == null) {
+                // Turned away ("the store is busy"): wait longer each time, as a client would
+                pause(rnd, backoff);
+                backoff = Math.min(backoff * 2, 1000);
+                continue;
+            }
+            backoff = Math.max(1, think);
+            VISITS.increment();
+            pause(rnd, think);
+            for (int looks = 1 + rnd.nextInt(4); looks > 0; looks--) {
+                if (rnd.nextBoolean()) {
+                    BookQuery q = new BookQuery();
+                    q.sort = SortedIndex.Field.values()[rnd.nextInt(3)];
+                    q.inStockOnly = true;
+                    q.offset = rnd.nextInt(200);
+                    q.limit = 20;
+                    step(Step.BROWSE, () -> service.browse(q).join());
+                } else {
+                    step(Step.SEARCH, () -> service.search(QUERIES[rnd.nextInt(QUERIES.length)], 20).join());
+                }
+                pause(rnd, think);
+            }
+            List<Integer> inCart = new ArrayList<>();
+            for (int wanted = 1 + rnd.nextInt(3); wanted > 0; wanted--) {
+                int id = rnd.nextInt(5) == 0 ? 1 + rnd.nextInt(POPULAR) : 1 + rnd.nextInt(BOOKS);
+                if (inCart.contains(id)) continue;
+                if (step(Step.ADD_TO_CART, () -> service.addToCart(session.id, id).join()) != null) inCart.add(id);
+                pause(rnd, think);
+            }
+            if (!inCart.isEmpty() && rnd.nextInt(10) < 3) {
+                int id = inCart.remove(rnd.nextInt(inCart.size()));
+                step(Step.REMOVE_FROM_CART, () -> service.removeFromCart(session.id, id).join());
+                pause(rnd, think);
+            }
+            if (!inCart.isEmpty()) {
+                Order order = step(Step.PLACE_ORDER, () -> service.placeOrder(session.id).join());
+                if (order != null) {
+                    for (int line = 0; line < order.lineCount(); line++) {
+                        SOLD.addAndGet(order.bookId(line), order.quantity(line));
+                    }
+                    ORDERS.increment();
+                }
+                pause(rnd, think);
+            }
+            step(Step.LOGOUT, () -> service.logout(session.id).join());
+        }
+    }
+
+    // Times the call; null if it was refused or failed
+    private static <T> T step(Step step, Call<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.run();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof StoreException) step.refused.increment();
+            else fail(step, e.getCause());
+            return null;
+        } catch (RuntimeException e) {
+            fail(step, e);
+            return null;
+        } finally {
+            step.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static void fail(Step step, Throwable e) {
+        step.errors.increment();
+        if (step.errors.sum() <= 3) System.err.println(step.label + ": " + e);
+    }
+
+    // Exponentially distributed around the mean, as independent shoppers arrive
+    private static void pause(ThreadLocalRandom rnd, double meanMillis) {
+        if (meanMillis <= 0) return;
+        long nanos = (long) (-Math.log(1 - rnd.nextDouble()) * meanMillis * 1e6);
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String summary(int shoppers, int seconds, double think, boolean virtual, double elapsed,
+                                  long visits, long orders, long steps, LatencyHistogram.Snapshot[] window,
+                                  long[] refused, long[] errors, long oversold, long mismatched, long held,
+                                  boolean passed) {
+        Json json = new Json().beginObject()
+                .field("shoppers", shoppers).field("seconds", seconds).field("thinkMillis", think)
+                .field("virtualThreads", virtual).field("javaVersion", System.getProperty("java.version"))
+                .field("cpus", Runtime.getRuntime().availableProcessors())
+                .field("visits", visits).field("orders", orders).field("steps", steps)
+                .field("ordersPerSecond", orders / elapsed).field("stepsPerSecond", steps / elapsed)
+                .name("latency").beginArray();
+        for (Step step : Step.values()) {
+            LatencyHistogram.Snapshot w = window[step.ordinal()];
+            json.beginObject().field("step", step.label).field("count", w.count)
+                    .field("refused", refused[step.ordinal()]).field("errors", errors[step.ordinal()])
+                    .field("p50Millis", w.percentile(0.5) / 1e6).field("p90Millis", w.percentile(0.9) / 1e6)
+                    .field("p99Millis", w.percentile(0.99) / 1e6).field("p999Millis", w.percentile(0.999) / 1e6)
+                    .field("maxMillis", w.max() / 1e6).endObject();
+        }
+        json.endArray().name("consistency").beginObject()
+                .field("oversoldBooks", oversold).field("booksNotConserved", mismatched)
+                .field("unitsHeldAfterLogout", held).field("passed", passed).endObject();
+
+        // The same numbers in JMH's layout, all lower-is-better, for CompareBaseline
+        json.name("results").beginArray();
+        result(json, "ShopperLoad.order", shoppers, think, orders == 0 ? 0 : elapsed * 1000 / orders, "ms/order");
+        for (Step step : Step.values()) {
+            LatencyHistogram.Snapshot w = window[step.ordinal()];
+            if (w.count == 0) continue;
+            result(json, "ShopperLoad." + step.label + ".p50", shoppers, think, w.percentile(0.5) / 1e6, "ms");
+            result(json, "ShopperLoad." + step.label + ".p99", shoppers, think, w.percentile(0.99) / 1e6, "ms");
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private static void result(Json json, String name, int shoppers, double think, double score, String unit) {
+        json.beginObject().field("benchmark", name)
+                .name("params").beginObject().field("shoppers", String.valueOf(shoppers))
+                .field("thinkMillis", String.valueOf((long) think)).endObject()
+                .name("primaryMetric").beginObject().field("score", score).field("scoreUnit", unit).endObject()
+                .endObject();
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+}
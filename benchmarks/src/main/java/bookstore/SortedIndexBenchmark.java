@@ -0,0 +1,168 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Browsing through the sorted indexes. Fills a store with synthetic books
+ * (1,000,000 by default), then updates, reserves, deletes and adds books
+ * so the indexes have been maintained rather than just built. Checks every
+ * index order, a price range, in-stock-only, top-N and a later page
+ * against filtering and sorting the catalog by hand, and times range and
+ * top-N queries against doing that sort per query.
+ *
+ * Run: java -Xmx4g -cp benchmarks/target/benchmarks.jar bookstore.SortedIndexBenchmark [books]
+ */
+public class SortedIndexBenchmark {
+
+    private static final int QUERIES = 10_000;
+    private static final String[] WORDS = {"Clean", "Code", "java", "Effective", "algorithms", "Design", "Patterns",
+            "head", "First", "Guide", "Concurrency", "practice", "Systems", "Networks", "Compilers", "1984", "2nd"};
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random rnd = new Random(42);
+        BookStore store = new BookStore(60_000);
+        store.catalog().ensureCapacity(n);
+        long t0 = System.nanoTime();
+        for (int i = 1; i <= n; i++) {
+            int stock = rnd.nextInt(10) == 0 ? 0 : rnd.nextInt(50);
+            store.addBook(i, title(rnd), "Author " + (i % 5000), rnd.nextInt(100_000) / 100.0, stock);
+        }
+        System.out.printf("Added %,d books in %d ms, keeping three sorted indexes%n", n, (System.nanoTime() - t0) / 1_000_000);
+        store.searchIndex().awaitReady();
+
+        // A day's worth of changes, in proportion
+        int changes = Math.max(1, n / 50);
+        t0 = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            Book b = store.findBook(1 + rnd.nextInt(n));
+            if (b == null) continue;
+            switch (i % 4) {
+                case 0:
+                    store.updateBook(b.getId(), rnd.nextBoolean() ? title(rnd) : b.getTitle(), b.getAuthor(),
+                            rnd.nextInt(100_000) / 100.0, rnd.nextInt(50));
+                    break;
+                case 1:
+                    if (b.tryReserve(1) && rnd.nextBoolean()) b.release(1);
+                    break;
+                case 2:
+                    store.deleteBook(b.getId());
+                    break;
+                default:
+                    store.addBook(n + i, title(rnd), "Author " + i, rnd.nextInt(100_000) / 100.0, rnd.nextInt(50));
+            }
+        }
+        System.out.printf("Applied %,d updates, reservations, deletes and adds in %d ms (%.1f us each)%n", changes,
+                (System.nanoTime() - t0) / 1_000_000, (System.nanoTime() - t0) / 1000.0 / changes);
+
+        List<Book> all = new ArrayList<>();
+        for (Book b : store.catalog()) all.add(b);
+        Comparator<Book> byPrice = Comparator.comparingDouble(Book::getPrice).thenComparingInt(Book::getId);
+        Comparator<Book> byStock = Comparator.comparingInt(Book::getStock).thenComparingInt(Book::getId);
+        Comparator<Book> byTitle = Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparingInt(Book::getId);
+
+        check(store, query(SortedIndex.Field.PRICE, false), all, b -> true, byPrice, "price order");
+        check(store, query(SortedIndex.Field.STOCK, true), all, b -> true, byStock.reversed(), "stock order, descending");
+        check(store, query(SortedIndex.Field.TITLE, false), all, b -> true, byTitle, "title order");
+        BookQuery range = query(SortedIndex.Field.PRICE, false);
+        range.minPrice = 400;
+        range.maxPrice = 600;
+        check(store, range, all, b -> b.getPrice() >= 400 && b.getPrice() <= 600, byPrice, "price between 400 and 600");
+        BookQuery inStock = query(SortedIndex.Field.STOCK, false);
+        inStock.inStockOnly = true;
+        check(store, inStock, all, b -> b.getStock() > 0, byStock, "in stock only");
+        BookQuery cheapest = query(SortedIndex.Field.PRICE, false);
+        cheapest.inStockOnly = true;
+        cheapest.limit = 50;
+        check(store, cheapest, all, b -> b.getStock() > 0, byPrice, "cheapest 50 in stock");
+        BookQuery page = query(SortedIndex.Field.TITLE, true);
+        page.offset = all.size() / 2;
+        page.limit = 50;
+        check(store, page, all, b -> true, byTitle.reversed(), "a page of titles, descending");
+        BookQuery unsorted = query(null, false);
+        unsorted.minPrice = 400;
+        unsorted.maxPrice = 600;
+        unsorted.offset = 100;
+        unsorted.limit = 50;
+        check(store, unsorted, all, b -> b.getPrice() >= 400 && b.getPrice() <= 600, null, "a page of a price range, catalog order");
+        System.out.println("All checks passed");
+
+        // Pages of 50 at random places in a price range, and top-50 by a field
+        t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            BookQuery q = query(SortedIndex.Field.PRICE, false);
+            q.minPrice = rnd.nextInt(800);
+            q.maxPrice = q.minPrice + 200;
+            q.offset = rnd.nextInt(1000);
+            q.limit = 50;
+            sink += store.browse(q).length;
+        }
+        report("price range, page of 50", t0);
+        t0 = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            BookQuery q = query(SortedIndex.Field.values()[i % 3], i % 2 == 0);
+            q.inStockOnly = true;
+            q.limit = 50;
+            sink += store.browse(q).length;
+        }
+        report("top 50 in stock by price, stock or title", t0);
+
+        // The same price range page done by sorting per query
+        int sorts = 10;
+        t0 = System.nanoTime();
+        for (int i = 0; i < sorts; i++) {
+            List<Book> matching = new ArrayList<>();
+            synchronized (store.catalog()) {
+                for (Book b : store.catalog()) if (b.getPrice() >= 400 && b.getPrice() <= 600) matching.add(b);
+            }
+            matching.sort(byPrice);
+            sink += matching.subList(0, Math.min(50, matching.size())).size();
+        }
+        System.out.printf("%-45s %,10.1f us/query%n", "price range by filter and sort, for comparison",
+                (System.nanoTime() - t0) / 1000.0 / sorts);
+        if (sink == 42) System.out.println();
+        store.shutdown();
+    }
+
+    private static BookQuery query(SortedIndex.Field sort, boolean descending) {
+        BookQuery q = new BookQuery();
+        q.sort = sort;
+        q.descending = descending;
+        return q;
+    }
+
+    private static void check(BookStore store, BookQuery q, List<Book> all, Predicate<Book> filter,
+                              Comparator<Book> order, String what) {
+        List<Book> expected = new ArrayList<>();
+        for (Book b : all) if (filter.test(b)) expected.add(b);
+        if (order != null) expected.sort(order);
+        int to = (int) Math.min(expected.size(), (long) q.offset + q.limit);
+        int[] ids = new int[Math.max(0, to - q.offset)];
+        for (int i = 0; i < ids.length; i++) ids[i] = expected.get(q.offset + i).getId();
+        int[] got = store.browse(q);
+        if (!Arrays.equals(got, ids)) {
+            System.err.println("Check failed: " + what + " (" + got.length + " books, expected " + ids.length + ")");
+            System.exit(1);
+        }
+    }
+
+    private static void report(String what, long t0) {
+        System.out.printf("%-45s %,10.1f us/query%n", what, (System.nanoTime() - t0) / 1000.0 / QUERIES);
+    }
+
+    private static String title(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int words = 1 + rnd.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        return sb.append(' ').append(rnd.nextInt(1000)).toString();
+    }
+}
@@ -0,0 +1,30 @@
+package bookstore;
+
+/** Builds the in-memory stores the JMH benchmarks run against. */
+final class StoreFixture {
+
+    static final String[] WORDS = {"Clean", "Code", "Java", "Effective", "Algorithms", "Design", "Patterns",
+            "Head", "First", "Guide", "Concurrency", "Practice", "Systems", "Networks", "Compilers"};
+    static final String[] AUTHORS = {"Robert Martin", "Joshua Bloch", "Thomas Cormen", "Kathy Sierra",
+            "Erich Gamma", "Brian Goetz", "Andrew Tanenbaum", "Alfred Aho"};
+    static final String[] QUERIES = {"java", "clean code", "design patterns", "goetz", "algorithms vol 12"};
+
+    private StoreFixture() { }
+
+    /**
+     * A store of books with ids 1..books and plenty of stock, its search
+     * index and suggestions fully built, so no background work competes
+     * with the measurement.
+     */
+    static BookStore store(int books) throws InterruptedException {
+        BookStore store = new BookStore(60_000);
+        store.catalog().ensureCapacity(books);
+        for (int i = 1; i <= books; i++) {
+            String title = WORDS[i % WORDS.length] + " " + WORDS[(i / 7) % WORDS.length] + " Vol " + i;
+            store.addBook(i, title, AUTHORS[i % AUTHORS.length], 100 + i % 900, 1_000_000);
+        }
+        store.searchIndex().awaitReady();
+        store.autocomplete().awaitIdle();
+        return store;
+    }
+}
@@ -0,0 +1,90 @@
+package bookstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the GUI's refresh*Table methods cost: telling the table model its data
+ * changed, then reading the cells of one screenful of rows, as JTable does
+ * when it repaints. Covers the book table (whole catalog and a search
+ * result) and the cart table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-Xms1g", "-Xmx2g", "-Djava.awt.headless=true"})
+public class TableRefreshBench {
+
+    private static final int VISIBLE_ROWS = 30;
+    private static final int CART_ITEMS = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    int books;
+
+    private BookStore store;
+    private CatalogTableModel bookTable;
+    private CatalogTableModel searchTable;
+    private CartTableModel cartTable;
+    private int[] results;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        store = StoreFixture.store(books);
+        PriceFormatCache prices = new PriceFormatCache(new DecimalFormat("₹#,##0.00"));
+        bookTable = new CatalogTableModel(store.catalog(), prices);
+        searchTable = new CatalogTableModel(store.catalog(), prices);
+        results = store.search("java", 1000);
+        Cart cart = new Cart();
+        for (int i = 1; i <= CART_ITEMS; i++) store.addToCart(cart, i);
+        cartTable = new CartTableModel(cart, prices);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    @Benchmark
+    public void refreshBookTable(Blackhole bh) {
+        bookTable.fireTableDataChanged();
+        paint(bookTable, bh);
+    }
+
+    @Benchmark
+    public void refreshBookTableWithSearchResults(Blackhole bh) {
+        searchTable.showOnly(results);
+        paint(searchTable, bh);
+    }
+
+    @Benchmark
+    public void refreshCartTable(Blackhole bh) {
+        cartTable.fireTableDataChanged();
+        paint(cartTable, bh);
+    }
+
+    private static void paint(AbstractTableModel model, Blackhole bh) {
+        int rows = Math.min(VISIBLE_ROWS, model.getRowCount());
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                bh.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}
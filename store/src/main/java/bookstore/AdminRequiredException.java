@@ -0,0 +1,11 @@
+package bookstore;
+
+/**
+ * An admin operation was attempted from a session that isn't an admin's.
+ */
+class AdminRequiredException extends StoreException {
+
+    AdminRequiredException() {
+        super("Admin access required");
+    }
+}
@@ -0,0 +1,152 @@
+package bookstore;
+
+import java.util.Arrays;
+
+/**
+ * "Customers also bought": for every pair of books bought together in one
+ * order, how many orders had both, and for every book the TOP books most
+ * often bought with it. OrderStore.add records each order, so the counts
+ * cover every placed, replayed and loaded order. Recording an order with m
+ * distinct books costs m(m-1)/2 counter updates and as many short top-list
+ * updates; only the first MAX_BOOKS distinct books of an order are paired,
+ * since a bulk order says little about which books go together.
+ *
+ * Pair counts live in one LongIntMap keyed by both ids. When it holds more
+ * than maxPairs pairs, the pairs bought together least often are dropped
+ * until it is down to three quarters. The top lists carry their own
+ * counts, so a listed pair that was dropped picks up where its list left
+ * off when it is bought again; any other dropped pair starts again from 1.
+ *
+ * Each book's top list is an immutable array published through a
+ * SharedArray, so lookups take no lock and cost the same however many
+ * orders and pairs there are. Recording is serialized by the OrderStore
+ * lock.
+ */
+class AlsoBought {
+
+    static final int TOP = 10;
+    static final int MAX_BOOKS = 32;
+    private static final int[] NONE = new int[0];
+
+    private final int maxPairs;
+    private final LongIntMap pairs;
+    // Pairs held when the next prune runs; above maxPairs if the last one couldn't get below it
+    private int pruneAt;
+
+    // Per book id: long[] of (count << 32 | book id), highest count first
+    private volatile SharedArray lists = SharedArray.EMPTY;
+    private SharedArray writing = SharedArray.EMPTY;
+    private Object owner = new Object();
+
+    AlsoBought(int maxPairs) {
+        this.maxPairs = maxPairs;
+        this.pairs = new LongIntMap(Math.min(maxPairs, 1 << 16));
+        this.pruneAt = maxPairs;
+    }
+
+    /** Up to TOP ids of the books most often bought with this one, most often first. */
+    int[] get(int bookId) {
+        long[] list = bookId < 0 ? null : (long[]) lists.get(bookId);
+        if (list == null) return NONE;
+        int[] ids = new int[list.length];
+        for (int i = 0; i < list.length; i++) ids[i] = (int) list[i];
+        return ids;
+    }
+
+    /** How many orders had both books; 0 if the pair has been dropped. */
+    synchronized int count(int a, int b) {
+        return a == b ? 0 : pairs.get(pairKey(a, b));
+    }
+
+    synchronized int pairCount() { return pairs.size(); }
+
+    synchronized void record(Order order) {
+        int[] ids = distinctBooks(order);
+        if (ids.length < 2) return;
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                long key = pairKey(ids[i], ids[j]);
+                int count = pairs.addTo(key, 1);
+                int listed = Math.max(listedCount(ids[i], ids[j]), listedCount(ids[j], ids[i]));
+                if (listed >= count) {
+                    count = listed + 1;
+                    pairs.put(key, count);
+                }
+                offer(ids[i], ids[j], count);
+                offer(ids[j], ids[i], count);
+            }
+        }
+        if (pairs.size() > pruneAt) prune();
+        lists = writing;
+        owner = new Object();
+    }
+
+    private static int[] distinctBooks(Order order) {
+        int lines = order.lineCount();
+        int[] ids = new int[Math.min(lines, MAX_BOOKS)];
+        int n = 0;
+        for (int line = 0; line < lines && n < ids.length; line++) {
+            int id = order.bookId(line);
+            if (id < 0) continue;
+            boolean seen = false;
+            for (int k = 0; k < n && !seen; k++) seen = ids[k] == id;
+            if (!seen) ids[n++] = id;
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    // Smaller id in the high half, so (a, b) and (b, a) are one pair
+    private static long pairKey(int a, int b) {
+        return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+    }
+
+    // Counts only go up, so a book can only join a list when its count with that book rises
+    private void offer(int book, int other, int count) {
+        long[] list = (long[]) writing.get(book);
+        int length = list == null ? 0 : list.length;
+        int at = 0;
+        while (at < length && (int) list[at] != other) at++;
+        if (at == length && length == TOP && count <= (int) (list[TOP - 1] >>> 32)) return;
+        long entry = (long) count << 32 | other;
+        long[] updated;
+        if (at < length) {
+            // Already listed: move it up past any it now outsells
+            updated = list.clone();
+            while (at > 0 && (updated[at - 1] >>> 32) < count) {
+                updated[at] = updated[at - 1];
+                at--;
+            }
+        } else {
+            updated = new long[Math.min(TOP, length + 1)];
+            at = Math.min(length, TOP - 1);
+            if (list != null) System.arraycopy(list, 0, updated, 0, at);
+            while (at > 0 && (updated[at - 1] >>> 32) < count) {
+                updated[at] = updated[at - 1];
+                at--;
+            }
+        }
+        updated[at] = entry;
+        writing = writing.set(book, updated, owner);
+    }
+
+    // The count a book's list holds for other, or 0 if other isn't listed
+    private int listedCount(int book, int other) {
+        long[] list = (long[]) writing.get(book);
+        if (list == null) return 0;
+        for (long entry : list) if ((int) entry == other) return (int) (entry >>> 32);
+        return 0;
+    }
+
+    // Drops the rarest pairs; the cut-off comes from a histogram of the counts
+    private void prune() {
+        int target = maxPairs / 4 * 3;
+        int[] byCount = new int[64];
+        pairs.forEach((key, count) -> byCount[Math.min(count, 63)]++);
+        int floor = 0;
+        int left = pairs.size();
+        while (left > target && floor < 62) left -= byCount[++floor];
+        int cutoff = floor;
+        pairs.retain((key, count) -> count > cutoff);
+        pruneAt = Math.max(maxPairs, pairs.size() + maxPairs / 4);
+    }
+}
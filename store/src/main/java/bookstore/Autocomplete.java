@@ -0,0 +1,406 @@
+package bookstore;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Type-ahead suggestions for the search box: the most ordered titles and
+ * authors that start with what the user has typed.
+ *
+ * Titles and authors are kept in a sorted array (a flattened prefix trie:
+ * every prefix is a contiguous range) with a max segment tree over their
+ * popularity. The top k of a prefix range come out of the tree best-first in
+ * O(k log n), so no per-node top-k lists have to be stored or rebuilt.
+ * Popularity is the number of copies of a book ordered, summed per title
+ * and per author. It starts from the sales totals of the orders already in
+ * the OrderStore, and every order added after that, placed or replayed,
+ * updates it in O(log n) per line, so the ranking survives a restart.
+ *
+ * Entries added since the array was built wait in a small sorted map, and
+ * lookups take their prefix range from it too. Once REBUILD_THRESHOLD have
+ * piled up, a rebuild is queued: the entries are sorted on a separate
+ * builder thread and swapped in by the worker, so no lookup ever sorts.
+ *
+ * All state is confined to one background thread; the builder only sorts
+ * entries by their final key. The EDT only submits work and gets results
+ * back through invokeLater, so a keystroke never waits on a lookup or a
+ * rebuild.
+ */
+class Autocomplete implements CatalogListener {
+
+    static final class Suggestion {
+        final String text;
+        final boolean author;
+        final long popularity;
+
+        Suggestion(String text, boolean author, long popularity) {
+            this.text = text;
+            this.author = author;
+            this.popularity = popularity;
+        }
+    }
+
+    // New entries wait in the pending map; this many queue a rebuild of the array
+    private static final int REBUILD_THRESHOLD = 1024;
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "autocomplete");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Sorts entries for a rebuild, so the worker keeps answering lookups meanwhile
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "autocomplete-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Catalog catalog;
+
+    // Worker-thread state
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final IntLongMap orderCounts = new IntLongMap();
+    private final TreeMap<String, Entry> pending = new TreeMap<>();
+    private Entry[] sorted = new Entry[0];
+    private long[] tree = {REMOVED, REMOVED};
+    private int leaves = 1;
+    // A rebuild is being sorted; its result is dropped if the array was rebuilt since it started
+    private boolean rebuilding;
+    private int generation;
+    // The initial load builds the array once at the end, so its entries skip the pending map
+    private boolean loading;
+
+    // Old text of the book being changed, captured on the mutating thread
+    private Book changing;
+    private String oldTitle, oldAuthor;
+
+    Autocomplete(Catalog catalog, OrderStore orders) {
+        this.catalog = catalog;
+        // Lock order as in Persistence: catalog, then orders
+        synchronized (catalog) {
+            synchronized (orders) {
+                IntLongMap sold = orders.sales().unitsByBook();
+                int n = catalog.size();
+                int[] ids = new int[n];
+                String[] titles = new String[n];
+                String[] authors = new String[n];
+                long[] popularity = new long[n];
+                int i = 0;
+                for (Book b : catalog) {
+                    ids[i] = b.getId();
+                    titles[i] = b.getTitle();
+                    authors[i] = b.getAuthor();
+                    popularity[i++] = sold.get(b.getId());
+                }
+                worker.execute(() -> {
+                    loading = true;
+                    for (int j = 0; j < n; j++) {
+                        // shutdown() interrupts a long initial load
+                        if ((j & 4095) == 0 && Thread.currentThread().isInterrupted()) return;
+                        if (popularity[j] != 0) orderCounts.put(ids[j], popularity[j]);
+                        addBook(ids[j], titles[j], authors[j]);
+                    }
+                    loading = false;
+                    rebuild();
+                });
+                catalog.addListener(this);
+                orders.setOrderListener(this::recordOrder);
+            }
+        }
+    }
+
+    /** Looks up suggestions in the background and hands them to {@code onEdt} on the EDT. */
+    void suggest(String prefix, int limit, Consumer<List<Suggestion>> onEdt) {
+        worker.execute(() -> {
+            List<Suggestion> result = query(prefix, limit);
+            SwingUtilities.invokeLater(() -> onEdt.accept(result));
+        });
+    }
+
+    Future<List<Suggestion>> lookup(String prefix, int limit) {
+        return worker.submit(() -> query(prefix, limit));
+    }
+
+    /** Counts an order's books towards the popularity of their current titles and authors. */
+    void recordOrder(Order order) {
+        int n = order.lineCount();
+        int[] ids = new int[n];
+        int[] quantities = new int[n];
+        String[] titles = new String[n];
+        String[] authors = new String[n];
+        for (int i = 0; i < n; i++) {
+            // Books deleted since are skipped, as their entries are gone
+            Book b = catalog.get(order.bookId(i));
+            if (b == null) continue;
+            Book.Values values = b.values();
+            ids[i] = b.getId();
+            quantities[i] = order.quantity(i);
+            titles[i] = values.title;
+            authors[i] = values.author;
+        }
+        worker.execute(() -> {
+            for (int j = 0; j < n; j++) {
+                if (titles[j] == null) continue;
+                orderCounts.addTo(ids[j], quantities[j]);
+                addWeight(titles[j], false, quantities[j]);
+                addWeight(authors[j], true, quantities[j]);
+            }
+        });
+    }
+
+    /** Waits until every change so far has been taken in and no rebuild is left running, e.g. before timing. */
+    void awaitIdle() throws InterruptedException {
+        try {
+            while (worker.submit(() -> rebuilding).get()) Thread.sleep(10);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    void shutdown() {
+        worker.shutdownNow();
+        builder.shutdownNow();
+    }
+
+    // Catalog events (mutating thread): forward the text to the worker
+
+    @Override
+    public void bookAdded(Book book, int row) {
+        int id = book.getId();
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        worker.execute(() -> addBook(id, title, author));
+    }
+
+    @Override
+    public void bookRemoved(Book book, int row) {
+        int id = book.getId();
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        worker.execute(() -> {
+            removeBook(id, title, author);
+            orderCounts.remove(id);
+        });
+    }
+
+    @Override
+    public void bookChanging(Book book, int row) {
+        changing = book;
+        oldTitle = book.getTitle();
+        oldAuthor = book.getAuthor();
+    }
+
+    @Override
+    public void bookChanged(Book book, int row) {
+        if (changing != book) return;
+        changing = null;
+        if (oldTitle.equals(book.getTitle()) && oldAuthor.equals(book.getAuthor())) return;
+        int id = book.getId();
+        String fromTitle = oldTitle, fromAuthor = oldAuthor;
+        String title = book.getTitle(), author = book.getAuthor();
+        worker.execute(() -> {
+            removeBook(id, fromTitle, fromAuthor);
+            addBook(id, title, author);
+        });
+    }
+
+    // Worker thread only from here on
+
+    private void addBook(int id, String title, String author) {
+        long popularity = orderCounts.get(id);
+        addRef(title, false, 1, popularity);
+        addRef(author, true, 1, popularity);
+    }
+
+    private void removeBook(int id, String title, String author) {
+        long popularity = orderCounts.get(id);
+        addRef(title, false, -1, -popularity);
+        addRef(author, true, -1, -popularity);
+    }
+
+    private void addRef(String text, boolean author, int books, long popularity) {
+        String key = normalize(text);
+        String mapKey = (author ? 'a' : 't') + key;
+        Entry e = entries.get(mapKey);
+        if (e == null) {
+            if (books <= 0) return;
+            e = new Entry(key, text, author);
+            entries.put(mapKey, e);
+            if (!loading) {
+                pending.put(e.sortKey(), e);
+                if (pending.size() >= REBUILD_THRESHOLD) scheduleRebuild();
+            }
+        }
+        e.books += books;
+        e.popularity += popularity;
+        if (e.books <= 0) {
+            entries.remove(mapKey);
+            e.popularity = REMOVED;
+            pending.remove(e.sortKey());
+        }
+        if (e.slot >= 0) setLeaf(e.slot, e.popularity);
+    }
+
+    private void addWeight(String text, boolean author, long delta) {
+        Entry e = entries.get((author ? 'a' : 't') + normalize(text));
+        if (e == null) return;
+        e.popularity += delta;
+        if (e.slot >= 0) setLeaf(e.slot, e.popularity);
+    }
+
+    private List<Suggestion> query(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<Entry> found = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        int lo = lowerBound(key);
+        int hi = lowerBound(key + Character.MAX_VALUE);
+        topInRange(lo, hi, limit, found);
+        int fromArray = found.size();
+        found.addAll(pending.subMap(key, key + Character.MAX_VALUE).values());
+        if (found.size() > fromArray) found.sort(BEST_FIRST);
+
+        List<Suggestion> result = new ArrayList<>(Math.min(limit, found.size()));
+        for (int i = 0; i < found.size() && i < limit; i++) {
+            Entry e = found.get(i);
+            result.add(new Suggestion(e.text, e.author, e.popularity));
+        }
+        return result;
+    }
+
+    private static final Comparator<Entry> BEST_FIRST = (a, b) -> {
+        int c = Long.compare(b.popularity, a.popularity);
+        return c != 0 ? c : a.key.compareTo(b.key);
+    };
+
+    // Best-first walk of the segment tree restricted to [lo, hi); ties go to the leftmost entry
+    private void topInRange(int lo, int hi, int limit, List<Entry> out) {
+        if (lo >= hi) return;
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            int c = Long.compare(tree[b], tree[a]);
+            return c != 0 ? c : Integer.compare(leftmostLeaf(a), leftmostLeaf(b));
+        });
+        for (int l = lo + leaves, r = hi + leaves; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) queue.add(l++);
+            if ((r & 1) == 1) queue.add(--r);
+        }
+        while (out.size() < limit && !queue.isEmpty()) {
+            int node = queue.poll();
+            if (tree[node] == REMOVED) break;
+            if (node >= leaves) {
+                out.add(sorted[node - leaves]);
+            } else {
+                queue.add(2 * node);
+                queue.add(2 * node + 1);
+            }
+        }
+    }
+
+    private int leftmostLeaf(int node) {
+        while (node < leaves) node <<= 1;
+        return node;
+    }
+
+    private void setLeaf(int slot, long popularity) {
+        int node = slot + leaves;
+        tree[node] = popularity;
+        for (node >>>= 1; node > 0; node >>>= 1) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid].key.compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static final Comparator<Entry> BY_KEY = (a, b) -> {
+        int c = a.key.compareTo(b.key);
+        return c != 0 ? c : Boolean.compare(a.author, b.author);
+    };
+
+    // Rebuilds the array here and now; only for the initial load, before any lookup
+    private void rebuild() {
+        Entry[] all = entries.values().toArray(new Entry[0]);
+        Arrays.sort(all, BY_KEY);
+        install(all);
+    }
+
+    // Sorts the entries on the builder and has the worker swap them in; lookups go on meanwhile
+    private void scheduleRebuild() {
+        if (rebuilding) return;
+        rebuilding = true;
+        int started = generation;
+        Entry[] all = entries.values().toArray(new Entry[0]);
+        builder.execute(() -> {
+            Arrays.sort(all, BY_KEY);
+            worker.execute(() -> {
+                rebuilding = false;
+                if (started != generation) return;
+                install(all);
+                if (pending.size() >= REBUILD_THRESHOLD) scheduleRebuild();
+            });
+        });
+    }
+
+    // Makes the array and tree from sorted entries, with popularity as it is now. Entries added since
+    // the sort stay pending; ones removed since keep a REMOVED leaf until the next rebuild.
+    private void install(Entry[] all) {
+        generation++;
+        leaves = Integer.highestOneBit(Math.max(1, all.length * 2 - 1));
+        long[] t = new long[2 * leaves];
+        Arrays.fill(t, REMOVED);
+        for (int i = 0; i < all.length; i++) {
+            all[i].slot = i;
+            t[leaves + i] = all[i].popularity;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            t[node] = Math.max(t[2 * node], t[2 * node + 1]);
+        }
+        sorted = all;
+        tree = t;
+        pending.values().removeIf(e -> e.slot >= 0);
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        final String key;
+        final String text;
+        final boolean author;
+        int books;
+        long popularity;
+        int slot = -1;
+
+        Entry(String key, String text, boolean author) {
+            this.key = key;
+            this.text = text;
+            this.author = author;
+        }
+
+        // Orders as BY_KEY does, for the pending map
+        String sortKey() { return key + (author ? '\u0001' : '\u0000'); }
+    }
+}
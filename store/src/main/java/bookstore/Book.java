@@ -0,0 +1,191 @@
+package bookstore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Data Model
+/**
+ * A book: id, title, author, price and inventory. Where the values live is
+ * up to the subclass: Book.of() makes an ordinary object holding its own
+ * fields, while a columnar Catalog keeps its books in BookColumns and hands
+ * out views onto them. Either way the getters, update and reservation
+ * methods below behave the same.
+ *
+ * Title, author and price are never changed in place: update() publishes
+ * them as a new immutable Values, so a reader sees either all of an update
+ * or none of it. values() reads them together. Inventory is different: it
+ * is one counter, changed with CAS (see pack()). A listed book's catalog
+ * also publishes each update's Values in a new Catalog.Version, so values
+ * read through one snapshot agree across books; the getters here give the
+ * latest.
+ */
+abstract class Book {
+
+    // Catalog this book belongs to; notified of every change. Null for cart copies.
+    private volatile Catalog catalog;
+
+    /** A book that holds its own values. */
+    static Book of(int id, String title, String author, double price, int stock) {
+        return new Fields(id, new Values(title.trim(), author.trim(), price), pack(stock, 0));
+    }
+
+    /** Highest price a book may have: order lines keep prices as whole paise in an int. */
+    static final double MAX_PRICE = Integer.MAX_VALUE / 100.0;
+
+    /**
+     * Why a book can't have these values, or null if it can. Admin edits,
+     * the HTTP API and imports all check with this.
+     */
+    static String invalid(String title, String author, double price, int stock) {
+        if (title.trim().isEmpty() || author.trim().isEmpty()) return "title and author are required";
+        // Double.compare puts -0.0 below 0 (it would show as "-0.00"); NaN fails the upper bound
+        if (!(Double.compare(price, 0.0) >= 0 && price <= MAX_PRICE)) return String.format("price must be from 0 to %.2f", MAX_PRICE);
+        if (stock < 0) return "negative stock";
+        return null;
+    }
+
+    /** One version of a book's title, author and price. */
+    static final class Values {
+        final String title;
+        final String author;
+        final double price;
+
+        Values(String title, String author, double price) {
+            this.title = title;
+            this.author = author;
+            this.price = price;
+        }
+    }
+
+    public abstract int getId();
+    public abstract String getTitle();
+    public abstract String getAuthor();
+    public abstract double getPrice();
+
+    /** The current title, author and price, all from the same update. */
+    abstract Values values();
+
+    // Storage. Values arrive trimmed and replace the current ones whole; inventory is packed (see pack()).
+    abstract void storeValues(Values values);
+    abstract long inventory();
+    abstract boolean casInventory(long expect, long update);
+    abstract void addInventory(long delta);
+
+    public int getStock() { return available(inventory()); }
+    public int getReserved() { return reserved(inventory()); }
+
+    /** A copy outside any catalog, with these values and the current available units, e.g. for a cart. */
+    Book copy(Values values) {
+        return new Fields(getId(), values, pack(getStock(), 0));
+    }
+
+    /** Units the store physically has: available plus held in carts. This is what gets persisted. */
+    int getOnHand() {
+        long current = inventory();
+        return available(current) + reserved(current);
+    }
+
+    /** Sets the available units; units held in carts are left alone. */
+    public void setStock(int stock) {
+        changing();
+        long current;
+        do {
+            current = inventory();
+        } while (!casInventory(current, pack(stock, reserved(current))));
+        changed(null);
+    }
+
+    // Reservations: move units between available and reserved atomically
+
+    /** Moves qty units from available to reserved; false if fewer than qty are available. */
+    boolean tryReserve(int qty) {
+        long current;
+        do {
+            current = inventory();
+            if (available(current) < qty) return false;
+        } while (!casInventory(current, pack(available(current) - qty, reserved(current) + qty)));
+        stockChanged();
+        return true;
+    }
+
+    /** Returns qty reserved units to available. */
+    void release(int qty) {
+        long current;
+        do {
+            current = inventory();
+        } while (!casInventory(current, pack(available(current) + qty, reserved(current) - qty)));
+        stockChanged();
+    }
+
+    /** Drops qty reserved units for good: they have been sold. */
+    void commitReserved(int qty) {
+        addInventory(-qty);
+    }
+
+    /** Puts qty sold units back on the shelf, e.g. when the order they were sold in is rolled back. */
+    void returnSold(int qty) {
+        addInventory(pack(qty, 0));
+        stockChanged();
+    }
+
+    /** Replaces the title, author and price in one step. Called under the catalog lock. */
+    void update(String title, String author, double price) {
+        changing();
+        storeValues(new Values(title.trim(), author.trim(), price));
+        changed(values()); // as stored, e.g. with a columnar catalog's shared strings
+    }
+
+    void attach(Catalog catalog) { this.catalog = catalog; }
+
+    boolean isListed() { return catalog != null; }
+
+    private void changing() {
+        Catalog c = catalog;
+        if (c != null) c.bookChanging(this);
+    }
+
+    private void changed(Values updated) {
+        Catalog c = catalog;
+        if (c != null) c.bookChanged(this, updated);
+    }
+
+    private void stockChanged() {
+        Catalog c = catalog;
+        if (c != null) c.stockChanged(this);
+    }
+
+    // Available units in the high 32 bits, units held in carts in the low 32 bits.
+    // Updated with CAS so reservations never oversell without taking a lock.
+
+    static long pack(int available, int reserved) {
+        return ((long) available << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int available(long inventory) { return (int) (inventory >> 32); }
+
+    private static int reserved(long inventory) { return (int) inventory; }
+
+    /** The object layout: one object per book with its own fields. */
+    private static final class Fields extends Book {
+        private final int id;
+        // Replaced under the catalog lock, read from any thread without it
+        private volatile Values values;
+        private final AtomicLong inventory;
+
+        Fields(int id, Values values, long inventory) {
+            this.id = id;
+            this.values = values;
+            this.inventory = new AtomicLong(inventory);
+        }
+
+        public int getId() { return id; }
+        public String getTitle() { return values.title; }
+        public String getAuthor() { return values.author; }
+        public double getPrice() { return values.price; }
+
+        Values values() { return values; }
+        void storeValues(Values values) { this.values = values; }
+        long inventory() { return inventory.get(); }
+        boolean casInventory(long expect, long update) { return inventory.compareAndSet(expect, update); }
+        void addInventory(long delta) { inventory.addAndGet(delta); }
+    }
+}
@@ -0,0 +1,242 @@
+package bookstore;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Storage of a columnar Catalog: every book is a slot across primitive
+ * columns (id and packed inventory), its values another slot across the
+ * value columns (price, and title and author as StringTable codes), and
+ * the catalog's Book for it is a View onto its book slot. Compared with an
+ * object per book this saves the per-object headers, the AtomicLong per
+ * book and every repeated author string.
+ *
+ * Columns are split into fixed-size pages that are never copied, so growing
+ * the columns doesn't move a slot: an inventory CAS can't be lost to a copy
+ * and readers without the catalog lock always find their slot. Inventory is
+ * updated with CAS from any thread.
+ *
+ * A value slot is written once; an update writes a new one, points the book
+ * slot at it and frees the old one. Freed value slots are reused, so each
+ * carries a generation, bumped before a reused slot is written, and the
+ * book slot points at (generation, slot). A reader that finds the
+ * generation changed after reading the values read a slot being reused, and
+ * reads again; readers therefore see the old values or the new, never a mix.
+ *
+ * A book slot is freed once its book has left the catalog and its View is
+ * no longer reachable (a phantom reference tells), so a cart or hold still
+ * holding a removed book keeps working. Freed book slots are reused by
+ * later adds.
+ */
+class BookColumns {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final class Page {
+        final int[] ids = new int[PAGE_SIZE];
+        final AtomicLongArray inventory = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray values = new AtomicLongArray(PAGE_SIZE); // generation << 32 | value slot
+    }
+
+    // Atomic arrays so that a value read can't be reordered past the generation check that follows it
+    private static final class ValuePage {
+        final AtomicLongArray prices = new AtomicLongArray(PAGE_SIZE); // Double.doubleToRawLongBits
+        final AtomicIntegerArray titles = new AtomicIntegerArray(PAGE_SIZE);
+        final AtomicIntegerArray authors = new AtomicIntegerArray(PAGE_SIZE);
+        final AtomicIntegerArray generations = new AtomicIntegerArray(PAGE_SIZE);
+    }
+
+    /** Frees the book slot of a removed book once nothing can reach its View. */
+    private static final class Released extends PhantomReference<Book> {
+        final int slot;
+
+        Released(Book view, int slot, ReferenceQueue<Book> queue) {
+            super(view, queue);
+            this.slot = slot;
+        }
+    }
+
+    private volatile Page[] pages = new Page[0];
+    private volatile ValuePage[] valuePages = new ValuePage[0];
+    private final StringTable strings = new StringTable();
+
+    // Writers' state: slots handed out so far and the freed ones waiting for reuse
+    private int size;
+    private int valueSlots;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int[] freeValueSlots = new int[16];
+    private int freeValueSlotCount;
+
+    private final ReferenceQueue<Book> unreachable = new ReferenceQueue<>();
+    private final Set<Released> released = new HashSet<>(); // keeps each reference alive until it is queued
+
+    /** Copies the book's values into a new slot; returns the view that stands for it from now on. */
+    synchronized Book add(Book book) {
+        reclaim();
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            slot = size++;
+            if ((slot >>> PAGE_BITS) == pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new Page();
+                pages = grown;
+            }
+        }
+        Page p = pages[slot >>> PAGE_BITS];
+        int i = slot & PAGE_MASK;
+        p.ids[i] = book.getId();
+        p.inventory.set(i, book.inventory());
+        p.values.set(i, addValues(book.values()));
+        return new View(this, slot);
+    }
+
+    /** The book left the catalog; its slots are freed once nothing holds it any more. */
+    synchronized void removed(Book book) {
+        if (book instanceof View && ((View) book).columns == this) {
+            released.add(new Released(book, ((View) book).slot, unreachable));
+        }
+    }
+
+    private synchronized void storeValues(int slot, Book.Values values) {
+        AtomicLongArray column = page(slot).values;
+        long old = column.get(slot & PAGE_MASK);
+        column.set(slot & PAGE_MASK, addValues(values));
+        freeValues((int) old);
+    }
+
+    // Returns generation << 32 | value slot
+    private long addValues(Book.Values values) {
+        int slot;
+        if (freeValueSlotCount > 0) {
+            slot = freeValueSlots[--freeValueSlotCount];
+        } else {
+            slot = valueSlots++;
+            if ((slot >>> PAGE_BITS) == valuePages.length) {
+                ValuePage[] grown = Arrays.copyOf(valuePages, valuePages.length + 1);
+                grown[valuePages.length] = new ValuePage();
+                valuePages = grown;
+            }
+        }
+        ValuePage p = valuePages[slot >>> PAGE_BITS];
+        int i = slot & PAGE_MASK;
+        // A new generation first, so a reader of the old values that sees any of the new ones fails its check
+        int generation = p.generations.incrementAndGet(i);
+        p.prices.set(i, Double.doubleToRawLongBits(values.price));
+        p.titles.set(i, strings.intern(values.title));
+        p.authors.set(i, strings.intern(values.author));
+        return (long) generation << 32 | slot;
+    }
+
+    private void freeValues(int slot) {
+        if (freeValueSlotCount == freeValueSlots.length) freeValueSlots = Arrays.copyOf(freeValueSlots, freeValueSlotCount * 2);
+        freeValueSlots[freeValueSlotCount++] = slot;
+    }
+
+    // Frees the slots of removed books whose views have been collected
+    private void reclaim() {
+        for (Reference<? extends Book> r; (r = unreachable.poll()) != null; ) {
+            Released gone = (Released) r;
+            released.remove(gone);
+            Page p = page(gone.slot);
+            freeValues((int) p.values.get(gone.slot & PAGE_MASK));
+            if (freeSlotCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            freeSlots[freeSlotCount++] = gone.slot;
+        }
+    }
+
+    /** Book slots in use: the catalog's books, and removed ones something still holds. */
+    synchronized int slots() {
+        reclaim();
+        return size - freeSlotCount;
+    }
+
+    /** Distinct titles and authors stored. */
+    synchronized int strings() { return strings.size(); }
+
+    private Page page(int slot) {
+        return pages[slot >>> PAGE_BITS];
+    }
+
+    private ValuePage valuePage(int slot) {
+        return valuePages[slot >>> PAGE_BITS];
+    }
+
+    /** A book in the columns; one per slot, so it can be compared by identity like any Book. */
+    private static final class View extends Book {
+        private final BookColumns columns;
+        private final int slot;
+
+        View(BookColumns columns, int slot) {
+            this.columns = columns;
+            this.slot = slot;
+        }
+
+        public int getId() { return columns.page(slot).ids[slot & PAGE_MASK]; }
+
+        private long valueSlot() { return columns.page(slot).values.get(slot & PAGE_MASK); }
+
+        // Whether the value slot still holds the generation v was read with
+        private boolean unchanged(long v) {
+            int at = (int) v;
+            return columns.valuePage(at).generations.get(at & PAGE_MASK) == (int) (v >>> 32);
+        }
+
+        public String getTitle() {
+            while (true) {
+                long v = valueSlot();
+                int code = columns.valuePage((int) v).titles.get((int) v & PAGE_MASK);
+                if (unchanged(v)) return columns.strings.get(code);
+            }
+        }
+
+        public String getAuthor() {
+            while (true) {
+                long v = valueSlot();
+                int code = columns.valuePage((int) v).authors.get((int) v & PAGE_MASK);
+                if (unchanged(v)) return columns.strings.get(code);
+            }
+        }
+
+        public double getPrice() {
+            while (true) {
+                long v = valueSlot();
+                long bits = columns.valuePage((int) v).prices.get((int) v & PAGE_MASK);
+                if (unchanged(v)) return Double.longBitsToDouble(bits);
+            }
+        }
+
+        Values values() {
+            while (true) {
+                long v = valueSlot();
+                ValuePage p = columns.valuePage((int) v);
+                int i = (int) v & PAGE_MASK;
+                int title = p.titles.get(i);
+                int author = p.authors.get(i);
+                long price = p.prices.get(i);
+                if (unchanged(v)) {
+                    return new Values(columns.strings.get(title), columns.strings.get(author), Double.longBitsToDouble(price));
+                }
+            }
+        }
+
+        void storeValues(Values values) { columns.storeValues(slot, values); }
+        long inventory() { return columns.page(slot).inventory.get(slot & PAGE_MASK); }
+
+        boolean casInventory(long expect, long update) {
+            return columns.page(slot).inventory.compareAndSet(slot & PAGE_MASK, expect, update);
+        }
+
+        void addInventory(long delta) { columns.page(slot).inventory.addAndGet(slot & PAGE_MASK, delta); }
+    }
+}
@@ -0,0 +1,45 @@
+package bookstore;
+
+/**
+ * A browse of the catalog: which books (a price range, only those in
+ * stock), in what order, and which page of the result. Answered by
+ * BookStore.browse() from the SortedIndexes.
+ */
+class BookQuery {
+
+    /** Order of the result; null for catalog (table) order. */
+    SortedIndex.Field sort;
+    boolean descending;
+    double minPrice = Double.NEGATIVE_INFINITY;
+    double maxPrice = Double.POSITIVE_INFINITY;
+    boolean inStockOnly;
+    int offset;
+    int limit = Integer.MAX_VALUE;
+
+    boolean hasPriceRange() {
+        return minPrice != Double.NEGATIVE_INFINITY || maxPrice != Double.POSITIVE_INFINITY;
+    }
+
+    // The keys of the sort index this query covers, inclusive
+
+    long fromKey() {
+        if (sort == SortedIndex.Field.PRICE) return SortedIndex.priceKey(minPrice);
+        if (sort == SortedIndex.Field.STOCK && inStockOnly) return SortedIndex.stockKey(1);
+        return Long.MIN_VALUE;
+    }
+
+    long toKey() {
+        return sort == SortedIndex.Field.PRICE ? SortedIndex.priceKey(maxPrice) : Long.MAX_VALUE;
+    }
+
+    /** True if the key range is the whole query: sorted, and any condition is on the sort field itself. */
+    boolean isKeyRange() {
+        return sort != null && (sort == SortedIndex.Field.PRICE || !hasPriceRange())
+                && (sort == SortedIndex.Field.STOCK || !inStockOnly);
+    }
+
+    boolean matches(Book book) {
+        double price = book.getPrice();
+        return price >= minPrice && price <= maxPrice && (!inStockOnly || book.getStock() > 0);
+    }
+}
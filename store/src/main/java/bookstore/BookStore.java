@@ -0,0 +1,662 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The store's business logic, independent of any UI: catalog, users, carts,
+ * checkout, orders and admin operations. Every method is thread-safe and
+ * runs on the caller's thread; StoreService runs them on a worker pool for
+ * the GUI. Refusals are reported as StoreException with a user-facing
+ * message.
+ *
+ * With a data directory every mutation is journaled through Persistence and
+ * the store comes back as it was after a restart; without one it lives only
+ * in memory.
+ */
+class BookStore {
+
+    // How long an item in the cart holds its stock (-Dbookstore.holdSeconds, default 15 min)
+    static final long HOLD_MILLIS = Long.getLong("bookstore.holdSeconds", 900) * 1000;
+
+    // Where the store is persisted (-Dbookstore.dataDir, default ./data)
+    static final File DATA_DIR = new File(System.getProperty("bookstore.dataDir", "data"));
+
+    // Most orders committed with one journal sync (-Dbookstore.checkoutBatch, default 256)
+    static final int CHECKOUT_BATCH = Integer.getInteger("bookstore.checkoutBatch", 256);
+
+    // Sessions idle this long are closed and their stock released (-Dbookstore.sessionIdleMinutes, default 30)
+    static final long SESSION_IDLE_MILLIS = Long.getLong("bookstore.sessionIdleMinutes", 30) * 60_000;
+
+    // Most sessions open at once; the least recently used makes way (-Dbookstore.maxSessions, default 10000)
+    static final int MAX_SESSIONS = Integer.getInteger("bookstore.maxSessions", 10_000);
+
+    // Threads parsing a bulk catalog import (-Dbookstore.importThreads, default one per core)
+    static final int IMPORT_THREADS = Integer.getInteger("bookstore.importThreads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int IMPORT_LOCK_BATCH = 1024;
+
+    // Keep the catalog in primitive columns rather than an object per book (-Dbookstore.columnarCatalog=true)
+    static final boolean COLUMNAR_CATALOG = Boolean.getBoolean("bookstore.columnarCatalog");
+
+    // Most book pairs whose co-purchase counts are kept before the rarest are dropped (-Dbookstore.maxCoPurchasePairs, default 1M)
+    static final int MAX_CO_PURCHASE_PAIRS = Integer.getInteger("bookstore.maxCoPurchasePairs", 1_000_000);
+
+    // Threads hashing passwords for logins and registrations (-Dbookstore.verifyThreads, default one per core)
+    static final int VERIFY_THREADS = Integer.getInteger("bookstore.verifyThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    // Data stores. Catalog mutations, and the indexes that follow them, happen under the catalog lock.
+    private final Catalog catalog = new Catalog(COLUMNAR_CATALOG);
+    private final OrderStore orders = new OrderStore();
+    private final UserDirectory users = new UserDirectory();
+    private final PasswordHasher hasher = new PasswordHasher();
+    // Password hashing is slow on purpose; it gets its own pool so a burst of logins can't take every store worker
+    private final StoreExecutor verifier = new StoreExecutor(VERIFY_THREADS, "password-verify");
+    private final Persistence persistence; // null when in memory only
+    private final Journal journal;
+    private final SearchIndex searchIndex;
+    private final SortedIndex byPrice, byStock, byTitle;
+    private final Autocomplete autocomplete;
+    private final ReservationEngine reservations;
+    private final CheckoutPipeline checkout;
+    private final SessionRegistry sessions;
+    private final Metrics metrics = new Metrics();
+
+    private volatile BiConsumer<Cart, Book> holdExpiredListener = (cart, book) -> { };
+
+    BookStore() {
+        this(HOLD_MILLIS, DATA_DIR);
+    }
+
+    /** A store that lives only in memory. */
+    BookStore(long holdMillis) {
+        this(holdMillis, null);
+    }
+
+    BookStore(long holdMillis, File dataDir) {
+        if (dataDir != null) {
+            try {
+                persistence = new Persistence(dataDir, catalog, users, orders);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load the store from " + dataDir, e);
+            }
+            journal = persistence.journal();
+        } else {
+            persistence = null;
+            journal = Journal.disabled();
+        }
+        // Built after recovery so the restored books are indexed in bulk
+        searchIndex = new SearchIndex(catalog);
+        byPrice = new SortedIndex(catalog, SortedIndex.Field.PRICE);
+        byStock = new SortedIndex(catalog, SortedIndex.Field.STOCK);
+        byTitle = new SortedIndex(catalog, SortedIndex.Field.TITLE);
+        autocomplete = new Autocomplete(catalog, orders);
+        reservations = new ReservationEngine(holdMillis);
+        reservations.setExpiryListener(hold -> {
+            if (hold.owner instanceof Cart && ((Cart) hold.owner).removeIfHeldBy(hold)) {
+                holdExpiredListener.accept((Cart) hold.owner, hold.book);
+            }
+        });
+        checkout = new CheckoutPipeline(journal, this::checkout, CHECKOUT_BATCH);
+        sessions = new SessionRegistry(SESSION_IDLE_MILLIS, MAX_SESSIONS, session -> {
+            for (ReservationEngine.Hold hold : session.cart.close()) reservations.release(hold);
+        });
+    }
+
+    /** Seeds the demo books and accounts, but only into a store that has nothing yet. */
+    void initSampleData() {
+        seedSampleData();
+        sync();
+    }
+
+    private void seedSampleData() {
+        synchronized (catalog) {
+            synchronized (users) {
+                if (!catalog.isEmpty() || !users.isEmpty()) return;
+                addSampleBook(Book.of(1, "Clean Code", "Robert C. Martin", 450.0, 25));
+                addSampleBook(Book.of(2, "Effective Java", "Joshua Bloch", 550.0, 18));
+                addSampleBook(Book.of(3, "Introduction to Algorithms", "Cormen", 900.0, 12));
+                addSampleBook(Book.of(4, "Design Patterns", "Gang of Four", 600.0, 30));
+                addSampleBook(Book.of(5, "Head First Java", "Kathy Sierra", 400.0, 22));
+
+                addUser(new User("user", hasher.hash("1234"), false));
+                addUser(new User("admin", hasher.hash("1234"), true));
+            }
+        }
+    }
+
+    private void addSampleBook(Book book) {
+        catalog.add(book);
+        journal.appendBook(book);
+    }
+
+    private void addUser(User user) {
+        if (!users.add(user)) throw new StoreException("Username already exists!");
+        journal.appendUser(user);
+    }
+
+    Catalog catalog() { return catalog; }
+
+    Autocomplete autocomplete() { return autocomplete; }
+
+    SearchIndex searchIndex() { return searchIndex; }
+
+    /** The catalog in order of this field; read it through one SortedIndex.Version at a time. */
+    SortedIndex sortedIndex(SortedIndex.Field field) {
+        switch (field) {
+            case PRICE: return byPrice;
+            case STOCK: return byStock;
+            default: return byTitle;
+        }
+    }
+
+    ReservationEngine reservations() { return reservations; }
+
+    UserDirectory users() { return users; }
+
+    SessionRegistry sessions() { return sessions; }
+
+    /** Called on the timer thread after an expired hold has been dropped from its cart. */
+    void setHoldExpiredListener(BiConsumer<Cart, Book> listener) {
+        this.holdExpiredListener = listener;
+    }
+
+    /** Rolls the journal into a fresh snapshot now, instead of waiting for it to grow. */
+    void compact() throws IOException {
+        if (persistence != null) persistence.compact();
+    }
+
+    CheckoutPipeline checkoutPipeline() { return checkout; }
+
+    /** Timing of every operation below, for the Diagnostics card and JMX. */
+    Metrics metrics() { return metrics; }
+
+    void shutdown() {
+        checkout.shutdown();
+        verifier.shutdown();
+        sessions.shutdown();
+        reservations.shutdown();
+        autocomplete.shutdown();
+        searchIndex.close();
+        metrics.shutdown();
+        if (persistence != null) {
+            try {
+                persistence.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the journal: " + e);
+            }
+        }
+    }
+
+    // Users
+
+    /** login() on the password-verify pool. */
+    CompletableFuture<User> loginAsync(String username, String password) {
+        return verifier.submit(() -> login(username, password));
+    }
+
+    /** register() on the password-verify pool. */
+    CompletableFuture<Void> registerAsync(String username, String password) {
+        return verifier.submit(() -> {
+            register(username, password);
+            return null;
+        });
+    }
+
+    // Each operation below records its time and outcome in metrics, refusals counting as failed
+
+    User login(String username, String password) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            if (username.isEmpty() || password.isEmpty()) throw new StoreException("Please fill all fields");
+            User user = users.get(username);
+            // Unknown names are hashed too, so they take as long to refuse as wrong passwords
+            if (!hasher.verify(password, user == null ? null : user.passwordHash)) {
+                throw new StoreException("Invalid credentials!\nDemo: user/1234 or admin/1234");
+            }
+            if (hasher.needsRehash(user.passwordHash)) user = rehash(user, password);
+            ok = true;
+            return user;
+        } finally {
+            metrics.login.record(start, ok);
+        }
+    }
+
+    // Upgrades an outdated hash now that we have the password
+    private User rehash(User user, String password) {
+        User upgraded = new User(user.username, hasher.hash(password), user.isAdmin);
+        synchronized (users) {
+            if (!users.replace(user, upgraded)) return user;
+            journal.appendUser(upgraded);
+        }
+        sync();
+        return upgraded;
+    }
+
+    /** Starts a session for a logged-in user, with an empty cart of its own. */
+    Session openSession(User user) {
+        return sessions.open(user);
+    }
+
+    /** The open session with this id, marked active; throws SessionExpiredException if it is gone. */
+    Session session(String id) {
+        Session session = sessions.get(id);
+        if (session == null) throw new SessionExpiredException();
+        return session;
+    }
+
+    /** The session, provided it is an admin's; throws AdminRequiredException otherwise. */
+    Session adminSession(String id) {
+        Session session = session(id);
+        if (!session.user.isAdmin) throw new AdminRequiredException();
+        return session;
+    }
+
+    /** Logs the session out and gives back the stock its cart held. */
+    void closeSession(String id) {
+        sessions.close(id);
+    }
+
+    void register(String username, String password) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            if (username.isEmpty() || password.isEmpty() || username.length() < 3) {
+                throw new StoreException("Username & password must be 3+ characters");
+            }
+            if (users.get(username) != null) throw new StoreException("Username already exists!");
+            User user = new User(username, hasher.hash(password), false);
+            // The add is atomic, so of two registrations racing past the check above only one gets in
+            synchronized (users) {
+                addUser(user);
+            }
+            sync();
+            ok = true;
+        } finally {
+            metrics.register.record(start, ok);
+        }
+    }
+
+    // Catalog
+
+    Book findBook(int id) {
+        return catalog.get(id);
+    }
+
+    /** Books most often bought together with this one, most often first, leaving out any since deleted. */
+    List<Book> alsoBought(int id) {
+        long start = System.nanoTime();
+        int[] ids = orders.alsoBought().get(id);
+        List<Book> books = new ArrayList<>(ids.length);
+        for (int other : ids) {
+            Book book = catalog.get(other);
+            if (book != null) books.add(book);
+        }
+        metrics.alsoBought.record(start, true);
+        return books;
+    }
+
+    /** Up to limit books in catalog (table) order, starting at row offset. */
+    List<Book> books(int offset, int limit) {
+        return books(catalog.snapshot(), offset, limit);
+    }
+
+    private static List<Book> books(Catalog.Version catalog, int offset, int limit) {
+        int start = Math.max(0, offset);
+        int end = (int) Math.min(catalog.size(), (long) start + limit);
+        List<Book> page = new ArrayList<>(Math.max(0, end - start));
+        for (int row = start; row < end; row++) page.add(catalog.bookAt(row));
+        return page;
+    }
+
+    /**
+     * Adds every book in a CSV or TSV file (see CatalogCsv). Lines that don't
+     * parse, and books whose id is already taken, are skipped and reported in
+     * the result. Books go in IMPORT_LOCK_BATCH at a time, so searches and
+     * carts aren't held up for long, and each chunk of the file is journaled
+     * with one sync; books imported before a cancel stay.
+     */
+    CatalogCsv.Result importBooks(File file, DoubleConsumer progress) {
+        try {
+            return CatalogCsv.read(file, IMPORT_THREADS, progress, (rows, result) -> {
+                for (int from = 0; from < rows.size; from += IMPORT_LOCK_BATCH) {
+                    int to = Math.min(rows.size, from + IMPORT_LOCK_BATCH);
+                    synchronized (catalog) {
+                        for (int i = from; i < to; i++) {
+                            Book book = rows.books[i];
+                            if (catalog.add(book)) {
+                                journal.appendBook(book);
+                                result.imported++;
+                            } else {
+                                result.reject(rows.lines[i], "book id " + book.getId() + " already exists");
+                            }
+                        }
+                    }
+                }
+                sync();
+            });
+        } catch (IOException e) {
+            throw new StoreException("Could not import " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Writes the whole catalog to a CSV or TSV file, in table order; returns how many books. */
+    int exportBooks(File file, DoubleConsumer progress) {
+        try {
+            // The books and their values when the export started, in one snapshot; edits made during the
+            // export don't show up in it. Stock is written as it is when the book is reached.
+            Catalog.Version snapshot = catalog.snapshot();
+            return CatalogCsv.write(file, new CatalogCsv.Source() {
+                public int size() { return snapshot.size(); }
+
+                public Book bookAt(int row) { return snapshot.bookAt(row); }
+
+                public Book.Values valuesAt(int row) { return snapshot.valuesAt(row); }
+            }, progress);
+        } catch (IOException e) {
+            throw new StoreException("Could not export to " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ids of the books matching the query, in its order, from its offset.
+     * Sorted queries walk a SortedIndex from the first rank in range; a
+     * price range on a price-sorted query, or in-stock-only on a
+     * stock-sorted one, is a rank range, and any other condition filters
+     * the walk. Paging through a rank range starts at the offset directly.
+     */
+    int[] browse(BookQuery q) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int[] ids = new int[Math.min(q.limit, 256)];
+            int found = 0;
+            // One version of the index, or of the catalog, for the whole walk; no lock
+            SortedIndex.Version index = q.sort == null ? null : sortedIndex(q.sort).version();
+            Catalog.Version rows = index == null ? catalog.snapshot() : null;
+            int from = index == null ? 0 : index.rankOf(q.fromKey());
+            int to = index == null ? rows.size() : index.rankAfter(q.toKey());
+            // Every book in a pure key range matches, so its offset is a jump; otherwise matches are counted off
+            boolean keyRange = index == null ? !q.hasPriceRange() && !q.inStockOnly : q.isKeyRange();
+            int skip = keyRange ? 0 : q.offset;
+            for (int i = keyRange ? q.offset : 0; i < to - from && found < q.limit; i++) {
+                int rank = q.descending ? to - 1 - i : from + i;
+                Book book = index == null ? rows.bookAt(rank) : index.get(rank);
+                if (!q.matches(book) || skip-- > 0) continue;
+                if (found == ids.length) ids = Arrays.copyOf(ids, (int) Math.min(q.limit, found * 2L));
+                ids[found++] = book.getId();
+            }
+            ok = true;
+            return Arrays.copyOf(ids, found);
+        } finally {
+            metrics.browse.record(start, ok);
+        }
+    }
+
+    int[] search(String query, int limit) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int[] ids = searchIndex.search(query, limit, catalog.snapshot());
+            ok = true;
+            return ids;
+        } finally {
+            metrics.search.record(start, ok);
+        }
+    }
+
+    // Cart and checkout
+
+    /** Reserves one unit for the cart and returns the book that was added. */
+    Book addToCart(Cart cart, int bookId) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            if (cart.contains(bookId)) throw new StoreException("Book already in cart!");
+            // The cart line keeps the price of this version; it is what checkout charges
+            Catalog.Version version = catalog.snapshot();
+            Book book = version.get(bookId);
+            // Reserving is the stock check: it fails atomically when nothing is left
+            ReservationEngine.Hold hold = book == null ? null : reservations.reserve(book, 1, cart);
+            if (hold == null) throw new StoreException("Book out of stock or not found");
+            // A concurrent add of the same book may have won since the check above; the loser gives its hold back
+            if (!cart.add(book.copy(version.valuesOf(bookId)), hold)) {
+                reservations.release(hold);
+                if (cart.isClosed()) throw new SessionExpiredException();
+                throw new StoreException("Book already in cart!");
+            }
+            ok = true;
+            return book;
+        } finally {
+            metrics.addToCart.record(start, ok);
+        }
+    }
+
+    void removeFromCart(Cart cart, int bookId) {
+        long start = System.nanoTime();
+        ReservationEngine.Hold hold = cart.remove(bookId);
+        if (hold != null) reservations.release(hold);
+        metrics.removeFromCart.record(start, true);
+    }
+
+    /** Gives back the stock held by everything in the cart and empties it. */
+    void releaseCart(Cart cart) {
+        for (ReservationEngine.Hold hold : cart.clear()) {
+            reservations.release(hold);
+        }
+    }
+
+    /** Places the order through the checkout pipeline; completes once the order is on disk. */
+    CompletableFuture<Order> submitOrder(User user, Cart cart) {
+        long start = System.nanoTime();
+        // Timed to completion, so it includes waiting for the batch's sync
+        CompletableFuture<Order> order = checkout.submit(user, cart);
+        order.whenComplete((o, e) -> metrics.placeOrder.record(start, e == null));
+        return order;
+    }
+
+    Order placeOrder(User user, Cart cart) {
+        try {
+            return submitOrder(user, cart).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    // Runs on the checkout committer: validates and commits one order and journals it, unsynced
+    private Order checkout(User user, Cart cart) {
+        if (cart.isEmpty()) throw new StoreException("Cart is empty");
+        List<Book> items = cart.items();
+
+        // Holds that expired must be re-reserved before anything is committed
+        List<Book> unavailable = new ArrayList<>();
+        for (Book b : items) {
+            ReservationEngine.Hold hold = cart.holdFor(b.getId());
+            if (hold != null && hold.isActive()) continue;
+            Book live = catalog.get(b.getId());
+            ReservationEngine.Hold fresh = live == null ? null : reservations.reserve(live, 1, cart);
+            if (fresh != null) {
+                if (cart.replaceHold(b.getId(), fresh)) continue;
+                // The line left the cart meanwhile, or the session ended
+                reservations.release(fresh);
+                if (cart.isClosed()) throw new SessionExpiredException();
+            } else if (cart.contains(b.getId())) {
+                unavailable.add(b);
+            }
+        }
+        if (!unavailable.isEmpty()) throw soldOut(cart, unavailable);
+
+        // A hold can still lapse before its commit; it is re-reserved then, and if the stock is gone
+        // the lines committed so far go back on the shelf, so an order is placed whole or not at all.
+        // Lines no longer in the cart, removed by the shopper or by hold expiry, are not sold.
+        List<Book> ordered = new ArrayList<>();
+        List<ReservationEngine.Hold> sold = new ArrayList<>();
+        for (Book b : items) {
+            ReservationEngine.Hold hold = cart.holdFor(b.getId());
+            if (hold == null) continue;
+            if (!reservations.commit(hold)) {
+                Book live = catalog.get(b.getId());
+                hold = live == null ? null : reservations.reserve(live, 1, cart);
+                if (hold != null && !cart.replaceHold(b.getId(), hold)) {
+                    reservations.release(hold);
+                    if (!cart.isClosed()) continue;
+                    rollBack(cart, sold);
+                    throw new SessionExpiredException();
+                }
+                if (hold == null || !reservations.commit(hold)) {
+                    if (cart.contains(b.getId())) unavailable.add(b);
+                    continue;
+                }
+            }
+            sold.add(hold);
+            ordered.add(b);
+        }
+        if (!unavailable.isEmpty()) {
+            rollBack(cart, sold);
+            throw soldOut(cart, unavailable);
+        }
+        if (ordered.isEmpty()) throw new StoreException("Cart is empty");
+        for (int i = 0; i < ordered.size(); i++) {
+            cart.remove(ordered.get(i).getId());
+            journal.appendStock(sold.get(i).book);
+        }
+
+        Order order = new Order(user.username, ordered);
+        synchronized (orders) {
+            orders.add(order);
+            journal.appendOrder(order);
+        }
+        return order;
+    }
+
+    // Puts the committed lines back on the shelf; they stay in the cart, held again where the stock allows
+    private void rollBack(Cart cart, List<ReservationEngine.Hold> sold) {
+        for (ReservationEngine.Hold hold : sold) {
+            reservations.refund(hold);
+            ReservationEngine.Hold again = reservations.reserve(hold.book, 1, cart);
+            if (again != null && !cart.replaceHold(hold.book.getId(), again)) reservations.release(again);
+        }
+    }
+
+    // Takes the books out of the cart and says which; nothing was ordered
+    private static StoreException soldOut(Cart cart, List<Book> unavailable) {
+        StringBuilder titles = new StringBuilder();
+        for (Book b : unavailable) {
+            cart.remove(b.getId());
+            titles.append("\n- ").append(b.getTitle());
+        }
+        return new StoreException("No longer in stock, removed from your cart:" + titles
+                + "\nNothing was ordered; please review and order again.");
+    }
+
+    /** A page of the user's order history, newest first; admins page through everyone's orders. */
+    OrderStore.Page orderHistory(User user, int cursor, int limit) {
+        long start = System.nanoTime();
+        OrderStore.Page page = orders.page(user.isAdmin ? null : user.username, cursor, limit);
+        metrics.orderHistory.record(start, true);
+        return page;
+    }
+
+    int orderCount() { return orders.size(); }
+
+    /** Sales so far, from the running totals: the top books and customers, and the latest days and hours. */
+    SalesAnalytics.Report salesReport(int top, int days, int hours) {
+        long start = System.nanoTime();
+        SalesAnalytics.Report report = orders.sales().report(top, days, hours, System.currentTimeMillis());
+        metrics.salesReport.record(start, true);
+        return report;
+    }
+
+    /** Writes every sales total to a CSV file; returns how many rows. */
+    int exportSales(File file) {
+        try {
+            return orders.sales().export(file);
+        } catch (IOException e) {
+            throw new StoreException("Could not export to " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Admin
+
+    void addBook(int id, String title, String author, double price, int stock) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            if (title.isEmpty() || author.isEmpty()) throw new StoreException("Fill all fields");
+            checkBook(title, author, price, stock);
+            Book book = Book.of(id, title, author, price, stock);
+            synchronized (catalog) {
+                if (!catalog.add(book)) throw new StoreException("ID already exists");
+                journal.appendBook(book);
+            }
+            sync();
+            ok = true;
+        } finally {
+            metrics.addBook.record(start, ok);
+        }
+    }
+
+    void updateBook(int id, String title, String author, double price, int stock) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            synchronized (catalog) {
+                Book book = catalog.get(id);
+                if (book == null) throw new StoreException("Book not found");
+
+                // Title and author only if filled; all three are published together, so readers never see half of it
+                if (title.isEmpty()) title = book.getTitle();
+                if (author.isEmpty()) author = book.getAuthor();
+                checkBook(title, author, price, stock);
+                book.update(title, author, price);
+                book.setStock(stock);
+                journal.appendBook(book);
+            }
+            sync();
+            ok = true;
+        } finally {
+            metrics.updateBook.record(start, ok);
+        }
+    }
+
+    private static void checkBook(String title, String author, double price, int stock) {
+        String problem = Book.invalid(title, author, price, stock);
+        if (problem != null) throw new StoreException("Invalid book: " + problem);
+    }
+
+    boolean deleteBook(int id) {
+        long start = System.nanoTime();
+        boolean deleted = false;
+        try {
+            synchronized (catalog) {
+                if (catalog.remove(id) == null) return false;
+                journal.appendDeleteBook(id);
+            }
+            sync();
+            deleted = true;
+            return true;
+        } finally {
+            metrics.deleteBook.record(start, deleted);
+        }
+    }
+
+    // Makes the changes journaled so far durable; outside the catalog lock, so readers don't wait on the disk
+    private void sync() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            throw new StoreException("Could not save the change: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shopper's cart: copies of the books as they were when added (what the
+ * cart table shows) and the stock hold taken for each. Thread-safe, since
+ * store operations and hold expiry run off the EDT. Once its session is
+ * closed the cart takes no more items.
+ */
+class Cart {
+
+    private final List<Book> items = new ArrayList<>();
+    private final Map<Integer, ReservationEngine.Hold> holds = new HashMap<>();
+    private boolean closed;
+
+    synchronized int size() { return items.size(); }
+
+    synchronized boolean isEmpty() { return items.isEmpty(); }
+
+    synchronized Book itemAt(int row) {
+        return row < items.size() ? items.get(row) : null;
+    }
+
+    synchronized boolean isClosed() { return closed; }
+
+    synchronized boolean contains(int bookId) {
+        return holds.containsKey(bookId);
+    }
+
+    synchronized List<Book> items() {
+        return new ArrayList<>(items);
+    }
+
+    synchronized ReservationEngine.Hold holdFor(int bookId) {
+        return holds.get(bookId);
+    }
+
+    /**
+     * Adds the item with its hold; false if the cart is closed or already has
+     * the book, in which case the caller keeps the hold.
+     */
+    synchronized boolean add(Book item, ReservationEngine.Hold hold) {
+        if (closed || holds.containsKey(item.getId())) return false;
+        items.add(item);
+        holds.put(item.getId(), hold);
+        return true;
+    }
+
+    /**
+     * Backs the item with a new hold; false if the cart is closed or no longer
+     * has the book, in which case the caller keeps the hold.
+     */
+    synchronized boolean replaceHold(int bookId, ReservationEngine.Hold hold) {
+        if (closed || !holds.containsKey(bookId)) return false;
+        holds.put(bookId, hold);
+        return true;
+    }
+
+    /** Removes the item and returns its hold, or null if it wasn't in the cart. */
+    synchronized ReservationEngine.Hold remove(int bookId) {
+        items.removeIf(b -> b.getId() == bookId);
+        return holds.remove(bookId);
+    }
+
+    /** Removes the item only if it is still backed by this hold. */
+    synchronized boolean removeIfHeldBy(ReservationEngine.Hold hold) {
+        int id = hold.book.getId();
+        if (holds.get(id) != hold) return false;
+        remove(id);
+        return true;
+    }
+
+    /** Empties the cart for good and returns the holds it had. */
+    synchronized List<ReservationEngine.Hold> close() {
+        closed = true;
+        return clear();
+    }
+
+    /** Empties the cart and returns the holds it had. */
+    synchronized List<ReservationEngine.Hold> clear() {
+        List<ReservationEngine.Hold> released = new ArrayList<>(holds.values());
+        items.clear();
+        holds.clear();
+        return released;
+    }
+}
@@ -0,0 +1,54 @@
+package bookstore;
+
+import javax.swing.table.AbstractTableModel;
+
+/** Table model over the live cart; cells are read on demand like CatalogTableModel. */
+class CartTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"ID", "Title", "Author", "Price"};
+
+    private Cart cart;
+    private final PriceFormatCache prices;
+
+    CartTableModel(Cart cart, PriceFormatCache prices) {
+        this.cart = cart;
+        this.prices = prices;
+    }
+
+    void setCart(Cart cart) {
+        this.cart = cart;
+        fireTableDataChanged();
+    }
+
+    /** Item in this row, or null if the cart has changed since the row was painted. */
+    Book bookAt(int row) {
+        return cart.itemAt(row);
+    }
+
+    @Override
+    public int getRowCount() { return cart.size(); }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book b = cart.itemAt(row);
+        if (b == null) return null;
+        switch (column) {
+            case 0: return b.getId();
+            case 1: return b.getTitle();
+            case 2: return b.getAuthor();
+            case 3: return prices.format(b.getPrice());
+            default: return null;
+        }
+    }
+}
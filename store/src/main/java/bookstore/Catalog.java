@@ -0,0 +1,347 @@
+package bookstore;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Book catalog with O(1) lookup, insert and delete by book id.
+ *
+ * Books live in a dense array that gives the tables a stable row order
+ * (insertion order). An open-addressing hash index maps each id to its row.
+ * Deleting moves the last book into the freed row, so every other row keeps
+ * its position.
+ *
+ * Every mutation, including changes made through a Book's update(), is
+ * reported to the registered CatalogListeners.
+ *
+ * A columnar catalog keeps the books' values in BookColumns instead of one
+ * object per book, for very large inventories. add() then stores a view
+ * onto the columns in place of the given book. Its Versions still hold a
+ * Values per row, sharing the columns' strings.
+ *
+ * Writers lock the catalog, and listeners run while it is held; stock
+ * changes from reservations are the exception and are passed on without
+ * it. Readers don't lock either: every add, remove and update publishes a
+ * new immutable Version (the rows, each row's Values, and an id index
+ * giving each book's row) through a single volatile reference, and size(),
+ * get(), indexOf(), bookAt() and iteration read the latest one. A Version
+ * is made of SharedArrays, so it shares all but the few nodes a mutation
+ * touched with the one before. To read rows that must agree, e.g. a page
+ * or an export, take one snapshot() and read from that.
+ *
+ * A Version's valuesAt() gives each book's title, author and price as they
+ * were when it was published, so values read through one snapshot are a
+ * point-in-time copy of the catalog; the getters on a Book give its latest
+ * values. Stock is not versioned: reservations change it with CAS and
+ * without the lock, so it is always the current count.
+ */
+class Catalog implements Iterable<Book> {
+
+    private static final int EMPTY = -1;
+
+    // The writers' state, under the lock. rows, values and byId are published as they are after each mutation.
+    private SharedArray rows = SharedArray.EMPTY;
+    private SharedArray values = SharedArray.EMPTY; // Book.Values of each row
+    private int size;
+    private Object owner = new Object();
+
+    // Hash index: keys[i] is a book id, slots[i] its row, or EMPTY; byId holds the book and its row at the same i
+    private int[] keys = new int[32];
+    private int[] slots = newSlots(32);
+    private int mask = 31;
+    private SharedArray byId = SharedArray.EMPTY;
+
+    private volatile Version current = new Version(SharedArray.EMPTY, SharedArray.EMPTY, SharedArray.EMPTY, 0, 31);
+
+    private final BookColumns columns; // null for one object per book
+
+    private final CopyOnWriteArrayList<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    Catalog() {
+        this(false);
+    }
+
+    Catalog(boolean columnar) {
+        this.columns = columnar ? new BookColumns() : null;
+    }
+
+    boolean isColumnar() { return columns != null; }
+
+    public void addListener(CatalogListener listener) { listeners.add(listener); }
+
+    public void removeListener(CatalogListener listener) { listeners.remove(listener); }
+
+    /** The catalog as of the last add, remove or update. */
+    Version snapshot() { return current; }
+
+    public int size() { return current.size; }
+
+    public boolean isEmpty() { return current.size == 0; }
+
+    public Book get(int id) { return current.get(id); }
+
+    public boolean contains(int id) { return current.get(id) != null; }
+
+    /** Row of the book with this id, or -1 if it is not in the catalog. */
+    public int indexOf(int id) { return current.indexOf(id); }
+
+    public Book bookAt(int row) { return current.bookAt(row); }
+
+    /** Makes room for this many books in total, e.g. before a bulk load. */
+    public synchronized void ensureCapacity(int books) {
+        int capacity = keys.length;
+        while (books * 2 > capacity) capacity *= 2;
+        if (capacity > keys.length) {
+            rehash(capacity);
+            publish();
+        }
+    }
+
+    /**
+     * Appends the book; returns false if its id is already taken. A columnar
+     * catalog stores a view with the same values instead, which get() returns.
+     */
+    public synchronized boolean add(Book book) {
+        int id = book.getId();
+        if (find(id) != EMPTY) return false;
+
+        if (columns != null) book = columns.add(book);
+        rows = rows.set(size, book, owner);
+        values = values.set(size, book.values(), owner);
+        if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+        byId = byId.set(put(id, size), new Entry(book, size), owner);
+        size++;
+        book.attach(this);
+        publish();
+        for (CatalogListener l : listeners) l.bookAdded(book, size - 1);
+        return true;
+    }
+
+    /** Removes and returns the book with this id, or null if there is none. */
+    public synchronized Book remove(int id) {
+        int row = find(id);
+        if (row == EMPTY) return null;
+
+        Book removed = row(row);
+        int last = size - 1;
+        if (row != last) {
+            Book moved = row(last);
+            rows = rows.set(row, moved, owner);
+            values = values.set(row, values.get(last), owner);
+            byId = byId.set(put(moved.getId(), row), new Entry(moved, row), owner);
+        }
+        rows = rows.set(last, null, owner);
+        values = values.set(last, null, owner);
+        size--;
+        delete(id);
+        removed.attach(null);
+        if (columns != null) columns.removed(removed);
+        publish();
+        for (CatalogListener l : listeners) l.bookRemoved(removed, row);
+        return removed;
+    }
+
+    public synchronized void clear() {
+        while (size > 0) {
+            remove(row(size - 1).getId());
+        }
+    }
+
+    // Called by Book setters, before and after the field is written. An update passes the new values,
+    // which are published before listeners hear of them; a stock change passes null.
+    synchronized void bookChanging(Book book) {
+        int row = find(book.getId());
+        if (row == EMPTY || row(row) != book) return;
+        for (CatalogListener l : listeners) l.bookChanging(book, row);
+    }
+
+    synchronized void bookChanged(Book book, Book.Values updated) {
+        int row = find(book.getId());
+        if (row == EMPTY || row(row) != book) return;
+        if (updated != null) {
+            values = values.set(row, updated, owner);
+            publish();
+        }
+        for (CatalogListener l : listeners) l.bookChanged(book, row);
+    }
+
+    // Called by reservations on any thread, after the inventory CAS. Not under the lock, so a
+    // reservation never waits for a writer; the row is the book's row in the latest version.
+    void stockChanged(Book book) {
+        Version version = current;
+        int row = version.indexOf(book.getId());
+        if (row == EMPTY || version.bookAt(row) != book) return;
+        for (CatalogListener l : listeners) l.stockChanged(book, row);
+    }
+
+    /** Iterates over the latest snapshot. */
+    @Override
+    public Iterator<Book> iterator() {
+        return current.iterator();
+    }
+
+    // A book and its row in the versions that share this entry
+    private static final class Entry {
+        final Book book;
+        final int row;
+
+        Entry(Book book, int row) {
+            this.book = book;
+            this.row = row;
+        }
+    }
+
+    /**
+     * The catalog's books and their values at one point in time. Never
+     * changes, so it can be read from any thread without the lock, and a
+     * book in it stays at its row; only stock is live (see above).
+     */
+    static final class Version implements Iterable<Book> {
+        private final SharedArray rows;
+        private final SharedArray values;
+        private final SharedArray byId;
+        private final int size;
+        private final int mask;
+
+        private Version(SharedArray rows, SharedArray values, SharedArray byId, int size, int mask) {
+            this.rows = rows;
+            this.values = values;
+            this.byId = byId;
+            this.size = size;
+            this.mask = mask;
+        }
+
+        int size() { return size; }
+
+        Book bookAt(int row) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+            return (Book) rows.get(row);
+        }
+
+        /** Title, author and price of the book at this row as of this version. */
+        Book.Values valuesAt(int row) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+            return (Book.Values) values.get(row);
+        }
+
+        /** Values of the book with this id as of this version, or null if it is not in it. */
+        Book.Values valuesOf(int id) {
+            Entry e = entry(id);
+            return e == null ? null : (Book.Values) values.get(e.row);
+        }
+
+        Book get(int id) {
+            Entry e = entry(id);
+            return e == null ? null : e.book;
+        }
+
+        /** Row of the book with this id, or -1 if it is not in this version. */
+        int indexOf(int id) {
+            Entry e = entry(id);
+            return e == null ? EMPTY : e.row;
+        }
+
+        private Entry entry(int id) {
+            for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+                Entry e = (Entry) byId.get(i);
+                if (e == null || e.book.getId() == id) return e;
+            }
+        }
+
+        @Override
+        public Iterator<Book> iterator() {
+            return new Iterator<Book>() {
+                private int next;
+
+                public boolean hasNext() { return next < size; }
+
+                public Book next() {
+                    if (next >= size) throw new NoSuchElementException();
+                    return (Book) rows.get(next++);
+                }
+            };
+        }
+    }
+
+    // Makes the writers' state the current version; nodes written so far are shared from now on
+    private void publish() {
+        current = new Version(rows, values, byId, size, mask);
+        owner = new Object();
+    }
+
+    private Book row(int row) {
+        return (Book) rows.get(row);
+    }
+
+    // Index helpers
+
+    // The writers' lookup, under the lock
+    private int find(int id) {
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY) {
+            if (keys[i] == id) return slots[i];
+            i = (i + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] s = new int[capacity];
+        Arrays.fill(s, EMPTY);
+        return s;
+    }
+
+    // Returns the index slot
+    private int put(int id, int row) {
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slots[i] = row;
+        return i;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void delete(int id) {
+        int i = hash(id) & mask;
+        while (keys[i] != id || slots[i] == EMPTY) {
+            i = (i + 1) & mask;
+        }
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == EMPTY) break;
+            int home = hash(keys[j]) & mask;
+            // Move j into the gap unless its home lies cyclically in (gap, j]
+            boolean stays = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+            if (!stays) {
+                keys[gap] = keys[j];
+                slots[gap] = slots[j];
+                byId = byId.set(gap, byId.get(j), owner);
+                gap = j;
+            }
+        }
+        slots[gap] = EMPTY;
+        byId = byId.set(gap, null, owner);
+    }
+
+    private void rehash(int capacity) {
+        keys = new int[capacity];
+        slots = newSlots(capacity);
+        mask = capacity - 1;
+        byId = SharedArray.EMPTY;
+        for (int row = 0; row < size; row++) {
+            Book book = row(row);
+            byId = byId.set(put(book.getId(), row), new Entry(book, row), owner);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Bulk catalog files: one book per line, {@code id,title,author,price,stock},
+ * optionally under a header line. Files named *.tsv or *.tab are
+ * tab-separated. Fields holding the separator or a double quote are quoted
+ * CSV-style; a field can't span lines.
+ *
+ * Reading streams the file in CHUNK_BYTES chunks cut at line ends and parses
+ * them on a small pool while the next chunk is read. At most a couple of
+ * chunks per parser are in memory at once, so memory stays bounded however
+ * big the file. Parsed rows reach the Sink one chunk at a time, in file
+ * order, on the calling thread.
+ *
+ * Interrupting the calling thread stops either direction between chunks.
+ */
+class CatalogCsv {
+
+    static final int CHUNK_BYTES = 1 << 20;
+    private static final int MAX_ERRORS = 20;
+
+    /** Takes each chunk's books; refuses any with {@link Result#reject}. */
+    interface Sink {
+        void add(Rows rows, Result result);
+    }
+
+    /** Books parsed from one chunk, with the file line each came from. */
+    static final class Rows {
+        Book[] books;
+        long[] lines;
+        int size;
+
+        // Lines in the chunk, and its parse errors with chunk-relative line numbers
+        private int lineCount;
+        private final List<Integer> errorLines = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        private Rows(int capacity) {
+            books = new Book[capacity];
+            lines = new long[capacity];
+        }
+
+        private void add(Book book, int line) {
+            if (size == books.length) {
+                books = Arrays.copyOf(books, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            books[size] = book;
+            lines[size++] = line;
+        }
+    }
+
+    /** What an import did: books added, lines refused, and why for the first few. */
+    static final class Result {
+        int imported;
+        int rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void reject(long line, String why) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + why);
+        }
+
+        String summary() {
+            StringBuilder sb = new StringBuilder(imported + " books imported");
+            if (rejected > 0) {
+                sb.append(", ").append(rejected).append(" lines skipped");
+                for (String e : errors) sb.append("\n  ").append(e);
+                if (rejected > errors.size()) sb.append("\n  ...");
+            }
+            return sb.toString();
+        }
+    }
+
+    static char separatorFor(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab") ? '\t' : ',';
+    }
+
+    // Import
+
+    /** Parses the file on `parsers` threads and hands it to sink; progress gets the fraction read so far. */
+    static Result read(File file, int parsers, DoubleConsumer progress, Sink sink) throws IOException {
+        char separator = separatorFor(file);
+        Result result = new Result();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parsers, r -> {
+            Thread t = new Thread(r, "catalog-import-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<Rows>> parsing = new ArrayDeque<>();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long read = 0;
+            long line = 1;
+            byte[] carry = new byte[0];
+            boolean first = true;
+            while (true) {
+                if (Thread.interrupted()) throw new InterruptedIOException("Import cancelled");
+                // Each chunk starts with the unfinished line left over from the last one
+                byte[] chunk = new byte[Math.max(CHUNK_BYTES, carry.length * 2)];
+                System.arraycopy(carry, 0, chunk, 0, carry.length);
+                ByteBuffer buf = ByteBuffer.wrap(chunk, carry.length, chunk.length - carry.length);
+                int n = 0;
+                while (buf.hasRemaining() && (n = in.read(buf)) >= 0) {
+                    read += n;
+                }
+                boolean eof = n < 0 || read >= size;
+                int length = buf.position();
+                int end = eof ? length : lastLineEnd(chunk, length);
+                if (end < 0) {
+                    // One line longer than the chunk: read on into a bigger one
+                    carry = Arrays.copyOf(chunk, length);
+                    continue;
+                }
+                carry = Arrays.copyOfRange(chunk, end, length);
+
+                boolean header = first;
+                first = false;
+                parsing.add(pool.submit(() -> parse(chunk, end, separator, header)));
+                // Apply in file order, keeping only a couple of chunks per parser in flight
+                while (parsing.size() > parsers || (eof && !parsing.isEmpty())) {
+                    line = apply(parsing.poll(), line, sink, result);
+                }
+                progress.accept(size == 0 ? 1 : (double) read / size);
+                if (eof) return result;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long apply(Future<Rows> parsed, long firstLine, Sink sink, Result result) throws IOException {
+        Rows rows;
+        try {
+            rows = parsed.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Import cancelled");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        for (int i = 0; i < rows.size; i++) rows.lines[i] += firstLine;
+        for (int i = 0; i < rows.errors.size(); i++) {
+            result.reject(firstLine + rows.errorLines.get(i), rows.errors.get(i));
+        }
+        sink.add(rows, result);
+        return firstLine + rows.lineCount;
+    }
+
+    private static int lastLineEnd(byte[] chunk, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chunk[i] == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+    // Parser threads; line numbers are relative to the chunk until apply()
+    private static Rows parse(byte[] chunk, int length, char separator, boolean mayHaveHeader) {
+        String text = new String(chunk, 0, length, StandardCharsets.UTF_8);
+        Rows rows = new Rows(Math.max(16, length / 32));
+        String[] fields = new String[5];
+        int pos = 0;
+        int line = 0;
+        while (pos < text.length()) {
+            int eol = text.indexOf('\n', pos);
+            if (eol < 0) eol = text.length();
+            int lineEnd = eol > pos && text.charAt(eol - 1) == '\r' ? eol - 1 : eol;
+            int lineNo = line++;
+            int start = pos;
+            pos = eol + 1;
+            if (lineEnd == start) continue;
+
+            String error = split(text, start, lineEnd, separator, fields);
+            if (error == null) {
+                if (lineNo == 0 && mayHaveHeader && fields[0].trim().equalsIgnoreCase("id")) continue;
+                error = validate(fields);
+            }
+            if (error == null) {
+                rows.add(Book.of(Integer.parseInt(fields[0].trim()), fields[1], fields[2],
+                        Double.parseDouble(fields[3].trim()), Integer.parseInt(fields[4].trim())), lineNo);
+            } else {
+                rows.errorLines.add(lineNo);
+                rows.errors.add(error);
+            }
+        }
+        rows.lineCount = line;
+        return rows;
+    }
+
+    // Splits one line into exactly fields.length fields; returns the problem, or null
+    private static String split(String text, int from, int to, char separator, String[] fields) {
+        int field = 0;
+        int i = from;
+        while (true) {
+            if (field == fields.length) return "expected " + fields.length + " fields: id, title, author, price, stock";
+            if (i < to && text.charAt(i) == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= to) return "unterminated quote";
+                    char c = text.charAt(i++);
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i < to && text.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                fields[field++] = value.toString();
+                if (i < to && text.charAt(i) != separator) return "text after a closing quote";
+            } else {
+                int end = text.indexOf(separator, i);
+                if (end < 0 || end > to) end = to;
+                fields[field++] = text.substring(i, end);
+                i = end;
+            }
+            if (i >= to) break;
+            i++; // the separator
+        }
+        return field == fields.length ? null : "expected " + fields.length + " fields: id, title, author, price, stock";
+    }
+
+    private static String validate(String[] f) {
+        try {
+            Integer.parseInt(f[0].trim());
+        } catch (NumberFormatException e) {
+            return "invalid id \"" + f[0] + "\"";
+        }
+        double price;
+        try {
+            price = Double.parseDouble(f[3].trim());
+        } catch (NumberFormatException e) {
+            return "invalid price \"" + f[3] + "\"";
+        }
+        int stock;
+        try {
+            stock = Integer.parseInt(f[4].trim());
+        } catch (NumberFormatException e) {
+            return "invalid stock \"" + f[4] + "\"";
+        }
+        return Book.invalid(f[1], f[2], price, stock);
+    }
+
+    // Export
+
+    /** Supplies the catalog's rows, with the books' title, author and price all as of one point in time. */
+    interface Source {
+        int size();
+
+        Book bookAt(int row);
+
+        Book.Values valuesAt(int row);
+    }
+
+    static final int EXPORT_BATCH = 10_000;
+
+    /** Writes every book to the file, EXPORT_BATCH books at a time; returns how many. */
+    static int write(File file, Source source, DoubleConsumer progress) throws IOException {
+        char separator = separatorFor(file);
+        int written = 0;
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder sb = new StringBuilder(CHUNK_BYTES);
+            sb.append("id").append(separator).append("title").append(separator).append("author")
+                    .append(separator).append("price").append(separator).append("stock\n");
+            for (int from = 0; from < source.size(); from += EXPORT_BATCH) {
+                if (Thread.interrupted()) throw new InterruptedIOException("Export cancelled");
+                int to = Math.min(source.size(), from + EXPORT_BATCH);
+                for (int row = from; row < to; row++) {
+                    Book b = source.bookAt(row);
+                    Book.Values values = source.valuesAt(row);
+                    sb.append(b.getId()).append(separator);
+                    appendField(sb, values.title, separator);
+                    sb.append(separator);
+                    appendField(sb, values.author, separator);
+                    sb.append(separator).append(values.price).append(separator).append(b.getOnHand()).append('\n');
+                }
+                written += to - from;
+                if (sb.length() >= CHUNK_BYTES / 2) {
+                    writeFully(out, sb);
+                    sb.setLength(0);
+                }
+                progress.accept(Math.min(1, (double) (from + EXPORT_BATCH) / Math.max(1, source.size())));
+            }
+            writeFully(out, sb);
+        }
+        progress.accept(1);
+        return written;
+    }
+
+    private static void appendField(StringBuilder sb, String value, char separator) {
+        if (value.indexOf(separator) < 0 && value.indexOf('"') < 0) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static void writeFully(FileChannel out, StringBuilder sb) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(sb));
+        while (bytes.hasRemaining()) out.write(bytes);
+    }
+}
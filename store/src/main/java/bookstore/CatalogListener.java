@@ -0,0 +1,32 @@
+package bookstore;
+
+/**
+ * Receives catalog mutations. Rows are Catalog rows at the time of the event.
+ * Listeners are called on the mutating thread, so they should only record
+ * what changed and do the real work later.
+ */
+interface CatalogListener {
+
+    /** A book was appended at {@code row}. */
+    default void bookAdded(Book book, int row) {}
+
+    /**
+     * A book was removed from {@code row}. Unless it was the last row, the
+     * former last book has been moved into {@code row}.
+     */
+    default void bookRemoved(Book book, int row) {}
+
+    /** A field of the book at {@code row} is about to change; still shows the old values. */
+    default void bookChanging(Book book, int row) {}
+
+    /** A field of the book at {@code row} changed. */
+    default void bookChanged(Book book, int row) {}
+
+    /**
+     * Units of the book at {@code row} were reserved or released. Called from
+     * any thread, concurrently and without the catalog lock, so a listener
+     * should only note the book (e.g. in a lock-free queue it drains later);
+     * it may arrive between bookChanging and bookChanged.
+     */
+    default void stockChanged(Book book, int row) {}
+}
@@ -0,0 +1,251 @@
+package bookstore;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Table model that reads rows straight from the live Catalog. JTable only asks
+ * for the cells it paints, so nothing is copied or formatted for rows that are
+ * scrolled out of view and the cost of showing the table doesn't grow with the
+ * catalog size.
+ *
+ * The model listens to the catalog and turns each change into row-level
+ * table events. Changes arriving within one frame (~16 ms) are coalesced:
+ * the dirty rows are collected and flushed together on the EDT.
+ *
+ * With {@link #showOnly} the model shows a fixed list of book ids instead,
+ * e.g. search results, and simply repaints when the catalog changes.
+ * With {@link #showSorted} it shows a key range of a SortedIndex, row n
+ * being the n-th book of the range, so the order and the rows follow the
+ * catalog without anything being sorted or copied. Each flush fetches the
+ * index's latest Version on a worker, since that may first refile queued
+ * stock changes under the index lock, and every row is then read from that
+ * one Version until the next flush; painting never takes a lock.
+ */
+class CatalogTableModel extends AbstractTableModel implements CatalogListener {
+
+    private static final String[] COLUMNS = {"ID", "Title", "Author", "Price", "Stock"};
+    private static final int FRAME_MILLIS = 16;
+    // Above this many separate dirty runs a single full repaint is cheaper
+    private static final int MAX_UPDATE_EVENTS = 256;
+
+    // Fetches SortedIndex Versions for every model, off the EDT
+    private static final ExecutorService VERSIONS = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "table-versions");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Catalog catalog;
+    private final PriceFormatCache prices;
+    private final Timer flushTimer;
+
+    // Row count the JTable has been told about; changes only on the EDT
+    private int rowCount;
+
+    // Ids shown instead of the whole catalog, or null
+    private int[] filter;
+
+    // Index range shown instead of the whole catalog, or null; keys are inclusive
+    private SortedIndex sorted;
+    private long fromKey, toKey;
+    private boolean descending;
+
+    // The index Version rows are read from, and the ranks of the range in it; EDT only
+    private SortedIndex.Version ranks;
+    private int fromRank, toRank;
+
+    // Counts what the model was asked to show, so a Version fetched for an earlier request is dropped
+    private int shown;
+
+    // Pending changes, guarded by this
+    private BitSet dirtyRows = new BitSet();
+    private boolean flushScheduled;
+
+    CatalogTableModel(Catalog catalog, PriceFormatCache prices) {
+        this.catalog = catalog;
+        this.prices = prices;
+        this.rowCount = catalog.size();
+        this.flushTimer = new Timer(FRAME_MILLIS, e -> flush());
+        flushTimer.setRepeats(false);
+        catalog.addListener(this);
+    }
+
+    /** Book shown in this row; null if a filtered book has since been deleted. */
+    Book bookAt(int row) {
+        if (filter != null) return catalog.get(filter[row]);
+        // Workers may shrink the catalog before the next flush reaches the EDT
+        if (sorted == null) {
+            Catalog.Version rows = catalog.snapshot();
+            return row < rows.size() ? rows.bookAt(row) : null;
+        }
+        if (row >= toRank - fromRank) return null;
+        return ranks.get(descending ? toRank - 1 - row : fromRank + row);
+    }
+
+    /** Shows only these books, in this order. */
+    void showOnly(int[] ids) {
+        shown++;
+        filter = ids;
+        sorted = null;
+        ranks = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Shows the books of this index with keys from fromKey to toKey, in index
+     * order or reversed, once its Version has been fetched.
+     */
+    void showSorted(SortedIndex index, long fromKey, long toKey, boolean descending) {
+        int request = ++shown;
+        fetch(index, version -> {
+            if (request != shown) return;
+            filter = null;
+            sorted = index;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.descending = descending;
+            read(version);
+            fireTableDataChanged();
+        });
+    }
+
+    /** Goes back to showing the whole catalog. */
+    void showAll() {
+        shown++;
+        filter = null;
+        sorted = null;
+        ranks = null;
+        fireTableDataChanged();
+    }
+
+    boolean isFiltered() { return filter != null || sorted != null; }
+
+    @Override
+    public int getRowCount() { return rowCount; }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 || column == 4 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row >= rowCount) return null;
+        Book b = bookAt(row);
+        if (b == null) return null;
+        switch (column) {
+            case 0: return b.getId();
+            case 1: return b.getTitle();
+            case 2: return b.getAuthor();
+            case 3: return prices.format(b.getPrice());
+            case 4: return b.getStock();
+            default: return null;
+        }
+    }
+
+    @Override
+    public void fireTableDataChanged() {
+        synchronized (this) {
+            dirtyRows.clear();
+        }
+        rowCount = filter != null ? filter.length : sorted != null ? toRank - fromRank : catalog.size();
+        super.fireTableDataChanged();
+    }
+
+    // Gets the index's latest Version on the worker and hands it to onEdt on the EDT
+    private static void fetch(SortedIndex index, Consumer<SortedIndex.Version> onEdt) {
+        VERSIONS.execute(() -> {
+            SortedIndex.Version version = index.version();
+            SwingUtilities.invokeLater(() -> onEdt.accept(version));
+        });
+    }
+
+    private void read(SortedIndex.Version version) {
+        ranks = version;
+        fromRank = version.rankOf(fromKey);
+        toRank = version.rankAfter(toKey);
+    }
+
+    // Catalog events: record the row, flush once per frame
+
+    @Override
+    public void bookAdded(Book book, int row) { markDirty(row); }
+
+    @Override
+    public void bookRemoved(Book book, int row) { markDirty(row); }
+
+    @Override
+    public void bookChanged(Book book, int row) { markDirty(row); }
+
+    @Override
+    public void stockChanged(Book book, int row) { markDirty(row); }
+
+    private void markDirty(int row) {
+        synchronized (this) {
+            dirtyRows.set(row);
+            if (flushScheduled) return;
+            flushScheduled = true;
+        }
+        if (SwingUtilities.isEventDispatchThread()) {
+            flushTimer.start();
+        } else {
+            SwingUtilities.invokeLater(flushTimer::start);
+        }
+    }
+
+    private void flush() {
+        BitSet dirty;
+        synchronized (this) {
+            dirty = dirtyRows;
+            dirtyRows = new BitSet();
+            flushScheduled = false;
+        }
+        if (filter != null) {
+            if (!dirty.isEmpty() && rowCount > 0) fireTableRowsUpdated(0, rowCount - 1);
+            return;
+        }
+        if (sorted != null) {
+            int request = shown;
+            fetch(sorted, version -> {
+                if (request != shown) return;
+                read(version);
+                // Any change may move books between rows
+                if (toRank - fromRank != rowCount) fireTableDataChanged();
+                else if (rowCount > 0) fireTableRowsUpdated(0, rowCount - 1);
+            });
+            return;
+        }
+        int oldCount = rowCount;
+        int newCount = catalog.size();
+        rowCount = newCount;
+
+        // Inserts append and deletes shrink from the end; everything else is an update
+        if (newCount < oldCount) fireTableRowsDeleted(newCount, oldCount - 1);
+
+        int limit = Math.min(oldCount, newCount);
+        int events = 0;
+        for (int start = dirty.nextSetBit(0); start >= 0 && start < limit; ) {
+            int end = Math.min(dirty.nextClearBit(start), limit) - 1;
+            if (++events > MAX_UPDATE_EVENTS) {
+                fireTableRowsUpdated(0, limit - 1);
+                break;
+            }
+            fireTableRowsUpdated(start, end);
+            start = dirty.nextSetBit(end + 1);
+        }
+
+        if (newCount > oldCount) fireTableRowsInserted(oldCount, newCount - 1);
+    }
+}
@@ -0,0 +1,145 @@
+package bookstore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Places orders in batches with group commit. submit() stages the order in
+ * a bounded queue and returns a future. One committer thread drains up to
+ * maxBatch staged orders, validates each against the inventory (re-reserving
+ * lapsed holds, then committing them) and journals it. One Journal.sync()
+ * then makes the whole batch durable before any of its futures completes, so
+ * under load one fsync covers many orders.
+ *
+ * Submitting a cart that is already staged returns the staged order's
+ * future, so a double-clicked "Place Order" places the order once.
+ */
+class CheckoutPipeline {
+
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final class Request {
+        final User user;
+        final Cart cart;
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+        Order order;
+        RuntimeException error;
+
+        Request(User user, Cart cart) {
+            this.user = user;
+            this.cart = cart;
+        }
+    }
+
+    private final Journal journal;
+    private final BiFunction<User, Cart, Order> checkout;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ConcurrentHashMap<Cart, Request> staged = new ConcurrentHashMap<>();
+    private final Thread committer;
+    private volatile int maxBatch;
+    private volatile boolean running = true;
+    private volatile long batches;
+
+    /**
+     * @param checkout validates one order, commits its stock and journals it
+     *                 without syncing; throws StoreException to refuse it
+     */
+    CheckoutPipeline(Journal journal, BiFunction<User, Cart, Order> checkout, int maxBatch) {
+        this.journal = journal;
+        this.checkout = checkout;
+        this.maxBatch = maxBatch;
+        committer = new Thread(this::run, "checkout-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    void setMaxBatch(int maxBatch) { this.maxBatch = Math.max(1, maxBatch); }
+
+    /** Batches committed so far, i.e. journal syncs done for orders. */
+    long batches() { return batches; }
+
+    /** Completes with the order once it is durable, or with a StoreException if it was refused. */
+    CompletableFuture<Order> submit(User user, Cart cart) {
+        if (!running) return failed(new StoreException("The store is shutting down"));
+        Request fresh = new Request(user, cart);
+        Request request = staged.putIfAbsent(cart, fresh);
+        if (request != null) return request.result;
+        if (!queue.offer(fresh)) {
+            staged.remove(cart, fresh);
+            return failed(new StoreException("The store is busy, please try again"));
+        }
+        // Raced with shutdown after the committer's last drain
+        if (!running && queue.remove(fresh)) finish(fresh, null, new StoreException("The store is shutting down"));
+        return fresh.result;
+    }
+
+    /** Commits the batch in progress and refuses everything still queued. */
+    void shutdown() {
+        running = false;
+        // Not interrupted: that would close the journal's channel in the middle of a sync
+        try {
+            committer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (running) {
+            Request first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) continue;
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            commit(batch);
+            batch.clear();
+        }
+        queue.drainTo(batch);
+        for (Request r : batch) finish(r, null, new StoreException("The store is shutting down"));
+    }
+
+    private void commit(List<Request> batch) {
+        for (Request r : batch) {
+            try {
+                r.order = checkout.apply(r.user, r.cart);
+            } catch (RuntimeException e) {
+                r.error = e;
+            }
+        }
+        RuntimeException syncError = null;
+        try {
+            journal.sync();
+            batches++;
+        } catch (IOException e) {
+            syncError = new StoreException("Your order was placed but could not be saved: " + e.getMessage());
+        }
+        for (Request r : batch) {
+            if (r.error != null) finish(r, null, r.error);
+            else finish(r, syncError == null ? r.order : null, syncError);
+        }
+    }
+
+    private void finish(Request r, Order order, RuntimeException error) {
+        staged.remove(r.cart, r);
+        if (error != null) r.result.completeExceptionally(error);
+        else r.result.complete(order);
+    }
+
+    private static CompletableFuture<Order> failed(RuntimeException e) {
+        CompletableFuture<Order> f = new CompletableFuture<>();
+        f.completeExceptionally(e);
+        return f;
+    }
+}
@@ -0,0 +1,53 @@
+package bookstore;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+/** One row per OperationStats, read live; refresh() repaints the rows with the latest window. */
+class DiagnosticsTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Operation", "Count", "Failed", "Rate/s", "p50 ms", "p99 ms", "p99.9 ms", "Max ms"};
+
+    private final Metrics metrics;
+    private List<OperationStats> rows;
+
+    DiagnosticsTableModel(Metrics metrics) {
+        this.metrics = metrics;
+        this.rows = metrics.all();
+    }
+
+    void refresh() {
+        rows = metrics.all();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? String.class : column <= 2 ? Long.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        OperationStats s = rows.get(row);
+        switch (column) {
+            case 0: return s.name;
+            case 1: return s.getCount();
+            case 2: return s.getFailed();
+            case 3: return String.format("%.1f", s.getRatePerSecond());
+            case 4: return String.format("%.3f", s.getP50Millis());
+            case 5: return String.format("%.3f", s.getP99Millis());
+            case 6: return String.format("%.3f", s.getP999Millis());
+            case 7: return String.format("%.3f", s.getMaxMillis());
+            default: return null;
+        }
+    }
+}
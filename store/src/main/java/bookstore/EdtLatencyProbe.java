@@ -0,0 +1,91 @@
+package bookstore;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures how long the EDT takes to pick up a trivial event. A daemon thread
+ * posts a timestamped no-op every period; the delay until it runs is the
+ * time the EDT was busy with something else. Delays over the stall threshold
+ * (one 60 Hz frame by default) are counted and reported to a listener.
+ * Every delay also goes into stats(), with stalls as its failures.
+ */
+class EdtLatencyProbe {
+
+    static final long FRAME_MILLIS = 16;
+
+    private final long periodMillis;
+    private final long stallNanos;
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final OperationStats stats = new OperationStats("edt-dispatch");
+    private volatile LongConsumer stallListener = nanos -> { };
+    private volatile boolean running;
+    private Thread thread;
+
+    EdtLatencyProbe() {
+        this(20, FRAME_MILLIS);
+    }
+
+    EdtLatencyProbe(long periodMillis, long stallMillis) {
+        this.periodMillis = periodMillis;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+    }
+
+    /** Called on the EDT with the delay in nanoseconds of every stall. */
+    void setStallListener(LongConsumer listener) {
+        this.stallListener = listener;
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "edt-latency-probe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    long samples() { return samples.get(); }
+
+    long stalls() { return stalls.get(); }
+
+    long maxLatencyNanos() { return maxNanos.get(); }
+
+    OperationStats stats() { return stats; }
+
+    void reset() {
+        samples.set(0);
+        stalls.set(0);
+        maxNanos.set(0);
+    }
+
+    private void run() {
+        while (running) {
+            long posted = System.nanoTime();
+            SwingUtilities.invokeLater(() -> record(System.nanoTime() - posted));
+            try {
+                Thread.sleep(periodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void record(long nanos) {
+        samples.incrementAndGet();
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        stats.recordNanos(nanos, nanos <= stallNanos);
+        if (nanos > stallNanos) {
+            stalls.incrementAndGet();
+            stallListener.accept(nanos);
+        }
+    }
+}
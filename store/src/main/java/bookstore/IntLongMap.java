@@ -0,0 +1,150 @@
+package bookstore;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int to long, without boxing. Missing keys
+ * read as 0. Not thread-safe.
+ */
+class IntLongMap {
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    IntLongMap() {
+        this(16);
+    }
+
+    IntLongMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() { return size; }
+
+    /** An independent copy, made with a few array copies rather than by re-inserting every entry. */
+    IntLongMap copy() {
+        IntLongMap copy = new IntLongMap(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.used = used.clone();
+        copy.mask = mask;
+        copy.size = size;
+        return copy;
+    }
+
+    boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    long get(int key) {
+        int i = slotOf(key);
+        return i < 0 ? 0 : values[i];
+    }
+
+    void put(int key, long value) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+    }
+
+    /** Adds delta to the value of key (0 if absent) and returns the new value. */
+    long addTo(int key, long delta) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return values[i] += delta;
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, delta);
+        return delta;
+    }
+
+    /** Removes key and returns its value, or 0 if it was absent. */
+    long remove(int key) {
+        int gap = slotOf(key);
+        if (gap < 0) return 0;
+        long old = values[gap];
+        // Backward-shift deletion, as in Catalog
+        int j = gap;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j]) break;
+            int home = hash(keys[j]) & mask;
+            boolean stays = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+            if (!stays) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        used[gap] = false;
+        size--;
+        return old;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    interface Visitor {
+        void visit(int key, long value);
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    private int slotOf(int key) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertAt(int i, int key, long value) {
+        keys[i] = key;
+        values[i] = value;
+        used[i] = true;
+        if (++size * 2 > keys.length) grow();
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (used[j]) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+            used[j] = true;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
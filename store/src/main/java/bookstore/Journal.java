@@ -0,0 +1,313 @@
+package bookstore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of store mutations, split into numbered segment files
+ * (journal-N.log) so that compaction can drop the ones a snapshot covers.
+ * Every record is framed as [length][crc32][payload]; a record torn by a
+ * crash fails its check and ends the replay there.
+ *
+ * Records are absolute: a book record carries all of its fields and a stock
+ * record the units on hand, read from the live Book while the journal lock
+ * is held. Since every change is journaled after it is made, the last record
+ * for a book always holds a value read after every journaled change, even
+ * when checkouts race with each other, and replaying in order restores the
+ * latest state. Replaying a record twice is harmless for the same reason.
+ *
+ * Appending only encodes the record into a buffer. sync() writes everything
+ * appended so far and forces it to disk with a single fsync, so a caller
+ * that appends a batch of records pays for one fsync (group commit).
+ * Segments are also synced when rotated or closed.
+ */
+class Journal implements Closeable {
+
+    static final byte BOOK = 1;
+    static final byte DELETE_BOOK = 2;
+    static final byte STOCK = 3;
+    static final byte USER = 4;
+    static final byte ORDER = 6;
+
+    private static final int HEADER = 8;
+
+    /** Receives the records of a segment during replay. */
+    interface Handler {
+        void book(int id, String title, String author, double price, int onHand);
+        void deleteBook(int id);
+        void stock(int id, int onHand);
+        void user(String username, String passwordHash, boolean admin);
+        void order(String user, long placedAt, int[] lines);
+    }
+
+    private final File dir;
+    private FileChannel channel;
+    private long segment;
+    private long bytesSinceRotate;
+    private ByteBuffer buf = ByteBuffer.allocate(4096);
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16); // encoded records not yet written
+    private final CRC32 crc = new CRC32();
+
+    /** A journal that records nothing, for stores that live only in memory. */
+    static Journal disabled() {
+        return new Journal();
+    }
+
+    private Journal() {
+        this.dir = null;
+    }
+
+    /** Starts a new segment file with this number in dir. */
+    Journal(File dir, long segment) throws IOException {
+        this.dir = dir;
+        open(segment);
+    }
+
+    static File segmentFile(File dir, long segment) {
+        return new File(dir, "journal-" + segment + ".log");
+    }
+
+    /** Numbers of the journal segments in dir, ascending. */
+    static long[] segments(File dir) {
+        return numbered(dir, "journal-", ".log");
+    }
+
+    static long[] numbered(File dir, String prefix, String suffix) {
+        String[] names = dir.list();
+        if (names == null) return new long[0];
+        List<Long> found = new ArrayList<>();
+        for (String name : names) {
+            if (!name.startsWith(prefix) || !name.endsWith(suffix)) continue;
+            try {
+                found.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        long[] result = new long[found.size()];
+        for (int i = 0; i < result.length; i++) result[i] = found.get(i);
+        Arrays.sort(result);
+        return result;
+    }
+
+    synchronized long segment() { return segment; }
+
+    synchronized long bytesSinceRotate() { return bytesSinceRotate; }
+
+    // Appends. The values are read here, under the journal lock; see the class comment.
+
+    synchronized void appendBook(Book book) {
+        if (channel == null) return;
+        begin(BOOK);
+        buf.putInt(book.getId());
+        putString(book.getTitle());
+        putString(book.getAuthor());
+        ensure(12);
+        buf.putDouble(book.getPrice());
+        buf.putInt(book.getOnHand());
+        commit();
+    }
+
+    synchronized void appendDeleteBook(int id) {
+        if (channel == null) return;
+        begin(DELETE_BOOK);
+        buf.putInt(id);
+        commit();
+    }
+
+    /** Records the book's units on hand, unless it has left the catalog in the meantime. */
+    synchronized void appendStock(Book book) {
+        if (channel == null || !book.isListed()) return;
+        begin(STOCK);
+        buf.putInt(book.getId());
+        buf.putInt(book.getOnHand());
+        commit();
+    }
+
+    synchronized void appendUser(User user) {
+        if (channel == null) return;
+        begin(USER);
+        putString(user.username);
+        putString(user.passwordHash);
+        ensure(1);
+        buf.put((byte) (user.isAdmin ? 1 : 0));
+        commit();
+    }
+
+    synchronized void appendOrder(Order order) {
+        if (channel == null) return;
+        begin(ORDER);
+        putString(order.user);
+        int[] lines = order.lines();
+        ensure(12 + 4 * lines.length);
+        buf.putLong(order.placedAt);
+        buf.putInt(lines.length);
+        for (int v : lines) buf.putInt(v);
+        commit();
+    }
+
+    /** Writes every record appended so far and forces it to disk. */
+    synchronized void sync() throws IOException {
+        if (channel == null || pending.position() == 0) return;
+        pending.flip();
+        while (pending.hasRemaining()) channel.write(pending);
+        pending.clear();
+        channel.force(false);
+    }
+
+    /** Syncs the current segment, starts the next one and returns the number of the old one. */
+    synchronized long rotate() throws IOException {
+        long old = segment;
+        if (channel != null) {
+            sync();
+            channel.close();
+            open(old + 1);
+        }
+        return old;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        sync();
+        channel.close();
+        channel = null;
+    }
+
+    private void open(long segment) throws IOException {
+        this.segment = segment;
+        this.bytesSinceRotate = 0;
+        this.channel = FileChannel.open(segmentFile(dir, segment).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private void begin(byte type) {
+        buf.clear();
+        buf.position(HEADER);
+        buf.put(type);
+    }
+
+    private void ensure(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    private void commit() {
+        int end = buf.position();
+        crc.reset();
+        crc.update(buf.array(), HEADER, end - HEADER);
+        buf.putInt(0, end - HEADER);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+        if (pending.remaining() < end) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + end));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        pending.put(buf);
+        bytesSinceRotate += end;
+    }
+
+    // Replay
+
+    /**
+     * Feeds every intact record of the segment file to the handler and
+     * returns how many there were. A torn or corrupt tail is cut off the file.
+     */
+    static int replay(File file, Handler handler) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        CRC32 crc = new CRC32();
+        int records = 0;
+        while (in.remaining() >= HEADER) {
+            int start = in.position();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                in.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                in.position(start);
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(in.array(), in.position(), length).slice();
+            in.position(in.position() + length);
+            apply(record, handler);
+            records++;
+        }
+        if (in.position() < in.limit()) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(in.position());
+            }
+        }
+        return records;
+    }
+
+    private static void apply(ByteBuffer in, Handler handler) {
+        byte type = in.get();
+        switch (type) {
+            case BOOK: {
+                int id = in.getInt();
+                String title = getString(in);
+                String author = getString(in);
+                double price = in.getDouble();
+                handler.book(id, title, author, price, in.getInt());
+                break;
+            }
+            case DELETE_BOOK:
+                handler.deleteBook(in.getInt());
+                break;
+            case STOCK: {
+                int id = in.getInt();
+                handler.stock(id, in.getInt());
+                break;
+            }
+            case USER: {
+                String username = getString(in);
+                String passwordHash = getString(in);
+                handler.user(username, passwordHash, in.get() != 0);
+                break;
+            }
+            case ORDER: {
+                String user = getString(in);
+                long placedAt = in.getLong();
+                int[] lines = new int[in.getInt()];
+                for (int i = 0; i < lines.length; i++) lines[i] = in.getInt();
+                handler.order(user, placedAt, lines);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
@@ -0,0 +1,110 @@
+package bookstore;
+
+/**
+ * Minimal JSON writer for the HTTP API's responses. Values and names are
+ * written in call order; commas are placed automatically.
+ *
+ *   new Json().beginObject().field("id", 1).field("title", "Clean Code").endObject().toString()
+ */
+class Json {
+
+    private final StringBuilder out = new StringBuilder();
+    private boolean needComma;
+
+    Json beginObject() {
+        separate();
+        out.append('{');
+        needComma = false;
+        return this;
+    }
+
+    Json endObject() {
+        out.append('}');
+        needComma = true;
+        return this;
+    }
+
+    Json beginArray() {
+        separate();
+        out.append('[');
+        needComma = false;
+        return this;
+    }
+
+    Json endArray() {
+        out.append(']');
+        needComma = true;
+        return this;
+    }
+
+    /** The name of the next member; follow it with a value, object or array. */
+    Json name(String name) {
+        separate();
+        quote(name);
+        out.append(':');
+        needComma = false;
+        return this;
+    }
+
+    Json value(String value) {
+        separate();
+        if (value == null) out.append("null");
+        else quote(value);
+        needComma = true;
+        return this;
+    }
+
+    Json value(long value) {
+        separate();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    Json value(double value) {
+        separate();
+        out.append(Double.isFinite(value) ? Double.toString(value) : "null");
+        needComma = true;
+        return this;
+    }
+
+    Json value(boolean value) {
+        separate();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    Json field(String name, String value) { return name(name).value(value); }
+
+    Json field(String name, long value) { return name(name).value(value); }
+
+    Json field(String name, double value) { return name(name).value(value); }
+
+    Json field(String name, boolean value) { return name(name).value(value); }
+
+    @Override
+    public String toString() { return out.toString(); }
+
+    private void separate() {
+        if (needComma) out.append(',');
+    }
+
+    private void quote(String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,87 @@
+package bookstore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: every
+ * power-of-two range is split into 32 equal buckets, so any recorded value
+ * is known to within about 3%, from nanoseconds up to a minute, in 1024
+ * counters. Recording is one atomic increment; reading takes a Snapshot,
+ * which other threads may be recording into while it is copied.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 35; // values up to 2^36 ns, about 69 s
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy);
+    }
+
+    static int bucket(long nanos) {
+        long v = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        if (v < SUB_BUCKETS) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    /** The middle of the range of values that land in this bucket. */
+    static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long low = (long) (bucket - (shift << SUB_BITS)) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    /** Counts at one moment; snapshots of one histogram can be subtracted to get an interval. */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS]);
+
+        private final long[] counts;
+        final long count;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long n = 0;
+            for (long c : counts) n += c;
+            this.count = n;
+        }
+
+        /** What was recorded between earlier and this snapshot. */
+        Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) diff[i] = counts[i] - earlier.counts[i];
+            return new Snapshot(diff);
+        }
+
+        /** The value below which the fraction q of the recorded values lie, e.g. 0.99; 0 if empty. */
+        long percentile(double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return valueOf(i);
+            }
+            return max();
+        }
+
+        long max() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] != 0) return valueOf(i);
+            }
+            return 0;
+        }
+    }
+}
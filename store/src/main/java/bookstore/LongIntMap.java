@@ -0,0 +1,107 @@
+package bookstore;
+
+/**
+ * Open-addressing hash map from long to int, without boxing; IntLongMap's
+ * counterpart for counters under a long key. Missing keys read as 0. Not
+ * thread-safe.
+ */
+class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() { return size; }
+
+    int get(long key) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    void put(long key, int value) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        used[i] = true;
+        if (++size * 2 > keys.length) rehash(keys.length * 2, null);
+    }
+
+    /** Adds delta to the value of key (0 if absent) and returns the new value. */
+    int addTo(long key, int delta) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return values[i] += delta;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = delta;
+        used[i] = true;
+        if (++size * 2 > keys.length) rehash(keys.length * 2, null);
+        return delta;
+    }
+
+    interface Filter {
+        boolean keep(long key, int value);
+    }
+
+    interface Visitor {
+        void visit(long key, int value);
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    /** Drops every entry the filter doesn't keep, in one pass that rebuilds the table. */
+    void retain(Filter filter) {
+        rehash(keys.length, filter);
+    }
+
+    private void rehash(int capacity, Filter filter) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i] || filter != null && !filter.keep(oldKeys[i], oldValues[i])) continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (used[j]) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+            used[j] = true;
+            size++;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,96 @@
+package bookstore;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of the store's operations, one OperationStats each. BookStore
+ * records into them; the GUI's Diagnostics card and JMX
+ * (bookstore:type=Operation,name=...) read them. A daemon thread advances
+ * every operation's window once a second.
+ *
+ * Other components can add their own stats with add(), e.g. the GUI's EDT
+ * probe.
+ */
+class Metrics {
+
+    /** Seconds covered by the reported percentiles and rates. */
+    static final int WINDOW_SECONDS = 10;
+
+    final OperationStats login = new OperationStats("login");
+    final OperationStats register = new OperationStats("register");
+    final OperationStats search = new OperationStats("search");
+    final OperationStats browse = new OperationStats("browse");
+    final OperationStats alsoBought = new OperationStats("also-bought");
+    final OperationStats addToCart = new OperationStats("add-to-cart");
+    final OperationStats removeFromCart = new OperationStats("remove-from-cart");
+    final OperationStats placeOrder = new OperationStats("place-order");
+    final OperationStats orderHistory = new OperationStats("order-history");
+    final OperationStats addBook = new OperationStats("add-book");
+    final OperationStats updateBook = new OperationStats("update-book");
+    final OperationStats deleteBook = new OperationStats("delete-book");
+    final OperationStats salesReport = new OperationStats("sales-report");
+
+    private final List<OperationStats> all = new CopyOnWriteArrayList<>();
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-ticker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    Metrics() {
+        Collections.addAll(all, login, register, search, browse, alsoBought, addToCart, removeFromCart, placeOrder, orderHistory,
+                addBook, updateBook, deleteBook, salesReport);
+        for (OperationStats stats : all) register(stats);
+        ticker.scheduleAtFixedRate(() -> {
+            for (OperationStats stats : all) stats.tick();
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Adds stats kept elsewhere, so they are shown and exported with the store's. */
+    void add(OperationStats stats) {
+        all.add(stats);
+        register(stats);
+    }
+
+    /** Every operation, in display order. */
+    List<OperationStats> all() {
+        return new ArrayList<>(all);
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+    }
+
+    // When a JVM has several stores (benchmarks do) the first keeps the names until it shuts down
+    private void register(OperationStats stats) {
+        try {
+            ObjectName name = new ObjectName("bookstore:type=Operation,name=" + stats.name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+            registered.add(name);
+        } catch (InstanceAlreadyExistsException e) {
+            // Exported by another store
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not export " + stats.name + " over JMX: " + e);
+        }
+    }
+}
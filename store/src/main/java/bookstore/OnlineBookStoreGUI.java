@@ -0,0 +1,921 @@
+package bookstore;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.regex.Pattern;
+
+
+public class OnlineBookStoreGUI extends JFrame {
+
+    // Store operations run on StoreService's worker pool; the EDT only shows results
+    private final BookStore store;
+    private final StoreService service;
+    private final EdtLatencyProbe edtProbe = new EdtLatencyProbe();
+    private Session session; // null while logged out
+
+    // UI Components
+    private CardLayout cardLayout = new CardLayout();
+    private JPanel mainPanel = new JPanel(cardLayout);
+    private JTable bookTable, cartTable, adminBookTable, ordersTable;
+    private CatalogTableModel bookTableModel, adminBookTableModel;
+    private CartTableModel cartTableModel;
+    private OrderHistoryTableModel ordersTableModel;
+    private DiagnosticsTableModel diagnosticsTableModel;
+    private SalesTableModel[] salesTableModels;
+    private JLabel salesSummary;
+    private JLabel alsoBoughtLabel;
+    private JScrollPane ordersScrollPane;
+    private final DecimalFormat currencyFormat = new DecimalFormat("₹#,##0.00");
+    private final PriceFormatCache priceCache = new PriceFormatCache(currencyFormat);
+    private static final int SEARCH_LIMIT = 1000;
+    private static final int BROWSE_LIMIT = 100_000;
+    private static final int SUGGESTION_LIMIT = 8;
+    private static final int ALSO_BOUGHT_SHOWN = 5;
+    private boolean suppressSuggestions;
+
+    // Sort chosen by clicking a table header; null for catalog order
+    private SortedIndex.Field homeSort, adminSort;
+    private boolean homeDescending, adminDescending;
+
+    // Sales report: how many top books and customers, and how far back the day and hour buckets go
+    private static final int SALES_TOP = 20;
+    private static final int SALES_DAYS = 30;
+    private static final int SALES_HOURS = 24;
+
+    // Order history paging
+    private static final int ORDERS_PAGE = 50;
+    private static final int ORDERS_PREFETCH_PX = 200;
+    private int ordersCursor;
+    private int ordersGeneration;
+    private boolean ordersLoading;
+
+    // Busy indicator for running store operations
+    private final Set<CompletableFuture<?>> runningTasks = new LinkedHashSet<>();
+    private final JPanel statusBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    private final JLabel statusLabel = new JLabel();
+    private final javax.swing.Timer showBusyTimer = new javax.swing.Timer(150, e -> statusBar.setVisible(true));
+
+    // Admin form fields (fixed references)
+    private JTextField adminIdField, adminTitleField, adminAuthorField, adminPriceField, adminStockField;
+
+    /** A window onto a store that is already loaded; see main(). */
+    OnlineBookStoreGUI(BookStore store) {
+        this.store = store;
+        this.service = new StoreService(store);
+        setTitle("Online Book Store v2.1 - Production Ready");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(1000, 700);
+        setLocationRelativeTo(null);
+        
+        // Closes the journal cleanly when the window exits the JVM
+        Runtime.getRuntime().addShutdownHook(new Thread(service::shutdown, "store-shutdown"));
+        initUI();
+        store.setHoldExpiredListener((expiredCart, book) -> SwingUtilities.invokeLater(() -> holdExpired(expiredCart, book)));
+        startEdtProbe();
+        setVisible(true);
+    }
+
+    // -Dbookstore.edtProbe=true logs every EDT stall longer than one frame
+    private void startEdtProbe() {
+        if (Boolean.getBoolean("bookstore.edtProbe")) {
+            edtProbe.setStallListener(nanos -> System.err.printf("EDT stall: %.1f ms (%d of %d samples)%n",
+                    nanos / 1e6, edtProbe.stalls(), edtProbe.samples()));
+        }
+        store.metrics().add(edtProbe.stats());
+        edtProbe.start();
+    }
+
+    private void initUI() {
+        mainPanel.add(createLoginPanel(), "LOGIN");
+        mainPanel.add(createRegisterPanel(), "REGISTER");
+        mainPanel.add(createHomePanel(), "HOME");
+        mainPanel.add(createCartPanel(), "CART");
+        mainPanel.add(createAdminPanel(), "ADMIN");
+        mainPanel.add(createOrdersPanel(), "ORDERS");
+        mainPanel.add(createDiagnosticsPanel(), "DIAGNOSTICS");
+        mainPanel.add(createSalesPanel(), "SALES");
+
+        add(mainPanel, BorderLayout.CENTER);
+        add(createStatusBar(), BorderLayout.SOUTH);
+        cardLayout.show(mainPanel, "LOGIN");
+    }
+
+    private JPanel createStatusBar() {
+        JProgressBar busyBar = new JProgressBar();
+        busyBar.setIndeterminate(true);
+        JButton cancelBtn = new JButton("Cancel");
+        cancelBtn.addActionListener(e -> {
+            for (CompletableFuture<?> task : new ArrayList<>(runningTasks)) {
+                task.cancel(true);
+            }
+        });
+        statusBar.add(busyBar);
+        statusBar.add(statusLabel);
+        statusBar.add(cancelBtn);
+        statusBar.setVisible(false);
+        showBusyTimer.setRepeats(false);
+        return statusBar;
+    }
+
+    // Shows the busy indicator while the task runs, then hands its result to onSuccess on the EDT.
+    // StoreExceptions are shown as error messages; cancelled tasks are silently dropped.
+    private <T> void runTask(String busyText, CompletableFuture<T> task, Consumer<T> onSuccess) {
+        runTask(busyText, task, onSuccess, () -> { });
+    }
+
+    private <T> void runTask(String busyText, CompletableFuture<T> task, Consumer<T> onSuccess, Runnable afterwards) {
+        runningTasks.add(task);
+        statusLabel.setText(busyText + "...");
+        showBusyTimer.restart();
+        task.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            runningTasks.remove(task);
+            if (runningTasks.isEmpty()) {
+                showBusyTimer.stop();
+                statusBar.setVisible(false);
+            }
+            afterwards.run();
+            if (task.isCancelled()) return;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                String message = cause instanceof StoreException ? cause.getMessage() : "Unexpected error: " + cause;
+                showMessage(message, "Error", JOptionPane.ERROR_MESSAGE);
+                if (cause instanceof SessionExpiredException) endSession();
+                return;
+            }
+            onSuccess.accept(result);
+        }));
+    }
+
+    private void showMessage(String message, String title, int type) {
+        JOptionPane.showMessageDialog(this, message, title, type);
+    }
+
+    private JPanel createLoginPanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+        gbc.anchor = GridBagConstraints.WEST;
+
+        JLabel title = new JLabel("📚 Online Book Store - Login");
+        title.setFont(new Font("Arial", Font.BOLD, 22));
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
+        panel.add(title, gbc);
+
+        gbc.gridwidth = 1;
+        gbc.gridy = 1; gbc.gridx = 0;
+        panel.add(new JLabel("Username:"), gbc);
+        JTextField userField = new JTextField(15);
+        gbc.gridx = 1;
+        panel.add(userField, gbc);
+
+        gbc.gridy = 2; gbc.gridx = 0;
+        panel.add(new JLabel("Password:"), gbc);
+        JPasswordField passField = new JPasswordField(15);
+        gbc.gridx = 1;
+        panel.add(passField, gbc);
+
+        gbc.gridy = 3;
+        JButton loginBtn = new JButton("Login");
+        gbc.gridx = 0;
+        panel.add(loginBtn, gbc);
+
+        JButton registerBtn = new JButton("Register");
+        gbc.gridx = 1;
+        panel.add(registerBtn, gbc);
+
+        loginBtn.addActionListener(e -> {
+            String username = userField.getText().trim();
+            String password = new String(passField.getPassword()).trim();
+
+            runTask("Logging in", service.login(username, password), opened -> {
+                session = opened;
+                cartTableModel.setCart(opened.cart);
+                refreshCartTable();
+                showMessage("Login successful! Welcome " + username, "Success", JOptionPane.INFORMATION_MESSAGE);
+                refreshBookTable();
+                cardLayout.show(mainPanel, opened.user.isAdmin ? "ADMIN" : "HOME");
+            });
+        });
+
+        registerBtn.addActionListener(e -> cardLayout.show(mainPanel, "REGISTER"));
+        return panel;
+    }
+
+    private JPanel createRegisterPanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+
+        JLabel title = new JLabel("Register New User");
+        title.setFont(new Font("Arial", Font.BOLD, 22));
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
+        panel.add(title, gbc);
+
+        gbc.gridwidth = 1;
+        gbc.gridy = 1; gbc.gridx = 0;
+        panel.add(new JLabel("Username:"), gbc);
+        JTextField userField = new JTextField(15);
+        gbc.gridx = 1;
+        panel.add(userField, gbc);
+
+        gbc.gridy = 2; gbc.gridx = 0;
+        panel.add(new JLabel("Password:"), gbc);
+        JPasswordField passField = new JPasswordField(15);
+        gbc.gridx = 1;
+        panel.add(passField, gbc);
+
+        gbc.gridy = 3;
+        JButton registerBtn = new JButton("Register");
+        gbc.gridx = 0;
+        panel.add(registerBtn, gbc);
+
+        JButton backBtn = new JButton("Back");
+        gbc.gridx = 1;
+        panel.add(backBtn, gbc);
+
+        registerBtn.addActionListener(e -> {
+            String username = userField.getText().trim();
+            String password = new String(passField.getPassword()).trim();
+
+            runTask("Registering", service.register(username, password), done -> {
+                showMessage("Registered successfully!\nPlease login.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                cardLayout.show(mainPanel, "LOGIN");
+            });
+        });
+
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "LOGIN"));
+        return panel;
+    }
+
+    private JPanel createHomePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel title = new JLabel("🏠 Available Books", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 24));
+
+        JPanel searchPanel = new JPanel();
+        JTextField searchField = new JTextField(30);
+        JButton searchBtn = new JButton("🔍 Search");
+        JButton clearSearchBtn = new JButton("Clear");
+        searchPanel.add(new JLabel("Title or author:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchBtn);
+        searchPanel.add(clearSearchBtn);
+
+        JPanel filterPanel = new JPanel();
+        JTextField minPriceField = new JTextField(6);
+        JTextField maxPriceField = new JTextField(6);
+        JCheckBox inStockBox = new JCheckBox("In stock only");
+        JButton applyBtn = new JButton("Apply");
+        filterPanel.add(new JLabel("Price from:"));
+        filterPanel.add(minPriceField);
+        filterPanel.add(new JLabel("to:"));
+        filterPanel.add(maxPriceField);
+        filterPanel.add(inStockBox);
+        filterPanel.add(applyBtn);
+
+        JPanel controlsPanel = new JPanel(new GridLayout(2, 1));
+        controlsPanel.add(searchPanel);
+        controlsPanel.add(filterPanel);
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(title, BorderLayout.NORTH);
+        topPanel.add(controlsPanel, BorderLayout.SOUTH);
+        panel.add(topPanel, BorderLayout.NORTH);
+
+        bookTableModel = new CatalogTableModel(store.catalog(), priceCache);
+        bookTable = new JTable(bookTableModel);
+        bookTable.getTableHeader().setToolTipText("Click Title, Price or Stock to sort; click again to reverse");
+        JScrollPane scrollPane = new JScrollPane(bookTable);
+
+        JPanel buttonPanel = new JPanel();
+        JButton addToCartBtn = new JButton("🛒 Add to Cart");
+        JButton viewCartBtn = new JButton("🛍️ View Cart");
+        JButton ordersBtn = new JButton("📋 Orders");
+        JButton adminBtn = new JButton("⚙️ Admin");
+        JButton logoutBtn = new JButton("🚪 Logout");
+
+        buttonPanel.add(addToCartBtn);
+        buttonPanel.add(viewCartBtn);
+        buttonPanel.add(ordersBtn);
+        buttonPanel.add(adminBtn);
+        buttonPanel.add(logoutBtn);
+
+        alsoBoughtLabel = new JLabel(" ", SwingConstants.CENTER);
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(alsoBoughtLabel, BorderLayout.NORTH);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(bottomPanel, BorderLayout.SOUTH);
+
+        // Looked up on a worker (see showAlsoBought()); the EDT only shows the result
+        bookTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) showAlsoBought();
+        });
+
+        // Sorting and the price and stock filters; a range of the sort index is shown live, anything else is fetched
+        ActionListener browseAction = e -> {
+            BookQuery q = new BookQuery();
+            q.sort = homeSort;
+            q.descending = homeDescending;
+            try {
+                if (!minPriceField.getText().trim().isEmpty()) q.minPrice = Double.parseDouble(minPriceField.getText().trim());
+                if (!maxPriceField.getText().trim().isEmpty()) q.maxPrice = Double.parseDouble(maxPriceField.getText().trim());
+            } catch (NumberFormatException ex) {
+                showMessage("Prices must be numbers", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            q.inStockOnly = inStockBox.isSelected();
+            searchField.setText("");
+            if (q.sort == null && !q.hasPriceRange() && !q.inStockOnly) {
+                bookTableModel.showAll();
+            } else if (q.isKeyRange()) {
+                bookTableModel.showSorted(store.sortedIndex(q.sort), q.fromKey(), q.toKey(), q.descending);
+            } else {
+                q.limit = BROWSE_LIMIT;
+                runTask("Filtering", service.browse(q), bookTableModel::showOnly);
+            }
+        };
+        applyBtn.addActionListener(browseAction);
+        minPriceField.addActionListener(browseAction);
+        maxPriceField.addActionListener(browseAction);
+        inStockBox.addActionListener(browseAction);
+        bookTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                SortedIndex.Field field = sortFieldOf(bookTable, e);
+                homeDescending = field != null && field == homeSort && !homeDescending;
+                homeSort = field;
+                browseAction.actionPerformed(null);
+            }
+        });
+
+        JPopupMenu suggestionPopup = new JPopupMenu();
+        suggestionPopup.setFocusable(false);
+
+        ActionListener searchAction = e -> {
+            suggestionPopup.setVisible(false);
+            String query = searchField.getText().trim();
+            if (query.isEmpty()) {
+                browseAction.actionPerformed(null);
+                return;
+            }
+            runTask("Searching", service.search(query, SEARCH_LIMIT), results -> {
+                bookTableModel.showOnly(results);
+                if (results.length == 0) {
+                    showMessage("No books match \"" + query + "\"", "Search", JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
+        };
+        searchField.addActionListener(searchAction);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { updateSuggestions(searchField, suggestionPopup, searchAction); }
+            public void removeUpdate(DocumentEvent e) { updateSuggestions(searchField, suggestionPopup, searchAction); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+        searchBtn.addActionListener(searchAction);
+        clearSearchBtn.addActionListener(browseAction);
+
+        addToCartBtn.addActionListener(e -> {
+            int row = bookTable.getSelectedRow();
+            if (row == -1) {
+                showMessage("Select a book first", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            Book book = bookTableModel.bookAt(bookTable.convertRowIndexToModel(row));
+            if (book == null) {
+                showMessage("Book out of stock or not found", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (session == null) return;
+            if (session.cart.contains(book.getId())) {
+                showMessage("Book already in cart!", "Info", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            runTask("Adding to cart", service.addToCart(session.id, book.getId()), added ->
+                    showMessage(added.getTitle() + " added to cart!", "Success", JOptionPane.INFORMATION_MESSAGE));
+        });
+
+        viewCartBtn.addActionListener(e -> {
+            refreshCartTable();
+            cardLayout.show(mainPanel, "CART");
+        });
+
+        ordersBtn.addActionListener(e -> showOrderHistory());
+
+        adminBtn.addActionListener(e -> {
+            if (session != null && session.user.isAdmin) {
+                refreshAdminBookTable();
+                cardLayout.show(mainPanel, "ADMIN");
+            } else {
+                showMessage("Admin access required", "Access Denied", JOptionPane.WARNING_MESSAGE);
+            }
+        });
+
+        logoutBtn.addActionListener(e -> endSession());
+
+        return panel;
+    }
+
+    // Asks in the background; an answer for a book that is no longer selected is dropped
+    private void showAlsoBought() {
+        Book book = selectedBook();
+        if (book == null) {
+            alsoBoughtLabel.setText(" ");
+            return;
+        }
+        runTask("Finding related books", service.alsoBought(book.getId()), others -> {
+            Book selected = selectedBook();
+            if (selected == null || selected.getId() != book.getId()) return;
+            showAlsoBought(others);
+        });
+    }
+
+    private Book selectedBook() {
+        int row = bookTable.getSelectedRow();
+        return row == -1 ? null : bookTableModel.bookAt(bookTable.convertRowIndexToModel(row));
+    }
+
+    private void showAlsoBought(List<Book> others) {
+        if (others.isEmpty()) {
+            alsoBoughtLabel.setText(" ");
+            return;
+        }
+        StringBuilder text = new StringBuilder("Customers who bought this also bought: ");
+        for (int i = 0; i < Math.min(ALSO_BOUGHT_SHOWN, others.size()); i++) {
+            if (i > 0) text.append(", ");
+            text.append(others.get(i).getTitle());
+        }
+        alsoBoughtLabel.setText(text.toString());
+    }
+
+    // Asks for suggestions in the background; stale answers are dropped when they arrive
+    private void updateSuggestions(JTextField field, JPopupMenu popup, ActionListener searchAction) {
+        if (suppressSuggestions) return;
+        String typed = field.getText();
+        if (typed.trim().isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        store.autocomplete().suggest(typed, SUGGESTION_LIMIT, suggestions -> {
+            if (!typed.equals(field.getText()) || !field.isShowing()) return;
+            popup.setVisible(false);
+            popup.removeAll();
+            if (suggestions.isEmpty()) return;
+            for (Autocomplete.Suggestion s : suggestions) {
+                JMenuItem item = new JMenuItem((s.author ? "👤 " : "📖 ") + s.text);
+                item.addActionListener(e -> {
+                    suppressSuggestions = true;
+                    field.setText(s.text);
+                    suppressSuggestions = false;
+                    searchAction.actionPerformed(e);
+                });
+                popup.add(item);
+            }
+            popup.show(field, 0, field.getHeight());
+            field.requestFocusInWindow();
+        });
+    }
+
+    // Back to the login screen; closing the session gives its cart's stock back
+    private void endSession() {
+        Session previous = session;
+        session = null;
+        cartTableModel.setCart(new Cart());
+        cardLayout.show(mainPanel, "LOGIN");
+        if (previous != null) runTask("Logging out", service.logout(previous.id), done -> { });
+    }
+
+    private void holdExpired(Cart expiredCart, Book book) {
+        if (session == null || expiredCart != session.cart) return;
+        refreshCartTable();
+        showMessage("Your hold on \"" + book.getTitle() + "\" expired; it was removed from the cart.",
+                "Cart", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private JPanel createCartPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel title = new JLabel("🛒 Shopping Cart", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        panel.add(title, BorderLayout.NORTH);
+
+        cartTableModel = new CartTableModel(new Cart(), priceCache);
+        cartTable = new JTable(cartTableModel);
+        JScrollPane scrollPane = new JScrollPane(cartTable);
+
+        JPanel bottomPanel = new JPanel();
+        JButton removeBtn = new JButton("❌ Remove");
+        JButton placeOrderBtn = new JButton("💳 Place Order");
+        JButton backBtn = new JButton("⬅️ Back");
+
+        bottomPanel.add(removeBtn);
+        bottomPanel.add(placeOrderBtn);
+        bottomPanel.add(backBtn);
+
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(bottomPanel, BorderLayout.SOUTH);
+
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "HOME"));
+
+        removeBtn.addActionListener(e -> {
+            int row = cartTable.getSelectedRow();
+            if (row == -1) {
+                showMessage("Select book to remove", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            Book item = cartTableModel.bookAt(cartTable.convertRowIndexToModel(row));
+            if (item == null || session == null) return;
+            runTask("Removing from cart", service.removeFromCart(session.id, item.getId()), done -> refreshCartTable());
+        });
+
+        placeOrderBtn.addActionListener(e -> {
+            if (session == null) return;
+            if (session.cart.isEmpty()) {
+                showMessage("Cart is empty", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            runTask("Placing order", service.placeOrder(session.id), order ->
+                    showMessage("Order placed! Total: " + currencyFormat.format(order.total()), "Success", JOptionPane.INFORMATION_MESSAGE),
+                    this::refreshCartTable);
+        });
+
+        return panel;
+    }
+
+    private JPanel createAdminPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel title = new JLabel("⚙️ Admin - Manage Books", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        panel.add(title, BorderLayout.NORTH);
+
+        adminBookTableModel = new CatalogTableModel(store.catalog(), priceCache);
+        adminBookTable = new JTable(adminBookTableModel);
+        adminBookTable.getTableHeader().setToolTipText("Click Title, Price or Stock to sort; click again to reverse");
+        adminBookTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                SortedIndex.Field field = sortFieldOf(adminBookTable, e);
+                adminDescending = field != null && field == adminSort && !adminDescending;
+                adminSort = field;
+                if (field == null) {
+                    adminBookTableModel.showAll();
+                } else {
+                    adminBookTableModel.showSorted(store.sortedIndex(field), Long.MIN_VALUE, Long.MAX_VALUE, adminDescending);
+                }
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(adminBookTable);
+
+        JPanel formPanel = new JPanel(new GridLayout(6, 2, 5, 5));
+        formPanel.add(new JLabel("ID:"));
+        adminIdField = new JTextField();
+        formPanel.add(adminIdField);
+        
+        formPanel.add(new JLabel("Title:"));
+        adminTitleField = new JTextField();
+        formPanel.add(adminTitleField);
+        
+        formPanel.add(new JLabel("Author:"));
+        adminAuthorField = new JTextField();
+        formPanel.add(adminAuthorField);
+        
+        formPanel.add(new JLabel("Price:"));
+        adminPriceField = new JTextField();
+        formPanel.add(adminPriceField);
+        
+        formPanel.add(new JLabel("Stock:"));
+        adminStockField = new JTextField();
+        formPanel.add(adminStockField);
+
+        JPanel buttonPanel = new JPanel();
+        JButton addBtn = new JButton("Add");
+        JButton updateBtn = new JButton("Update");
+        JButton deleteBtn = new JButton("Delete");
+        JButton importBtn = new JButton("Import...");
+        JButton exportBtn = new JButton("Export...");
+        JButton diagnosticsBtn = new JButton("Diagnostics");
+        JButton salesBtn = new JButton("Sales Report");
+        JButton backBtn = new JButton("Back");
+
+        buttonPanel.add(addBtn);
+        buttonPanel.add(updateBtn);
+        buttonPanel.add(deleteBtn);
+        buttonPanel.add(importBtn);
+        buttonPanel.add(exportBtn);
+        buttonPanel.add(diagnosticsBtn);
+        buttonPanel.add(salesBtn);
+        buttonPanel.add(backBtn);
+
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(formPanel, BorderLayout.NORTH);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        addBtn.addActionListener(e -> addAdminBook());
+        updateBtn.addActionListener(e -> updateAdminBook());
+        deleteBtn.addActionListener(e -> deleteAdminBook());
+        importBtn.addActionListener(e -> importCatalog());
+        exportBtn.addActionListener(e -> exportCatalog());
+        diagnosticsBtn.addActionListener(e -> cardLayout.show(mainPanel, "DIAGNOSTICS"));
+        salesBtn.addActionListener(e -> cardLayout.show(mainPanel, "SALES"));
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "HOME"));
+
+        adminBookTable.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int row = adminBookTable.getSelectedRow();
+                if (row != -1) {
+                    // Read the book itself: the Price cell is formatted and wouldn't parse back
+                    Book b = adminBookTableModel.bookAt(adminBookTable.convertRowIndexToModel(row));
+                    if (b == null) return;
+                    adminIdField.setText(String.valueOf(b.getId()));
+                    adminTitleField.setText(b.getTitle());
+                    adminAuthorField.setText(b.getAuthor());
+                    adminPriceField.setText(String.valueOf(b.getPrice()));
+                    adminStockField.setText(String.valueOf(b.getStock()));
+                }
+            }
+        });
+
+        return panel;
+    }
+
+    // Title, Price and Stock sort through the catalog's sorted indexes; other columns mean catalog order
+    private static SortedIndex.Field sortFieldOf(JTable table, MouseEvent e) {
+        int column = table.columnAtPoint(e.getPoint());
+        switch (column < 0 ? -1 : table.convertColumnIndexToModel(column)) {
+            case 1: return SortedIndex.Field.TITLE;
+            case 3: return SortedIndex.Field.PRICE;
+            case 4: return SortedIndex.Field.STOCK;
+            default: return null;
+        }
+    }
+
+    private void addAdminBook() {
+        if (session == null) return;
+        try {
+            int id = Integer.parseInt(adminIdField.getText().trim());
+            String title = adminTitleField.getText().trim();
+            String author = adminAuthorField.getText().trim();
+            double price = Double.parseDouble(adminPriceField.getText().trim());
+            int stock = Integer.parseInt(adminStockField.getText().trim());
+
+            runTask("Adding book", service.addBook(session.id, id, title, author, price, stock), done -> {
+                showMessage("Book added successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                clearAdminFields();
+            });
+        } catch (NumberFormatException ex) {
+            showMessage("Invalid number format", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void updateAdminBook() {
+        if (session == null) return;
+        try {
+            int id = Integer.parseInt(adminIdField.getText().trim());
+            String title = adminTitleField.getText().trim();
+            String author = adminAuthorField.getText().trim();
+            double price = Double.parseDouble(adminPriceField.getText().trim());
+            int stock = Integer.parseInt(adminStockField.getText().trim());
+
+            runTask("Updating book", service.updateBook(session.id, id, title, author, price, stock), done ->
+                    showMessage("Book updated", "Success", JOptionPane.INFORMATION_MESSAGE));
+        } catch (NumberFormatException ex) {
+            showMessage("Invalid number format", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void deleteAdminBook() {
+        if (session == null) return;
+        try {
+            int id = Integer.parseInt(adminIdField.getText().trim());
+            runTask("Deleting book", service.deleteBook(session.id, id), deleted -> {
+                showMessage("Book deleted", "Success", JOptionPane.INFORMATION_MESSAGE);
+                clearAdminFields();
+            });
+        } catch (NumberFormatException ex) {
+            showMessage("Invalid ID", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Bulk import and export run in the background; the status bar shows how far along they are and can cancel them
+    private void importCatalog() {
+        File file = chooseCatalogFile(false);
+        // The session may have ended while the chooser was open
+        if (file == null || session == null) return;
+        runTask("Importing " + file.getName(), service.importBooks(session.id, file, progressIn("Importing " + file.getName())),
+                result -> showMessage(result.summary(), "Import", result.rejected == 0
+                        ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE));
+    }
+
+    private void exportCatalog() {
+        File file = chooseCatalogFile(true);
+        if (file == null || session == null) return;
+        runTask("Exporting " + file.getName(), service.exportBooks(session.id, file, progressIn("Exporting " + file.getName())),
+                count -> showMessage(count + " books exported to " + file.getName(), "Export", JOptionPane.INFORMATION_MESSAGE));
+    }
+
+    private File chooseCatalogFile(boolean save) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Catalog files (CSV, TSV)", "csv", "tsv", "tab"));
+        if (save) chooser.setSelectedFile(new File("catalog.csv"));
+        int choice = save ? chooser.showSaveDialog(this) : chooser.showOpenDialog(this);
+        return choice == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
+
+    // Called on the worker; shows the fraction done in the status bar
+    private DoubleConsumer progressIn(String busyText) {
+        return done -> SwingUtilities.invokeLater(() -> statusLabel.setText(busyText + "... " + (int) (done * 100) + "%"));
+    }
+
+    private void clearAdminFields() {
+        adminIdField.setText("");
+        adminTitleField.setText("");
+        adminAuthorField.setText("");
+        adminPriceField.setText("");
+        adminStockField.setText("");
+    }
+
+    private JPanel createOrdersPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel title = new JLabel("📋 Order History", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        panel.add(title, BorderLayout.NORTH);
+
+        ordersTableModel = new OrderHistoryTableModel(priceCache);
+        ordersTable = new JTable(ordersTableModel);
+        ordersScrollPane = new JScrollPane(ordersTable);
+        // Fetch the next page as the user scrolls towards the end of what is loaded
+        ordersScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadMoreOrdersIfNearEnd());
+
+        JButton backBtn = new JButton("Back");
+        panel.add(ordersScrollPane, BorderLayout.CENTER);
+        panel.add(backBtn, BorderLayout.SOUTH);
+
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "HOME"));
+        return panel;
+    }
+
+    // Latency and rate of every store operation; repaints once a second while it is showing
+    private JPanel createDiagnosticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel title = new JLabel("📈 Diagnostics - last " + Metrics.WINDOW_SECONDS + " s", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        panel.add(title, BorderLayout.NORTH);
+
+        diagnosticsTableModel = new DiagnosticsTableModel(store.metrics());
+        JTable diagnosticsTable = new JTable(diagnosticsTableModel);
+        JButton backBtn = new JButton("Back");
+        panel.add(new JScrollPane(diagnosticsTable), BorderLayout.CENTER);
+        panel.add(backBtn, BorderLayout.SOUTH);
+
+        javax.swing.Timer refreshTimer = new javax.swing.Timer(1000, e -> diagnosticsTableModel.refresh());
+        panel.addComponentListener(new ComponentAdapter() {
+            public void componentShown(ComponentEvent e) {
+                diagnosticsTableModel.refresh();
+                refreshTimer.start();
+            }
+
+            public void componentHidden(ComponentEvent e) { refreshTimer.stop(); }
+        });
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "ADMIN"));
+        return panel;
+    }
+
+    // Sales totals are kept as orders are placed, so the report is read afresh every time the panel is shown
+    private JPanel createSalesPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JPanel header = new JPanel(new GridLayout(2, 1));
+        JLabel title = new JLabel("💰 Sales Report", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        salesSummary = new JLabel(" ", SwingConstants.CENTER);
+        header.add(title);
+        header.add(salesSummary);
+        panel.add(header, BorderLayout.NORTH);
+
+        String[] captions = {"Top " + SALES_TOP + " books", "Top " + SALES_TOP + " customers",
+                "Last " + SALES_DAYS + " days", "Last " + SALES_HOURS + " hours"};
+        JPanel tables = new JPanel(new GridLayout(2, 2));
+        salesTableModels = new SalesTableModel[captions.length];
+        for (int i = 0; i < captions.length; i++) {
+            salesTableModels[i] = new SalesTableModel(SalesTableModel.Kind.values()[i], priceCache, id -> {
+                Book book = store.findBook(id);
+                return book == null ? "(deleted)" : book.getTitle();
+            });
+            JScrollPane scroll = new JScrollPane(new JTable(salesTableModels[i]));
+            scroll.setBorder(BorderFactory.createTitledBorder(captions[i]));
+            tables.add(scroll);
+        }
+        panel.add(tables, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        JButton refreshBtn = new JButton("Refresh");
+        JButton exportBtn = new JButton("Export...");
+        JButton backBtn = new JButton("Back");
+        buttonPanel.add(refreshBtn);
+        buttonPanel.add(exportBtn);
+        buttonPanel.add(backBtn);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        panel.addComponentListener(new ComponentAdapter() {
+            public void componentShown(ComponentEvent e) { refreshSalesReport(); }
+        });
+        refreshBtn.addActionListener(e -> refreshSalesReport());
+        exportBtn.addActionListener(e -> exportSales());
+        backBtn.addActionListener(e -> cardLayout.show(mainPanel, "ADMIN"));
+        return panel;
+    }
+
+    private void refreshSalesReport() {
+        if (session == null) return;
+        runTask("Loading sales report", service.salesReport(session.id, SALES_TOP, SALES_DAYS, SALES_HOURS), report -> {
+            salesSummary.setText(String.format("%,d orders, %,d books sold, revenue %s, from %,d customers",
+                    report.orders, report.units, priceCache.format(report.paise / 100.0), report.customers));
+            for (SalesTableModel model : salesTableModels) model.show(report);
+        });
+    }
+
+    private void exportSales() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        chooser.setSelectedFile(new File("sales.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION || session == null) return;
+        File file = chooser.getSelectedFile();
+        runTask("Exporting " + file.getName(), service.exportSales(session.id, file),
+                count -> showMessage(count + " sales rows exported to " + file.getName(), "Export", JOptionPane.INFORMATION_MESSAGE));
+    }
+
+    // Helper methods
+    // The table models read the live data; these only tell the tables to repaint
+    private void refreshBookTable() {
+        bookTableModel.fireTableDataChanged();
+    }
+
+    private void refreshCartTable() {
+        cartTableModel.fireTableDataChanged();
+    }
+
+    private void refreshAdminBookTable() {
+        adminBookTableModel.fireTableDataChanged();
+    }
+
+    // Order history is fetched a page at a time, newest first
+    private void showOrderHistory() {
+        ordersGeneration++;
+        ordersLoading = false;
+        ordersCursor = OrderStore.NEWEST;
+        ordersTableModel.clear();
+        cardLayout.show(mainPanel, "ORDERS");
+        loadMoreOrders();
+    }
+
+    private void loadMoreOrdersIfNearEnd() {
+        JScrollBar bar = ordersScrollPane.getVerticalScrollBar();
+        if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - ORDERS_PREFETCH_PX) loadMoreOrders();
+    }
+
+    private void loadMoreOrders() {
+        if (ordersLoading || ordersCursor == 0 || session == null) return;
+        ordersLoading = true;
+        int generation = ordersGeneration;
+        runTask("Loading orders", service.orderHistory(session.id, ordersCursor, ORDERS_PAGE), page -> {
+            if (generation != ordersGeneration) return;
+            ordersTableModel.append(page.orders);
+            ordersCursor = page.next;
+            // Keep going until the viewport is full or the history runs out
+            SwingUtilities.invokeLater(this::loadMoreOrdersIfNearEnd);
+        }, () -> {
+            if (generation == ordersGeneration) ordersLoading = false;
+        });
+    }
+
+    // With --headless [port] the store serves its JSON API on localhost instead of opening a window
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            StoreHttpServer.runHeadless(args.length > 1 ? Integer.parseInt(args[1]) : StoreHttpServer.PORT);
+            return;
+        }
+        // Recovery and seeding (password hashing) can take seconds, so they run here rather than on the
+        // EDT; the window appears once the store is ready. Only a brand-new data directory gets the demo data.
+        BookStore store = new BookStore();
+        store.initSampleData();
+        SwingUtilities.invokeLater(() -> new OnlineBookStoreGUI(store));
+    }
+}
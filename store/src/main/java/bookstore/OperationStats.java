@@ -0,0 +1,75 @@
+package bookstore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count, failures and latency of one operation. record() is cheap enough to
+ * call on every operation: a clock read, one histogram increment and, for a
+ * failure, one counter increment, all lock-free.
+ *
+ * Metrics calls tick() once a second; the percentiles and rate it reports
+ * are over the last WINDOW_SECONDS of ticks.
+ */
+class OperationStats implements OperationStatsMXBean {
+
+    final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Cumulative snapshots from the last ticks, oldest overwritten; only the ticking thread writes them
+    private final LatencyHistogram.Snapshot[] ticks = new LatencyHistogram.Snapshot[Metrics.WINDOW_SECONDS + 1];
+    private int tick;
+    private volatile LatencyHistogram.Snapshot recent = LatencyHistogram.Snapshot.EMPTY;
+    private volatile double windowSeconds = 1;
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /** Records one operation that started at startNanos (System.nanoTime()) and has just ended. */
+    void record(long startNanos, boolean ok) {
+        recordNanos(System.nanoTime() - startNanos, ok);
+    }
+
+    void recordNanos(long nanos, boolean ok) {
+        latency.record(nanos);
+        if (!ok) failed.incrementAndGet();
+    }
+
+    void tick() {
+        LatencyHistogram.Snapshot now = latency.snapshot();
+        ticks[tick % ticks.length] = now;
+        // The first tick has nothing to subtract: it covers the (under a second) since start
+        int back = Math.min(tick, Metrics.WINDOW_SECONDS);
+        recent = back == 0 ? now : now.minus(ticks[(tick - back) % ticks.length]);
+        windowSeconds = Math.max(1, back);
+        tick++;
+    }
+
+    /** What was recorded in the current window. */
+    LatencyHistogram.Snapshot recent() { return recent; }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public long getCount() { return latency.snapshot().count; }
+
+    @Override
+    public long getFailed() { return failed.get(); }
+
+    @Override
+    public double getRatePerSecond() { return recent.count / windowSeconds; }
+
+    @Override
+    public double getP50Millis() { return recent.percentile(0.50) / 1e6; }
+
+    @Override
+    public double getP99Millis() { return recent.percentile(0.99) / 1e6; }
+
+    @Override
+    public double getP999Millis() { return recent.percentile(0.999) / 1e6; }
+
+    @Override
+    public double getMaxMillis() { return recent.max() / 1e6; }
+}
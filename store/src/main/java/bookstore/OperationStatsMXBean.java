@@ -0,0 +1,25 @@
+package bookstore;
+
+/**
+ * JMX view of one instrumented operation (bookstore:type=Operation,name=...).
+ * Percentiles and the rate cover the last Metrics.WINDOW_SECONDS seconds;
+ * the counts are totals since start.
+ */
+public interface OperationStatsMXBean {
+
+    String getName();
+
+    long getCount();
+
+    long getFailed();
+
+    double getRatePerSecond();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,80 @@
+package bookstore;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A placed order, kept compact since the store holds every order ever
+ * placed: the lines are one int array of (book id, quantity, unit price in
+ * paise) triples, the time is epoch millis, and the user name is shared by
+ * all orders of that user. Titles are not copied; look them up in the
+ * catalog by id when needed.
+ */
+class Order {
+
+    private static final int LINE = 3;
+    private static final DateTimeFormatter MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    private static final ConcurrentHashMap<String, String> USER_NAMES = new ConcurrentHashMap<>();
+
+    final String user;
+    final long placedAt;
+    private final int[] lines;
+
+    /** An order for one unit of each item, at the item's price, placed now. */
+    Order(String user, List<Book> items) {
+        this(user, System.currentTimeMillis(), linesOf(items));
+    }
+
+    Order(String user, long placedAt, int[] lines) {
+        String shared = USER_NAMES.putIfAbsent(user, user);
+        this.user = shared != null ? shared : user;
+        this.placedAt = placedAt;
+        this.lines = lines;
+    }
+
+    private static int[] linesOf(List<Book> items) {
+        int[] lines = new int[items.size() * LINE];
+        for (int i = 0; i < items.size(); i++) {
+            Book b = items.get(i);
+            lines[i * LINE] = b.getId();
+            lines[i * LINE + 1] = 1;
+            lines[i * LINE + 2] = toPaise(b.getPrice());
+        }
+        return lines;
+    }
+
+    // Book.invalid() keeps prices within an int of paise; anything else is a bug, not a wrapped price
+    static int toPaise(double price) {
+        return Math.toIntExact(Math.round(price * 100));
+    }
+
+    int lineCount() { return lines.length / LINE; }
+
+    int bookId(int line) { return lines[line * LINE]; }
+
+    int quantity(int line) { return lines[line * LINE + 1]; }
+
+    double price(int line) { return lines[line * LINE + 2] / 100.0; }
+
+    int paise(int line) { return lines[line * LINE + 2]; }
+
+    /** The raw (id, quantity, paise) triples, for persistence; not to be modified. */
+    int[] lines() { return lines; }
+
+    double total() {
+        long paise = 0;
+        for (int i = 0; i < lines.length; i += LINE) {
+            paise += (long) lines[i + 1] * lines[i + 2];
+        }
+        return paise / 100.0;
+    }
+
+    /** Local date and time placed, to the minute, e.g. 2024-05-01T14:03. */
+    String placedAtText() {
+        return MINUTES.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(placedAt), ZoneId.systemDefault()));
+    }
+}
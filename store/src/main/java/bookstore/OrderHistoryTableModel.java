@@ -0,0 +1,60 @@
+package bookstore;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Table model for the Orders panel; pages are appended as they are fetched, cells formatted on paint. */
+class OrderHistoryTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Placed", "User", "Books", "Total"};
+
+    private final List<Order> orders = new ArrayList<>();
+    private final PriceFormatCache prices;
+
+    OrderHistoryTableModel(PriceFormatCache prices) {
+        this.prices = prices;
+    }
+
+    void clear() {
+        orders.clear();
+        fireTableDataChanged();
+    }
+
+    void append(List<Order> page) {
+        if (page.isEmpty()) return;
+        int first = orders.size();
+        orders.addAll(page);
+        fireTableRowsInserted(first, orders.size() - 1);
+    }
+
+    @Override
+    public int getRowCount() { return orders.size(); }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Order o = orders.get(row);
+        switch (column) {
+            case 0: return o.placedAtText();
+            case 1: return o.user;
+            case 2: {
+                int books = 0;
+                for (int i = 0; i < o.lineCount(); i++) books += o.quantity(i);
+                return books;
+            }
+            case 3: return prices.format(o.total());
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * All placed orders, indexed by user. Each user's history is a list of
+ * fixed-size partitions filled in the order the orders were placed, so the
+ * partitions cover consecutive, non-overlapping time ranges. Paging newest
+ * first is plain index arithmetic: fetching a page of a user's history costs
+ * a hash lookup plus the page itself, however many orders the store holds.
+ * A global history of every order, for admins and snapshots, is kept the
+ * same way, and every order is folded into SalesAnalytics and AlsoBought as
+ * it is added, then handed to the order listener.
+ *
+ * Thread-safe. Appends lock the store; that lock ranks with the catalog and
+ * user locks in the persistence lock order.
+ */
+class OrderStore {
+
+    private static final int PARTITION = 256;
+
+    /** One page of a history, newest first. */
+    static final class Page {
+        final List<Order> orders;
+        /** Cursor for the next (older) page; 0 when there are no more. */
+        final int next;
+        /** Orders in the whole history when the page was read. */
+        final int total;
+
+        Page(List<Order> orders, int next, int total) {
+            this.orders = orders;
+            this.next = next;
+            this.total = total;
+        }
+    }
+
+    /** Cursor for the first page: start from the newest order. */
+    static final int NEWEST = -1;
+
+    private final ConcurrentHashMap<String, History> byUser = new ConcurrentHashMap<>();
+    private final History all = new History();
+    private final SalesAnalytics sales = new SalesAnalytics();
+    private final AlsoBought alsoBought;
+    private volatile Consumer<Order> listener = order -> { };
+
+    OrderStore() {
+        this(BookStore.MAX_CO_PURCHASE_PAIRS);
+    }
+
+    OrderStore(int maxCoPurchasePairs) {
+        alsoBought = new AlsoBought(maxCoPurchasePairs);
+    }
+
+    synchronized void add(Order order) {
+        all.append(order);
+        byUser.computeIfAbsent(order.user, u -> new History()).append(order);
+        sales.record(order);
+        alsoBought.record(order);
+        listener.accept(order);
+    }
+
+    /** Called with every order added from now on, under the store lock, so it must be quick. */
+    void setOrderListener(Consumer<Order> listener) {
+        this.listener = listener;
+    }
+
+    /** Running sales totals over every order added. */
+    SalesAnalytics sales() { return sales; }
+
+    /** Books bought together, over every order added. */
+    AlsoBought alsoBought() { return alsoBought; }
+
+    int size() { return all.size(); }
+
+    int countFor(String user) {
+        History h = byUser.get(user);
+        return h == null ? 0 : h.size();
+    }
+
+    /** A page of the user's orders, or of everyone's when user is null; start with NEWEST. */
+    Page page(String user, int cursor, int limit) {
+        History h = user == null ? all : byUser.get(user);
+        if (h == null) return new Page(Collections.<Order>emptyList(), 0, 0);
+        return h.page(cursor, limit);
+    }
+
+    /** Every order, oldest first. */
+    List<Order> all() {
+        return all.oldestFirst();
+    }
+
+    /** Append-only history split into partitions of PARTITION orders. */
+    private static final class History {
+        private Order[][] partitions = new Order[4][];
+        private volatile int size;
+
+        // Appends are serialized by the OrderStore lock. Readers don't lock: they read the
+        // volatile size first, which makes everything appended before it visible.
+        void append(Order order) {
+            int p = size / PARTITION;
+            if (p == partitions.length) partitions = Arrays.copyOf(partitions, p * 2);
+            if (partitions[p] == null) partitions[p] = new Order[PARTITION];
+            partitions[p][size % PARTITION] = order;
+            size++;
+        }
+
+        int size() { return size; }
+
+        Page page(int cursor, int limit) {
+            int total = size;
+            Order[][] parts = partitions;
+            int end = cursor < 0 || cursor > total ? total : cursor;
+            int start = (int) Math.max(0, (long) end - limit);
+            List<Order> orders = new ArrayList<>(end - start);
+            for (int i = end - 1; i >= start; i--) {
+                orders.add(parts[i / PARTITION][i % PARTITION]);
+            }
+            return new Page(orders, start, total);
+        }
+
+        List<Order> oldestFirst() {
+            int total = size;
+            Order[][] parts = partitions;
+            List<Order> orders = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) orders.add(parts[i / PARTITION][i % PARTITION]);
+            return orders;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package bookstore;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted, deliberately slow password hashes (PBKDF2 with HMAC-SHA256).
+ * A hash is stored as one self-describing string,
+ * "pbkdf2-sha256$iterations$salt$hash", so the cost can be raised later
+ * without invalidating existing passwords: verify() reads the cost from the
+ * hash and needsRehash() says when a login should upgrade it. A stored
+ * value that isn't such a string matches no password.
+ */
+class PasswordHasher {
+
+    // -Dbookstore.passwordIterations; around 50 ms per hash on a modest core
+    static final int DEFAULT_ITERATIONS = Integer.getInteger("bookstore.passwordIterations", 100_000);
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    // Verified against when the user doesn't exist, so unknown names take as long as wrong passwords
+    private final String decoy;
+
+    PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    PasswordHasher(int iterations) {
+        this.iterations = iterations;
+        this.decoy = hash("decoy-password");
+    }
+
+    String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Checks the password against a stored hash. A null or malformed hash
+     * (unknown user, damaged record) fails, but still costs one hash.
+     */
+    boolean verify(String password, String stored) {
+        String[] parts = stored == null || !stored.startsWith(PREFIX) ? null : stored.split("\\$");
+        try {
+            if (parts != null && parts.length == 4) {
+                Base64.Decoder b64 = Base64.getDecoder();
+                byte[] expected = b64.decode(parts[3]);
+                byte[] actual = pbkdf2(password, b64.decode(parts[2]), Integer.parseInt(parts[1]));
+                return MessageDigest.isEqual(expected, actual);
+            }
+        } catch (IllegalArgumentException e) {
+            // Bad Base64 or iteration count: treated like any other malformed hash
+        }
+        verify(password, decoy);
+        return false;
+    }
+
+    /** True if the stored hash is cheaper than the current cost. */
+    boolean needsRehash(String stored) {
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end >= 0 && Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
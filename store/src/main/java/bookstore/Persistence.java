@@ -0,0 +1,134 @@
+package bookstore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the store on disk in a data directory: a Journal of every mutation
+ * plus Snapshots that the journal is periodically compacted into.
+ *
+ * Recovery loads the newest snapshot and replays the journal segments
+ * written after it. A background thread compacts once the current journal
+ * has grown past a threshold (-Dbookstore.compactMB, default 64): it rotates
+ * the journal and copies the state in one critical section, writes the
+ * snapshot outside it, and then deletes the segments and snapshots it
+ * supersedes.
+ *
+ * Lock order, here and in BookStore: catalog, users, orders, journal.
+ */
+class Persistence implements Closeable {
+
+    private static final long COMPACT_BYTES = Long.getLong("bookstore.compactMB", 64) << 20;
+    private static final long CHECK_SECONDS = 30;
+
+    private final File dir;
+    private final Catalog catalog;
+    private final UserDirectory users;
+    private final OrderStore orders;
+    private final Journal journal;
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Restores the store from dir into the given (empty) collections and opens the journal. */
+    Persistence(File dir, Catalog catalog, UserDirectory users, OrderStore orders) throws IOException {
+        this.dir = dir;
+        this.catalog = catalog;
+        this.users = users;
+        this.orders = orders;
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create data directory " + dir);
+
+        long covered = Snapshot.latest(dir);
+        if (covered >= 0) Snapshot.load(Snapshot.file(dir, covered), catalog, users, orders);
+        long last = covered;
+        Replay replay = new Replay();
+        for (long segment : Journal.segments(dir)) {
+            if (segment <= covered) continue;
+            File file = Journal.segmentFile(dir, segment);
+            // Every start opens a new segment; don't let empty ones pile up
+            if (Journal.replay(file, replay) == 0) file.delete();
+            last = segment;
+        }
+        journal = new Journal(dir, last + 1);
+        compactor.scheduleWithFixedDelay(this::compactIfLarge, CHECK_SECONDS, CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    Journal journal() { return journal; }
+
+    /** Rolls everything journaled so far into a new snapshot and drops the files it replaces. */
+    void compact() throws IOException {
+        Snapshot snapshot;
+        synchronized (catalog) {
+            synchronized (users) {
+                synchronized (orders) {
+                    snapshot = Snapshot.capture(journal.rotate(), catalog, users, orders);
+                }
+            }
+        }
+        snapshot.write(dir);
+        for (long segment : Journal.segments(dir)) {
+            if (segment <= snapshot.segment) Journal.segmentFile(dir, segment).delete();
+        }
+        for (long older : Journal.numbered(dir, "snapshot-", ".bin")) {
+            if (older < snapshot.segment) Snapshot.file(dir, older).delete();
+        }
+    }
+
+    private void compactIfLarge() {
+        if (journal.bytesSinceRotate() < COMPACT_BYTES) return;
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            // The journal still has everything; try again on the next check
+            System.err.println("Journal compaction failed: " + e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        journal.close();
+    }
+
+    /** Applies journal records to the store being recovered; no listeners are registered yet. */
+    private final class Replay implements Journal.Handler {
+        @Override
+        public void book(int id, String title, String author, double price, int onHand) {
+            Book book = catalog.get(id);
+            if (book == null) {
+                catalog.add(Book.of(id, title, author, price, onHand));
+                return;
+            }
+            book.update(title, author, price);
+            book.setStock(onHand);
+        }
+
+        @Override
+        public void deleteBook(int id) {
+            catalog.remove(id);
+        }
+
+        @Override
+        public void stock(int id, int onHand) {
+            Book book = catalog.get(id);
+            if (book != null) book.setStock(onHand);
+        }
+
+        @Override
+        public void user(String username, String passwordHash, boolean admin) {
+            // A later record for the same user carries an upgraded password hash
+            users.put(new User(username, passwordHash, admin));
+        }
+
+        @Override
+        public void order(String user, long placedAt, int[] lines) {
+            orders.add(new Order(user, placedAt, lines));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package bookstore;
+
+import java.text.DecimalFormat;
+
+/**
+ * Remembers formatted prices so table cells don't run DecimalFormat on every
+ * repaint. Direct-mapped: a fixed number of slots, so memory stays constant
+ * however many distinct prices the catalog holds. Not thread-safe (EDT only).
+ */
+class PriceFormatCache {
+
+    private static final int SLOTS = 1024;
+
+    private final DecimalFormat format;
+    private final long[] keys = new long[SLOTS];
+    private final String[] values = new String[SLOTS];
+
+    PriceFormatCache(DecimalFormat format) {
+        this.format = format;
+    }
+
+    String format(double price) {
+        long bits = Double.doubleToLongBits(price);
+        int slot = (int) (bits ^ (bits >>> 32)) * 0x9E3779B9 >>> 22;
+        String cached = values[slot];
+        if (cached != null && keys[slot] == bits) return cached;
+
+        String formatted = format.format(price);
+        keys[slot] = bits;
+        values[slot] = formatted;
+        return formatted;
+    }
+}
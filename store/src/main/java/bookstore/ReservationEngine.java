@@ -0,0 +1,119 @@
+package bookstore;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Holds stock for carts. Reserving moves units from a book's available count
+ * to its reserved count with a CAS, so concurrent shoppers can never take the
+ * same unit. A hold is then released (removed from the cart, logout),
+ * committed (checkout), or expires after the configured timeout, which gives
+ * the units back. Expiry is scheduled on a TimerWheel.
+ */
+class ReservationEngine {
+
+    private static final int HELD = 0, RELEASED = 1, COMMITTED = 2, EXPIRED = 3;
+
+    static final class Hold {
+        final Book book;
+        final int quantity;
+        final Object owner; // e.g. the Cart holding it; may be null
+        private final AtomicInteger state = new AtomicInteger(HELD);
+        private volatile TimerWheel.Timeout expiry;
+
+        private Hold(Book book, int quantity, Object owner) {
+            this.book = book;
+            this.quantity = quantity;
+            this.owner = owner;
+        }
+
+        boolean isActive() { return state.get() == HELD; }
+
+        boolean isExpired() { return state.get() == EXPIRED; }
+    }
+
+    private final long holdMillis;
+    private final TimerWheel timer;
+    private volatile Consumer<Hold> expiryListener = h -> { };
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    ReservationEngine(long holdMillis) {
+        this.holdMillis = holdMillis;
+        // ~1s resolution is plenty for cart holds; short timeouts get a finer tick
+        long tick = Math.max(1, Math.min(1000, holdMillis / 64));
+        this.timer = new TimerWheel("hold-expiry", tick, 512);
+    }
+
+    /** Called on the timer thread for every hold that times out, after its units are returned. */
+    void setExpiryListener(Consumer<Hold> listener) {
+        this.expiryListener = listener;
+    }
+
+    /** Reserves qty units of the book, or returns null if not enough are available. */
+    Hold reserve(Book book, int qty) {
+        return reserve(book, qty, null);
+    }
+
+    Hold reserve(Book book, int qty, Object owner) {
+        if (qty <= 0) throw new IllegalArgumentException("Quantity must be positive: " + qty);
+        if (!book.tryReserve(qty)) return null;
+        Hold hold = new Hold(book, qty, owner);
+        hold.expiry = timer.schedule(() -> expire(hold), holdMillis, TimeUnit.MILLISECONDS);
+        reserved.increment();
+        return hold;
+    }
+
+    /** Gives the held units back; false if the hold was already released, committed or expired. */
+    boolean release(Hold hold) {
+        if (!hold.state.compareAndSet(HELD, RELEASED)) return false;
+        cancelExpiry(hold);
+        hold.book.release(hold.quantity);
+        released.increment();
+        return true;
+    }
+
+    /** Turns the hold into a sale; false if it is no longer held (e.g. it expired). */
+    boolean commit(Hold hold) {
+        if (!hold.state.compareAndSet(HELD, COMMITTED)) return false;
+        cancelExpiry(hold);
+        hold.book.commitReserved(hold.quantity);
+        committed.increment();
+        return true;
+    }
+
+    /** Undoes a commit, e.g. of an order that could not be placed whole: the sold units are available again. */
+    boolean refund(Hold hold) {
+        if (!hold.state.compareAndSet(COMMITTED, RELEASED)) return false;
+        hold.book.returnSold(hold.quantity);
+        committed.decrement();
+        released.increment();
+        return true;
+    }
+
+    long reservedCount() { return reserved.sum(); }
+    long releasedCount() { return released.sum(); }
+    long committedCount() { return committed.sum(); }
+    long expiredCount() { return expired.sum(); }
+
+    void shutdown() {
+        timer.stop();
+    }
+
+    private void expire(Hold hold) {
+        if (!hold.state.compareAndSet(HELD, EXPIRED)) return;
+        hold.book.release(hold.quantity);
+        expired.increment();
+        expiryListener.accept(hold);
+    }
+
+    private static void cancelExpiry(Hold hold) {
+        TimerWheel.Timeout t = hold.expiry;
+        if (t != null) t.cancel();
+    }
+}
@@ -0,0 +1,327 @@
+package bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sales totals kept up to date as orders are placed, so reports never scan
+ * the order history: revenue and units per book, spend and order count per
+ * customer, and revenue and order count per local day and per local hour.
+ * Each order is folded in once, in time proportional to its lines, by
+ * OrderStore.add, which every placed, replayed and loaded order goes
+ * through. Amounts are in paise.
+ *
+ * Thread-safe. record() runs under the OrderStore lock. A report holds
+ * this object's lock only to copy the per-book and per-customer totals
+ * (a few array copies) and read the days and hours asked for; the pass that ranks
+ * books and customers runs after the lock is released, so a report never
+ * holds up checkout for longer than those copies take.
+ */
+class SalesAnalytics {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    // Zone offsets only change on a quarter hour, so one lookup serves a whole quarter
+    private static final long QUARTER_MILLIS = HOUR_MILLIS / 4;
+
+    /** One line of a report. */
+    static final class Row {
+        /** Book id, or local epoch day or hour; -1 for customers. */
+        final long key;
+        /** Customer name, or the day or hour as text; null for books. */
+        final String label;
+        /** Units for books, orders otherwise. */
+        final long count;
+        final long paise;
+
+        Row(long key, String label, long count, long paise) {
+            this.key = key;
+            this.label = label;
+            this.count = count;
+            this.paise = paise;
+        }
+    }
+
+    /** Totals, the best-selling books and biggest customers, and the latest days and hours, newest first. */
+    static final class Report {
+        final long orders;
+        final long units;
+        final long paise;
+        final int books;
+        final int customers;
+        final List<Row> topBooks;
+        final List<Row> topCustomers;
+        final List<Row> days;
+        final List<Row> hours;
+
+        Report(long orders, long units, long paise, int books, int customers,
+               List<Row> topBooks, List<Row> topCustomers, List<Row> days, List<Row> hours) {
+            this.orders = orders;
+            this.units = units;
+            this.paise = paise;
+            this.books = books;
+            this.customers = customers;
+            this.topBooks = topBooks;
+            this.topCustomers = topCustomers;
+            this.days = days;
+            this.hours = hours;
+        }
+    }
+
+    private static final Comparator<Row> BY_KEY = (a, b) -> Long.compare(a.key, b.key);
+
+    private final ZoneRules zone;
+
+    private long orders;
+    private long units;
+    private long paise;
+
+    private final IntLongMap bookUnits = new IntLongMap(1024);
+    private final IntLongMap bookPaise = new IntLongMap(1024);
+
+    // Customers are numbered in order of their first purchase
+    private final Map<String, Integer> customerIndex = new HashMap<>();
+    private String[] customers = new String[64];
+    private long[] customerPaise = new long[64];
+    private int[] customerOrders = new int[64];
+
+    // Keyed by local epoch day and local epoch hour
+    private final IntLongMap dayOrders = new IntLongMap(64);
+    private final IntLongMap dayPaise = new IntLongMap(64);
+    private final IntLongMap hourOrders = new IntLongMap(1024);
+    private final IntLongMap hourPaise = new IntLongMap(1024);
+
+    private long offsetQuarter = Long.MIN_VALUE;
+    private long offsetMillis;
+
+    SalesAnalytics() {
+        this(ZoneId.systemDefault());
+    }
+
+    SalesAnalytics(ZoneId zone) {
+        this.zone = zone.getRules();
+    }
+
+    synchronized void record(Order order) {
+        long total = 0;
+        for (int i = 0; i < order.lineCount(); i++) {
+            int id = order.bookId(i);
+            int quantity = order.quantity(i);
+            long amount = (long) quantity * order.paise(i);
+            bookUnits.addTo(id, quantity);
+            bookPaise.addTo(id, amount);
+            units += quantity;
+            total += amount;
+        }
+        orders++;
+        paise += total;
+
+        int c = customerOf(order.user);
+        customerPaise[c] += total;
+        customerOrders[c]++;
+
+        long local = order.placedAt + offsetAt(order.placedAt);
+        int day = (int) Math.floorDiv(local, DAY_MILLIS);
+        int hour = (int) Math.floorDiv(local, HOUR_MILLIS);
+        dayOrders.addTo(day, 1);
+        dayPaise.addTo(day, total);
+        hourOrders.addTo(hour, 1);
+        hourPaise.addTo(hour, total);
+    }
+
+    synchronized long orders() { return orders; }
+
+    synchronized long paise() { return paise; }
+
+    /** Units sold so far per book id, as a copy. */
+    synchronized IntLongMap unitsByBook() { return bookUnits.copy(); }
+
+    /** The top books and customers by revenue, with the last days and hours up to the one holding now. */
+    Report report(int top, int days, int hours, long now) {
+        List<Row> dayRows = new ArrayList<>(days);
+        List<Row> hourRows = new ArrayList<>(hours);
+        long orders, units, paise;
+        IntLongMap bookUnits, bookPaise;
+        String[] customers;
+        long[] customerPaise;
+        int[] customerOrders;
+        synchronized (this) {
+            long local = now + offsetAt(now);
+            int today = (int) Math.floorDiv(local, DAY_MILLIS);
+            int thisHour = (int) Math.floorDiv(local, HOUR_MILLIS);
+            for (int day = today; day > today - days; day--) {
+                dayRows.add(new Row(day, LocalDate.ofEpochDay(day).toString(), dayOrders.get(day), dayPaise.get(day)));
+            }
+            for (int hour = thisHour; hour > thisHour - hours; hour--) {
+                hourRows.add(new Row(hour, hourText(hour), hourOrders.get(hour), hourPaise.get(hour)));
+            }
+            orders = this.orders;
+            units = this.units;
+            paise = this.paise;
+            bookUnits = this.bookUnits.copy();
+            bookPaise = this.bookPaise.copy();
+            int count = customerIndex.size();
+            customers = Arrays.copyOf(this.customers, count);
+            customerPaise = Arrays.copyOf(this.customerPaise, count);
+            customerOrders = Arrays.copyOf(this.customerOrders, count);
+        }
+        return new Report(orders, units, paise, bookPaise.size(), customers.length,
+                topBooks(top, bookUnits, bookPaise), topCustomers(top, customers, customerPaise, customerOrders),
+                Collections.unmodifiableList(dayRows), Collections.unmodifiableList(hourRows));
+    }
+
+    /**
+     * Writes every total as CSV, one row per book, customer, day and hour:
+     * {@code kind,key,count,amount}, amounts in rupees. The totals are copied
+     * under the lock and written after it is released.
+     */
+    int export(File file) throws IOException {
+        List<Row> books = new ArrayList<>();
+        List<Row> customerRows = new ArrayList<>();
+        List<Row> dayRows = new ArrayList<>();
+        List<Row> hourRows = new ArrayList<>();
+        synchronized (this) {
+            bookPaise.forEach((id, amount) -> books.add(new Row(id, null, bookUnits.get(id), amount)));
+            for (int c = 0; c < customerIndex.size(); c++) {
+                customerRows.add(new Row(-1, customers[c], customerOrders[c], customerPaise[c]));
+            }
+            dayPaise.forEach((day, amount) -> dayRows.add(new Row(day, null, dayOrders.get(day), amount)));
+            hourPaise.forEach((hour, amount) -> hourRows.add(new Row(hour, null, hourOrders.get(hour), amount)));
+        }
+        books.sort(BY_KEY);
+        dayRows.sort(BY_KEY);
+        hourRows.sort(BY_KEY);
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder sb = new StringBuilder(CatalogCsv.CHUNK_BYTES);
+            sb.append("kind,key,count,amount\n");
+            for (Row row : books) {
+                appendRow(sb.append("book,").append(row.key), row);
+                if (sb.length() >= CatalogCsv.CHUNK_BYTES / 2) flush(out, sb);
+            }
+            for (Row row : customerRows) {
+                sb.append("customer,");
+                appendField(sb, row.label);
+                appendRow(sb, row);
+                if (sb.length() >= CatalogCsv.CHUNK_BYTES / 2) flush(out, sb);
+            }
+            for (Row row : dayRows) appendRow(sb.append("day,").append(LocalDate.ofEpochDay(row.key)), row);
+            for (Row row : hourRows) {
+                appendRow(sb.append("hour,").append(hourText(row.key)), row);
+                if (sb.length() >= CatalogCsv.CHUNK_BYTES / 2) flush(out, sb);
+            }
+            flush(out, sb);
+        }
+        return books.size() + customerRows.size() + dayRows.size() + hourRows.size();
+    }
+
+    // Rankings, on copies of the totals: one pass keeping the best n seen so far
+
+    private static List<Row> topBooks(int n, IntLongMap bookUnits, IntLongMap bookPaise) {
+        long[] best = new long[n];
+        int[] ids = new int[n];
+        int[] count = new int[1];
+        bookPaise.forEach((id, amount) -> count[0] = offer(best, ids, count[0], id, amount));
+        List<Row> rows = new ArrayList<>(count[0]);
+        for (int i = 0; i < count[0]; i++) rows.add(new Row(ids[i], null, bookUnits.get(ids[i]), best[i]));
+        return Collections.unmodifiableList(rows);
+    }
+
+    private static List<Row> topCustomers(int n, String[] customers, long[] customerPaise, int[] customerOrders) {
+        long[] best = new long[n];
+        int[] indexes = new int[n];
+        int count = 0;
+        for (int c = 0; c < customers.length; c++) count = offer(best, indexes, count, c, customerPaise[c]);
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int c = indexes[i];
+            rows.add(new Row(-1, customers[c], customerOrders[c], best[i]));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    // Inserts (key, amount) into the descending top list if it makes the cut; returns the new length
+    private static int offer(long[] best, int[] keys, int count, int key, long amount) {
+        if (best.length == 0 || count == best.length && amount <= best[count - 1]) return count;
+        int at = count < best.length ? count++ : count - 1;
+        while (at > 0 && best[at - 1] < amount) {
+            best[at] = best[at - 1];
+            keys[at] = keys[at - 1];
+            at--;
+        }
+        best[at] = amount;
+        keys[at] = key;
+        return count;
+    }
+
+    private int customerOf(String user) {
+        Integer known = customerIndex.get(user);
+        if (known != null) return known;
+        int c = customerIndex.size();
+        if (c == customers.length) {
+            customers = Arrays.copyOf(customers, c * 2);
+            customerPaise = Arrays.copyOf(customerPaise, c * 2);
+            customerOrders = Arrays.copyOf(customerOrders, c * 2);
+        }
+        customers[c] = user;
+        customerIndex.put(user, c);
+        return c;
+    }
+
+    private long offsetAt(long millis) {
+        long quarter = Math.floorDiv(millis, QUARTER_MILLIS);
+        if (quarter != offsetQuarter) {
+            offsetMillis = zone.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+            offsetQuarter = quarter;
+        }
+        return offsetMillis;
+    }
+
+    /** A local epoch hour as text, e.g. 2024-05-01T14. */
+    private static String hourText(long hour) {
+        int h = (int) Math.floorMod(hour, 24L);
+        return LocalDate.ofEpochDay(Math.floorDiv(hour, 24L)) + (h < 10 ? "T0" : "T") + h;
+    }
+
+    // ",count,amount" and the line end, the amount in rupees
+    private static void appendRow(StringBuilder sb, Row row) {
+        long paise = row.paise;
+        sb.append(',').append(row.count).append(',');
+        if (paise < 0) {
+            sb.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % 100;
+        sb.append(paise / 100).append(fraction < 10 ? ".0" : ".").append(fraction).append('\n');
+    }
+
+    private static void appendField(StringBuilder sb, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void flush(FileChannel out, StringBuilder sb) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(sb));
+        while (bytes.hasRemaining()) out.write(bytes);
+        sb.setLength(0);
+    }
+}
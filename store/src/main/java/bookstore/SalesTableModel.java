@@ -0,0 +1,74 @@
+package bookstore;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/** One table of the Sales panel: top books, top customers, or day or hour buckets; show() swaps in a new report's rows. */
+class SalesTableModel extends AbstractTableModel {
+
+    enum Kind { BOOKS, CUSTOMERS, DAYS, HOURS }
+
+    private final Kind kind;
+    private final String[] columns;
+    private final PriceFormatCache prices;
+    // Titles are looked up when a row is painted, so renamed books show their current title
+    private final IntFunction<String> titles;
+    private List<SalesAnalytics.Row> rows = Collections.emptyList();
+
+    SalesTableModel(Kind kind, PriceFormatCache prices, IntFunction<String> titles) {
+        this.kind = kind;
+        this.prices = prices;
+        this.titles = titles;
+        switch (kind) {
+            case BOOKS: columns = new String[] {"ID", "Title", "Units", "Revenue"}; break;
+            case CUSTOMERS: columns = new String[] {"Customer", "Orders", "Spend"}; break;
+            case DAYS: columns = new String[] {"Day", "Orders", "Revenue"}; break;
+            default: columns = new String[] {"Hour", "Orders", "Revenue"}; break;
+        }
+    }
+
+    void show(SalesAnalytics.Report report) {
+        switch (kind) {
+            case BOOKS: rows = report.topBooks; break;
+            case CUSTOMERS: rows = report.topCustomers; break;
+            case DAYS: rows = report.days; break;
+            default: rows = report.hours; break;
+        }
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return columns.length; }
+
+    @Override
+    public String getColumnName(int column) { return columns[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (kind == Kind.BOOKS) return column == 0 ? Integer.class : column == 2 ? Long.class : String.class;
+        return column == 1 ? Long.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        SalesAnalytics.Row r = rows.get(row);
+        if (kind == Kind.BOOKS) {
+            switch (column) {
+                case 0: return (int) r.key;
+                case 1: return titles.apply((int) r.key);
+                case 2: return r.count;
+                default: return prices.format(r.paise / 100.0);
+            }
+        }
+        switch (column) {
+            case 0: return r.label;
+            case 1: return r.count;
+            default: return prices.format(r.paise / 100.0);
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text search over book titles and authors.
+ *
+ * Every word is indexed under its edge n-grams (its first MIN_GRAM to
+ * MAX_GRAM characters), so a partial word like "algo" finds "Algorithms" with
+ * one map lookup. Partial words match from the start of a word only: "rithm"
+ * does not find "Algorithms". Infix grams would multiply the postings per
+ * word several times over for matches shoppers rarely type. A posting stores the book id plus flags saying whether the
+ * gram was a whole word or only a prefix, in the title or in the author.
+ * Posting lists are kept sorted by id, in blocks (see Postings).
+ *
+ * A query walks the shortest posting list among its words, gallops through
+ * the other lists to intersect them, scores each hit from the posting flags
+ * and keeps the best matches in a bounded heap. It stops early once the heap
+ * is full of hits with the best possible score. Books themselves are only
+ * read for query words longer than MAX_GRAM.
+ *
+ * The index follows the catalog through CatalogListener, so admin adds,
+ * updates and deletes are reflected immediately. It has a read-write lock
+ * of its own: each catalog event takes it for writing, queries for
+ * reading, so queries never wait for the catalog lock, only for the one
+ * event being indexed. A query reads books from one Catalog.Version and
+ * drops hits that aren't in it, e.g. a book deleted while it ran.
+ *
+ * A large catalog (e.g. one just restored from disk) is indexed on a
+ * background thread so startup doesn't wait for it. Until that finishes,
+ * catalog events are queued and queries fall back to scanning the books.
+ */
+class SearchIndex implements CatalogListener {
+
+    static final int MIN_GRAM = 2;
+    static final int MAX_GRAM = 20;
+
+    // Catalogs at least this big are indexed in the background
+    private static final int BACKGROUND_BUILD_MIN = 20_000;
+
+    // Posting flags
+    private static final int TITLE_PREFIX = 1;
+    private static final int TITLE_WORD = 2;
+    private static final int AUTHOR_PREFIX = 4;
+    private static final int AUTHOR_WORD = 8;
+
+    // Score of a query word by the flags it matched with
+    private static final int[] SCORE = new int[16];
+    static {
+        for (int f = 0; f < 16; f++) {
+            int title = (f & TITLE_WORD) != 0 ? 6 : (f & TITLE_PREFIX) != 0 ? 4 : 0;
+            int author = (f & AUTHOR_WORD) != 0 ? 3 : (f & AUTHOR_PREFIX) != 0 ? 2 : 0;
+            SCORE[f] = title + author;
+        }
+    }
+
+    private final Catalog catalog;
+    private final Map<String, Postings> grams = new HashMap<>();
+    private final Map<String, Integer> docGrams = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Title and author of the book being changed, captured in bookChanging
+    private Book changing;
+    private String oldTitle, oldAuthor;
+
+    // Changes made during a background build, applied once it is done; null otherwise
+    private List<Pending> backlog;
+    private final CountDownLatch built = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    SearchIndex(Catalog catalog) {
+        this.catalog = catalog;
+        int n;
+        int[] ids;
+        String[] titles, authors;
+        synchronized (catalog) {
+            catalog.addListener(this);
+            n = catalog.size();
+            if (n < BACKGROUND_BUILD_MIN) {
+                for (Book b : catalog) {
+                    index(b.getId(), b.getTitle(), b.getAuthor(), true);
+                }
+                built.countDown();
+                return;
+            }
+            ids = new int[n];
+            titles = new String[n];
+            authors = new String[n];
+            int i = 0;
+            for (Book b : catalog) {
+                ids[i] = b.getId();
+                titles[i] = b.getTitle();
+                authors[i++] = b.getAuthor();
+            }
+            backlog = new ArrayList<>();
+        }
+        Thread builder = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                if (closed) return;
+                index(ids[i], titles[i], authors[i], true);
+            }
+            lock.writeLock().lock();
+            try {
+                for (Pending p : backlog) index(p.id, p.title, p.author, p.add);
+                backlog = null;
+                built.countDown();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }, "search-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    boolean isReady() { return built.getCount() == 0; }
+
+    void awaitReady() throws InterruptedException {
+        built.await();
+    }
+
+    /** Stops a background build that is still running; the index is not used afterwards. */
+    void close() {
+        closed = true;
+    }
+
+    /** Ids of the best {@code limit} books matching every word of the query, best first. */
+    int[] search(String query, int limit) {
+        return search(query, limit, catalog.snapshot());
+    }
+
+    /** As search(query, limit), over the books of this catalog version. */
+    int[] search(String query, int limit, Catalog.Version books) {
+        List<String> words = queryWords(query);
+        if (words.isEmpty() || limit <= 0) return new int[0];
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = backlog != null ? scan(words, limit, books) : lookup(words, limit, books);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // The index may be an event ahead of or behind the version
+        int kept = 0;
+        for (int id : ids) {
+            if (books.get(id) != null) ids[kept++] = id;
+        }
+        return kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+    }
+
+    private int[] lookup(List<String> words, int limit, Catalog.Version books) {
+
+        int n = words.size();
+        Postings[] lists = new Postings[n];
+        for (int w = 0; w < n; w++) {
+            lists[w] = grams.get(gramOf(words.get(w)));
+            if (lists[w] == null) return new int[0];
+        }
+        // Drive the intersection from the rarest word
+        Integer[] order = new Integer[n];
+        for (int w = 0; w < n; w++) order[w] = w;
+        Arrays.sort(order, (a, b) -> Integer.compare(lists[a].size, lists[b].size));
+        Postings driver = lists[order[0]];
+        int[] cursor = new int[n];
+        int bestScore = 0;
+        for (int w = 0; w < n; w++) {
+            int f = lists[w].allFlags;
+            if (words.get(w).length() > MAX_GRAM) {
+                // A prefix hit on the gram may still turn out to be a whole-word hit
+                if ((f & TITLE_PREFIX) != 0) f |= TITLE_WORD;
+                if ((f & AUTHOR_PREFIX) != 0) f |= AUTHOR_WORD;
+            }
+            bestScore += SCORE[f];
+        }
+        long perfect = rankKey(bestScore, Integer.MAX_VALUE);
+
+        long[] heap = new long[Math.min(limit, driver.size)];
+        int heapSize = 0;
+        walk:
+        for (int b = 0; b < driver.blocks; b++) {
+            int[] driverIds = driver.ids[b];
+            byte[] driverFlags = driver.flags[b];
+            candidates:
+            for (int i = 0; i < driver.sizes[b]; i++) {
+                int id = driverIds[i];
+                int score = 0;
+                Book book = null;
+                for (int k = 0; k < n; k++) {
+                    int w = order[k];
+                    int flags;
+                    if (k == 0) {
+                        flags = driverFlags[i];
+                    } else {
+                        Postings p = lists[w];
+                        int pos = p.seek(id, cursor[w]);
+                        cursor[w] = pos;
+                        if (pos >= p.end() || p.idAt(pos) != id) continue candidates;
+                        flags = p.flagsAt(pos);
+                    }
+                    String word = words.get(w);
+                    if (word.length() > MAX_GRAM) {
+                        // The gram only covers the first MAX_GRAM characters; check the rest
+                        if (book == null) book = books.get(id);
+                        flags = book == null ? 0 : matchFlags(book, word);
+                        if (flags == 0) continue candidates;
+                    }
+                    score += SCORE[flags];
+                }
+                heapSize = offer(heap, heapSize, rankKey(score, id));
+                // Later ids can't outrank a full heap of perfect hits
+                if (heapSize == heap.length && heap[0] >= perfect) break walk;
+            }
+        }
+        return ranked(heap, heapSize);
+    }
+
+    // Same matching and ranking as the index, straight from the books; used while it is being built
+    private static int[] scan(List<String> words, int limit, Catalog.Version books) {
+        long[] heap = new long[Math.min(limit, books.size())];
+        int heapSize = 0;
+        candidates:
+        for (Book book : books) {
+            int score = 0;
+            for (String word : words) {
+                int flags = matchFlags(book, word);
+                if (flags == 0) continue candidates;
+                score += SCORE[flags];
+            }
+            heapSize = offer(heap, heapSize, rankKey(score, book.getId()));
+        }
+        return ranked(heap, heapSize);
+    }
+
+    int gramCount() {
+        lock.readLock().lock();
+        try {
+            return grams.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Catalog events
+
+    @Override
+    public void bookAdded(Book book, int row) {
+        update(book.getId(), book.getTitle(), book.getAuthor(), true);
+    }
+
+    @Override
+    public void bookRemoved(Book book, int row) {
+        update(book.getId(), book.getTitle(), book.getAuthor(), false);
+    }
+
+    @Override
+    public void bookChanging(Book book, int row) {
+        changing = book;
+        oldTitle = book.getTitle();
+        oldAuthor = book.getAuthor();
+    }
+
+    @Override
+    public void bookChanged(Book book, int row) {
+        if (changing != book) return;
+        changing = null;
+        // Stock and price changes leave the text alone
+        if (oldTitle.equals(book.getTitle()) && oldAuthor.equals(book.getAuthor())) return;
+        update(book.getId(), oldTitle, oldAuthor, false);
+        update(book.getId(), book.getTitle(), book.getAuthor(), true);
+    }
+
+    private void update(int id, String title, String author, boolean add) {
+        lock.writeLock().lock();
+        try {
+            if (backlog != null) backlog.add(new Pending(id, title, author, add));
+            else index(id, title, author, add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexing
+
+    private void index(int id, String title, String author, boolean add) {
+        docGrams.clear();
+        collectGrams(title, TITLE_PREFIX, TITLE_WORD, docGrams);
+        collectGrams(author, AUTHOR_PREFIX, AUTHOR_WORD, docGrams);
+        for (Map.Entry<String, Integer> e : docGrams.entrySet()) {
+            if (add) {
+                grams.computeIfAbsent(e.getKey(), k -> new Postings()).add(id, e.getValue());
+            } else {
+                Postings p = grams.get(e.getKey());
+                if (p != null && p.remove(id) && p.size == 0) grams.remove(e.getKey());
+            }
+        }
+    }
+
+    private static void collectGrams(String text, int prefixFlag, int wordFlag, Map<String, Integer> out) {
+        for (String word : words(text)) {
+            int max = Math.min(word.length(), MAX_GRAM);
+            for (int len = MIN_GRAM; len <= max; len++) {
+                int flags = prefixFlag | (len == word.length() ? wordFlag : 0);
+                out.merge(word.substring(0, len), flags, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /** Lower-cased words of the text; anything but letters and digits separates words. */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Query words shorter than MIN_GRAM have no postings and are ignored
+    private static List<String> queryWords(String query) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String w : words(query)) {
+            if (w.length() >= MIN_GRAM) unique.add(w);
+        }
+        return new ArrayList<>(unique);
+    }
+
+    private static String gramOf(String word) {
+        return word.length() > MAX_GRAM ? word.substring(0, MAX_GRAM) : word;
+    }
+
+    // Match flags of a query word against the book's current text, without allocating
+    private static int matchFlags(Book book, String word) {
+        return matchFlags(book.getTitle(), word, TITLE_PREFIX, TITLE_WORD)
+             | matchFlags(book.getAuthor(), word, AUTHOR_PREFIX, AUTHOR_WORD);
+    }
+
+    private static int matchFlags(String text, String word, int prefixFlag, int wordFlag) {
+        int flags = 0;
+        int n = word.length();
+        for (int i = 0; i + n <= text.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+            if (!wordStart || !text.regionMatches(true, i, word, 0, n)) continue;
+            flags |= prefixFlag;
+            if (i + n == text.length() || !Character.isLetterOrDigit(text.charAt(i + n))) {
+                return flags | wordFlag;
+            }
+        }
+        return flags;
+    }
+
+    // Ranking: higher score first, then lower id
+
+    private static long rankKey(int score, int id) {
+        return ((long) score << 32) | (0xFFFFFFFFL - (id - (long) Integer.MIN_VALUE));
+    }
+
+    private static int idOf(long key) {
+        return (int) (0xFFFFFFFFL - (key & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+    }
+
+    // Min-heap of rank keys: the root is the weakest match kept so far
+
+    private static int offer(long[] heap, int heapSize, long key) {
+        if (heapSize < heap.length) {
+            heap[heapSize] = key;
+            siftUp(heap, heapSize++);
+        } else if (heapSize > 0 && key > heap[0]) {
+            heap[0] = key;
+            siftDown(heap, heapSize);
+        }
+        return heapSize;
+    }
+
+    /** Ids of the kept matches, best first. */
+    private static int[] ranked(long[] heap, int heapSize) {
+        long[] ranked = Arrays.copyOf(heap, heapSize);
+        Arrays.sort(ranked);
+        int[] ids = new int[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            ids[i] = idOf(ranked[heapSize - 1 - i]);
+        }
+        return ids;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= key) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    private static final class Pending {
+        final int id;
+        final String title, author;
+        final boolean add;
+
+        Pending(int id, String title, String author, boolean add) {
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.add = add;
+        }
+    }
+
+    /**
+     * Posting list sorted by book id, with the match flags of each book. Kept
+     * in blocks of up to BLOCK entries, so an id that arrives out of order
+     * (an unsorted import) or a delete shifts within one block, not the
+     * whole list. A position is (block << BLOCK_BITS) | offset.
+     */
+    private static final class Postings {
+        private static final int BLOCK_BITS = 12;
+        private static final int BLOCK = 1 << BLOCK_BITS;
+
+        private int[][] ids = {new int[2]};
+        private byte[][] flags = {new byte[2]};
+        private int[] sizes = new int[1];
+        private int[] lastIds = new int[1]; // last id of each block, for finding one
+        private int blocks = 1;
+        int size;
+        int allFlags; // union of all flags ever added, an upper bound for scoring
+
+        /** Position past the last entry. */
+        int end() { return blocks << BLOCK_BITS; }
+
+        int idAt(int pos) { return ids[pos >>> BLOCK_BITS][pos & (BLOCK - 1)]; }
+
+        int flagsAt(int pos) { return flags[pos >>> BLOCK_BITS][pos & (BLOCK - 1)]; }
+
+        void add(int id, int f) {
+            // New books usually get the highest id, which makes this an append to the last block
+            int b = blocks - 1;
+            int n = sizes[b];
+            if (n > 0 && id < lastIds[b]) {
+                b = blockFor(id);
+                n = sizes[b];
+            }
+            if (n == BLOCK) {
+                split(b);
+                if (id > lastIds[b]) b++;
+                n = sizes[b];
+            }
+            int[] blockIds = ids[b];
+            byte[] blockFlags = flags[b];
+            if (n == blockIds.length) {
+                blockIds = ids[b] = Arrays.copyOf(blockIds, Math.min(BLOCK, n * 2));
+                blockFlags = flags[b] = Arrays.copyOf(blockFlags, blockIds.length);
+            }
+            if (n == 0 || id > blockIds[n - 1]) {
+                blockIds[n] = id;
+                blockFlags[n] = (byte) f;
+                lastIds[b] = id;
+            } else {
+                int pos = insertionPoint(b, id);
+                System.arraycopy(blockIds, pos, blockIds, pos + 1, n - pos);
+                System.arraycopy(blockFlags, pos, blockFlags, pos + 1, n - pos);
+                blockIds[pos] = id;
+                blockFlags[pos] = (byte) f;
+            }
+            sizes[b] = n + 1;
+            allFlags |= f;
+            size++;
+        }
+
+        boolean remove(int id) {
+            if (size == 0) return false;
+            int b = blockFor(id);
+            int pos = insertionPoint(b, id);
+            int n = sizes[b];
+            if (pos >= n || ids[b][pos] != id) return false;
+            System.arraycopy(ids[b], pos + 1, ids[b], pos, n - pos - 1);
+            System.arraycopy(flags[b], pos + 1, flags[b], pos, n - pos - 1);
+            sizes[b] = --n;
+            size--;
+            if (n > 0) lastIds[b] = ids[b][n - 1];
+            // Drop an emptied block, or fold a small one into the next, so deletes don't leave a trail of tiny blocks
+            if (n == 0 && blocks > 1) {
+                removeBlock(b);
+            } else if (n < BLOCK / 4 && b + 1 < blocks && n + sizes[b + 1] <= BLOCK) {
+                int m = sizes[b + 1];
+                if (ids[b].length < n + m) {
+                    ids[b] = Arrays.copyOf(ids[b], BLOCK);
+                    flags[b] = Arrays.copyOf(flags[b], BLOCK);
+                }
+                System.arraycopy(ids[b + 1], 0, ids[b], n, m);
+                System.arraycopy(flags[b + 1], 0, flags[b], n, m);
+                sizes[b] = n + m;
+                lastIds[b] = lastIds[b + 1];
+                removeBlock(b + 1);
+            }
+            return true;
+        }
+
+        /** First position at or after {@code from} whose id is >= {@code id}, or end() (galloping search). */
+        int seek(int id, int from) {
+            if (from >= end() || idAt(from) >= id) return from;
+            int b = from >>> BLOCK_BITS;
+            if (lastIds[b] < id) {
+                // Gallop over the following blocks' last ids
+                int step = 1;
+                int lo = b;
+                int hi = b + 1;
+                while (hi < blocks && lastIds[hi] < id) {
+                    lo = hi;
+                    step <<= 1;
+                    hi = lo + step;
+                }
+                int found = Arrays.binarySearch(lastIds, lo + 1, Math.min(hi, blocks), id);
+                b = found >= 0 ? found : -found - 1;
+                if (b >= blocks) return end();
+                from = b << BLOCK_BITS;
+            }
+            int[] block = ids[b];
+            int n = sizes[b];
+            // Gallop within the block too: the next match is usually close by
+            int lo = from & (BLOCK - 1);
+            int hi = lo + 1;
+            int step = 1;
+            while (hi < n && block[hi] < id) {
+                lo = hi;
+                step <<= 1;
+                hi = lo + step;
+            }
+            int pos = Arrays.binarySearch(block, lo, Math.min(hi + 1, n), id);
+            return (b << BLOCK_BITS) | (pos >= 0 ? pos : -pos - 1);
+        }
+
+        // First block whose last id is not below id, or the last block
+        private int blockFor(int id) {
+            int found = Arrays.binarySearch(lastIds, 0, blocks, id);
+            return Math.min(found >= 0 ? found : -found - 1, blocks - 1);
+        }
+
+        private int insertionPoint(int b, int id) {
+            int pos = Arrays.binarySearch(ids[b], 0, sizes[b], id);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+
+        // Splits a full block in half, the upper half becoming block b + 1
+        private void split(int b) {
+            if (blocks == sizes.length) {
+                int capacity = blocks * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                lastIds = Arrays.copyOf(lastIds, capacity);
+            }
+            int move = blocks - b - 1;
+            System.arraycopy(ids, b + 1, ids, b + 2, move);
+            System.arraycopy(flags, b + 1, flags, b + 2, move);
+            System.arraycopy(sizes, b + 1, sizes, b + 2, move);
+            System.arraycopy(lastIds, b + 1, lastIds, b + 2, move);
+            blocks++;
+            int half = BLOCK / 2;
+            ids[b + 1] = Arrays.copyOfRange(ids[b], half, BLOCK);
+            flags[b + 1] = Arrays.copyOfRange(flags[b], half, BLOCK);
+            sizes[b + 1] = BLOCK - half;
+            lastIds[b + 1] = lastIds[b];
+            sizes[b] = half;
+            lastIds[b] = ids[b][half - 1];
+        }
+
+        private void removeBlock(int b) {
+            int move = blocks - b - 1;
+            System.arraycopy(ids, b + 1, ids, b, move);
+            System.arraycopy(flags, b + 1, flags, b, move);
+            System.arraycopy(sizes, b + 1, sizes, b, move);
+            System.arraycopy(lastIds, b + 1, lastIds, b, move);
+            blocks--;
+            ids[blocks] = null;
+            flags[blocks] = null;
+        }
+    }
+}
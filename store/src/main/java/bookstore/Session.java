@@ -0,0 +1,22 @@
+package bookstore;
+
+/**
+ * One logged-in shopper: who they are and their own cart, with the stock
+ * holds it carries. Sessions are created and expired by SessionRegistry.
+ */
+class Session {
+    final String id;
+    final User user;
+    final Cart cart = new Cart();
+    private volatile long lastSeen;
+
+    Session(String id, User user, long now) {
+        this.id = id;
+        this.user = user;
+        this.lastSeen = now;
+    }
+
+    long lastSeen() { return lastSeen; }
+
+    void touch(long now) { lastSeen = now; }
+}
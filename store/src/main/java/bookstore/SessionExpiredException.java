@@ -0,0 +1,11 @@
+package bookstore;
+
+/**
+ * The shopper's session timed out or was closed; they need to log in again.
+ */
+class SessionExpiredException extends StoreException {
+
+    SessionExpiredException() {
+        super("Your session has expired, please log in again");
+    }
+}
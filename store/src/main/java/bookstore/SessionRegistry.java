@@ -0,0 +1,118 @@
+package bookstore;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Open shopper sessions, keyed by a random session id. Each session owns its
+ * cart, so any number of shoppers can use the store at once.
+ *
+ * A session that has been idle longer than the idle timeout is closed, by a
+ * background sweep or when it is next looked up, and the close listener
+ * gives its held stock back. At most maxSessions are open: opening one more
+ * closes the least recently used first, so memory stays bounded however
+ * many shoppers come and go without logging out.
+ */
+class SessionRegistry {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Consumer<Session> onClose;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long idleMillis;
+    private volatile int maxSessions;
+
+    /** @param onClose called once for every session that is closed, for any reason */
+    SessionRegistry(long idleMillis, int maxSessions, Consumer<Session> onClose) {
+        this.idleMillis = idleMillis;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.onClose = onClose;
+        long period = Math.max(1000, Math.min(60_000, idleMillis / 4));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void setIdleMillis(long idleMillis) { this.idleMillis = idleMillis; }
+
+    void setMaxSessions(int maxSessions) { this.maxSessions = Math.max(1, maxSessions); }
+
+    int size() { return sessions.size(); }
+
+    // Opens are serialized so the cap holds exactly; lookups never take this lock
+    synchronized Session open(User user) {
+        while (sessions.size() >= maxSessions) {
+            if (sweep() == 0) closeLeastRecentlyUsed();
+        }
+        Session session = new Session(newId(), user, System.currentTimeMillis());
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /** The open session with this id, marked as active now; null if there is none or it timed out. */
+    Session get(String id) {
+        Session session = id == null ? null : sessions.get(id);
+        if (session == null) return null;
+        long now = System.currentTimeMillis();
+        if (now - session.lastSeen() > idleMillis) {
+            close(session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    void close(String id) {
+        Session session = id == null ? null : sessions.get(id);
+        if (session != null) close(session);
+    }
+
+    /** Closes every session idle longer than the timeout and returns how many it closed. */
+    int sweep() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int closed = 0;
+        for (Session session : sessions.values()) {
+            if (session.lastSeen() < cutoff && close(session)) closed++;
+        }
+        return closed;
+    }
+
+    /** Stops the sweeper and closes every session, releasing their stock. */
+    void shutdown() {
+        sweeper.shutdownNow();
+        for (Session session : sessions.values()) close(session);
+    }
+
+    private void closeLeastRecentlyUsed() {
+        Session oldest = null;
+        for (Session session : sessions.values()) {
+            if (oldest == null || session.lastSeen() < oldest.lastSeen()) oldest = session;
+        }
+        if (oldest != null) close(oldest);
+    }
+
+    // Only the caller that actually removes the session runs the listener
+    private boolean close(Session session) {
+        if (!sessions.remove(session.id, session)) return false;
+        try {
+            onClose.accept(session);
+        } catch (RuntimeException e) {
+            System.err.println("Could not close session: " + e);
+        }
+        return true;
+    }
+
+    private static String newId() {
+        byte[] bytes = new byte[18];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,76 @@
+package bookstore;
+
+/**
+ * An immutable array of references that grows as needed, stored as a trie
+ * of small nodes so a changed copy shares every node it didn't change: a
+ * set() copies the few nodes on the path to its index, not the array.
+ *
+ * set() takes an owner token. Nodes created for the current owner are not
+ * yet visible to anyone else and are changed in place, so a run of sets
+ * under one owner copies each node at most once. Once the result has been
+ * published, the writer must switch to a new owner. Reads need no lock.
+ */
+final class SharedArray {
+
+    private static final int BITS = 6;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final SharedArray EMPTY = new SharedArray(null, 0);
+
+    // Each node holds WIDTH children or values, then its owner in the last element
+    private final Object[] root;
+    private final int shift;
+
+    private SharedArray(Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /** The element at index; null if it was never set. */
+    Object get(int index) {
+        Object[] node = root;
+        if (node == null || (index >>> shift) >= WIDTH) return null;
+        for (int s = shift; s > 0; s -= BITS) {
+            node = (Object[]) node[(index >>> s) & MASK];
+            if (node == null) return null;
+        }
+        return node[index & MASK];
+    }
+
+    /** This array with the element at index replaced. */
+    SharedArray set(int index, Object value, Object owner) {
+        Object[] top = root == null ? newNode(owner) : root;
+        int height = root == null ? 0 : shift;
+        while ((index >>> height) >= WIDTH) {
+            Object[] up = newNode(owner);
+            up[0] = top;
+            top = up;
+            height += BITS;
+        }
+        top = editable(top, owner);
+        Object[] node = top;
+        for (int s = height; s > 0; s -= BITS) {
+            int k = (index >>> s) & MASK;
+            Object[] child = (Object[]) node[k];
+            child = child == null ? newNode(owner) : editable(child, owner);
+            node[k] = child;
+            node = child;
+        }
+        node[index & MASK] = value;
+        return top == root && height == shift ? this : new SharedArray(top, height);
+    }
+
+    private static Object[] newNode(Object owner) {
+        Object[] node = new Object[WIDTH + 1];
+        node[WIDTH] = owner;
+        return node;
+    }
+
+    private static Object[] editable(Object[] node, Object owner) {
+        if (node[WIDTH] == owner) return node;
+        Object[] copy = node.clone();
+        copy[WIDTH] = owner;
+        return copy;
+    }
+}
@@ -0,0 +1,182 @@
+package bookstore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary image of the whole store. snapshot-N.bin holds the state as of the
+ * end of journal segment N, so recovery loads it and replays only the
+ * segments after N.
+ *
+ * Layout: header (magic, version, segment, counts), then books, users and
+ * orders as fixed fields plus length-prefixed UTF-8 strings, then a trailer
+ * with the CRC32 of everything before it. Loading maps the file and decodes
+ * it straight from the mapped buffer. A snapshot is written to a temporary
+ * file and renamed into place, so a crash never leaves a half-written one.
+ */
+class Snapshot {
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+    private static final int END_MAGIC = 0x424B454E; // "BKEN"
+    private static final int VERSION = 2;
+
+    final long segment;
+    private final int[] ids;
+    private final String[] titles;
+    private final String[] authors;
+    private final double[] prices;
+    private final int[] onHand;
+    private final List<User> users;
+    private final List<Order> orders;
+
+    private Snapshot(long segment, int books, List<User> users, List<Order> orders) {
+        this.segment = segment;
+        this.ids = new int[books];
+        this.titles = new String[books];
+        this.authors = new String[books];
+        this.prices = new double[books];
+        this.onHand = new int[books];
+        this.users = users;
+        this.orders = orders;
+    }
+
+    /** Copies the store's state. The caller holds the catalog, users and orders locks. */
+    static Snapshot capture(long segment, Catalog catalog, UserDirectory users, OrderStore orders) {
+        Snapshot s = new Snapshot(segment, catalog.size(), users.all(), orders.all());
+        int i = 0;
+        for (Book b : catalog) {
+            s.ids[i] = b.getId();
+            s.titles[i] = b.getTitle();
+            s.authors[i] = b.getAuthor();
+            s.prices[i] = b.getPrice();
+            s.onHand[i++] = b.getOnHand();
+        }
+        return s;
+    }
+
+    static File file(File dir, long segment) {
+        return new File(dir, "snapshot-" + segment + ".bin");
+    }
+
+    /** Number of the newest snapshot in dir, or -1 if there is none. */
+    static long latest(File dir) {
+        long[] found = Journal.numbered(dir, "snapshot-", ".bin");
+        return found.length == 0 ? -1 : found[found.length - 1];
+    }
+
+    void write(File dir) throws IOException {
+        File target = file(dir, segment);
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            out.writeInt(ids.length);
+            out.writeInt(users.size());
+            out.writeInt(orders.size());
+            for (int i = 0; i < ids.length; i++) {
+                out.writeInt(ids[i]);
+                out.writeDouble(prices[i]);
+                out.writeInt(onHand[i]);
+                writeString(out, titles[i]);
+                writeString(out, authors[i]);
+            }
+            for (User u : users) {
+                writeString(out, u.username);
+                writeString(out, u.passwordHash);
+                out.writeBoolean(u.isAdmin);
+            }
+            for (Order o : orders) {
+                writeString(out, o.user);
+                out.writeLong(o.placedAt);
+                int[] lines = o.lines();
+                out.writeInt(lines.length);
+                for (int v : lines) out.writeInt(v);
+            }
+            out.flush();
+            // The trailer is not part of the checksum
+            DataOutputStream trailer = new DataOutputStream(fos);
+            trailer.writeInt((int) crc.getValue());
+            trailer.writeInt(END_MAGIC);
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Loads the snapshot into an empty store and returns the journal segment it covers. */
+    static long load(File file, Catalog catalog, UserDirectory users, OrderStore orders) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        int end = in.limit() - 8;
+        if (end < 28 || in.getInt(end + 4) != END_MAGIC || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a complete snapshot: " + file);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer body = in.duplicate();
+        body.limit(end);
+        crc.update(body);
+        if ((int) crc.getValue() != in.getInt(end)) throw new IOException("Snapshot checksum mismatch: " + file);
+
+        in.position(4);
+        int version = in.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        long segment = in.getLong();
+        int books = in.getInt();
+        int userCount = in.getInt();
+        int orderCount = in.getInt();
+
+        byte[] scratch = new byte[256];
+        catalog.ensureCapacity(catalog.size() + books);
+        for (int i = 0; i < books; i++) {
+            int id = in.getInt();
+            double price = in.getDouble();
+            int stock = in.getInt();
+            String title = readString(in, scratch);
+            String author = readString(in, scratch);
+            catalog.add(Book.of(id, title, author, price, stock));
+        }
+        for (int i = 0; i < userCount; i++) {
+            String username = readString(in, scratch);
+            String passwordHash = readString(in, scratch);
+            users.put(new User(username, passwordHash, in.get() != 0));
+        }
+        for (int i = 0; i < orderCount; i++) {
+            String user = readString(in, scratch);
+            long placedAt = in.getLong();
+            int[] lines = new int[in.getInt()];
+            for (int j = 0; j < lines.length; j++) lines[j] = in.getInt();
+            orders.add(new Order(user, placedAt, lines));
+        }
+        return segment;
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int length = in.getInt();
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
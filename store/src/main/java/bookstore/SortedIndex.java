@@ -0,0 +1,459 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The catalog's books in order of one field: price, available stock or
+ * title (case-insensitive). Follows the catalog through CatalogListener,
+ * so every add, delete, update and reservation is reflected as it happens,
+ * and answers by rank: the n-th book in order, and the rank of the first
+ * book at or above a key. Range queries ("price between 400 and 600", "in
+ * stock only") and top-N ("cheapest 50") are therefore a pair of lookups
+ * plus a walk over just the books returned; nothing is ever re-sorted.
+ *
+ * Books are kept in chunks of up to CHUNK entries, each a sorted array of
+ * (key, book); an insert or delete shifts within one chunk. Titles are
+ * keyed on their first nine characters, packed into a long, with ties
+ * broken by the whole title.
+ *
+ * Updates arrive under the catalog lock and take the index's own lock.
+ * Reservations report stock changes without any lock, so the stock index
+ * only queues those books and refiles them before its next update or
+ * read. Queries don't lock the catalog: they read an immutable Version,
+ * published when a reader asks for one after a change. Chunks a published
+ * Version holds are copied before they are changed, so publishing copies
+ * only the list of chunks.
+ */
+class SortedIndex implements CatalogListener {
+
+    enum Field { PRICE, STOCK, TITLE }
+
+    private static final int CHUNK = 512;
+
+    // Past this many queued stock changes the queue stops growing and every book is checked instead
+    private static final int MAX_RESTOCKED = 1 << 16;
+
+    final Field field;
+    private final Catalog catalog;
+
+    // The writers' state, under this index's lock. Chunks made for the current owner are changed in place.
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+    private Object owner = new Object();
+
+    // Last key of each chunk, so finding a chunk doesn't touch every chunk on the way
+    private long[] lastKeys = new long[0];
+
+    // The index as of the last change, or null until a reader asks for it
+    private volatile Version published;
+
+    // Stock changes don't say what the stock was, so the key each book is filed under is kept
+    private final IntLongMap filed;
+
+    // The book between bookChanging and bookChanged, with its key and title from before
+    private Book changing;
+    private long changingKey;
+    private String changingTitle;
+
+    // Books whose stock changed since the last refile; filled from any thread without a lock
+    private final ConcurrentLinkedQueue<Book> restocked = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger restockedCount = new AtomicInteger();
+    private volatile boolean restockedOverflow;
+
+    private static final class Chunk {
+        final long[] keys;
+        final Book[] books;
+        int size;
+        final Object owner;
+
+        Chunk(Object owner) {
+            this(new long[CHUNK], new Book[CHUNK], 0, owner);
+        }
+
+        Chunk(long[] keys, Book[] books, int size, Object owner) {
+            this.keys = keys;
+            this.books = books;
+            this.size = size;
+            this.owner = owner;
+        }
+    }
+
+    SortedIndex(Catalog catalog, Field field) {
+        this.field = field;
+        this.catalog = catalog;
+        this.filed = field == Field.STOCK ? new IntLongMap(16) : null;
+        synchronized (catalog) {
+            // Listening first, so no stock change made while building is missed
+            catalog.addListener(this);
+            synchronized (this) {
+                build(catalog);
+            }
+        }
+    }
+
+    // Keys: longs that order like the field
+
+    static long priceKey(double price) {
+        long bits = Double.doubleToLongBits(price);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static long stockKey(int stock) {
+        return stock;
+    }
+
+    /** The first nine characters, lower-cased, seven bits each; anything past ASCII counts as the highest. */
+    static long titleKey(String title) {
+        long key = 0;
+        for (int i = 0; i < 9; i++) {
+            int c = i < title.length() ? title.charAt(i) : 0;
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            else if (c > 127) c = 127;
+            key = key << 7 | c;
+        }
+        return key;
+    }
+
+    long keyOf(Book book) {
+        switch (field) {
+            case PRICE: return priceKey(book.getPrice());
+            case STOCK: return stockKey(book.getStock());
+            default: return titleKey(book.getTitle());
+        }
+    }
+
+    // Queries
+
+    /**
+     * The index as it is now. Read several ranks that must agree, e.g. a
+     * range and the books in it, from one Version. Refiles queued stock
+     * changes first, under the index lock, so don't call it on the EDT.
+     */
+    Version version() {
+        Version v = published;
+        if (v != null && restockedCount.get() == 0 && !restockedOverflow) return v;
+        synchronized (this) {
+            refile();
+            if (published == null) publish();
+            return published;
+        }
+    }
+
+    int size() { return version().size(); }
+
+    /** The book at this rank, 0 being the lowest. */
+    Book get(int rank) { return version().get(rank); }
+
+    /** Rank of the first book whose key is at least key; size() if there is none. */
+    int rankOf(long key) { return version().rankOf(key); }
+
+    /** Rank of the first book whose key is above key; size() if there is none. */
+    int rankAfter(long key) { return version().rankAfter(key); }
+
+    /** The index at one point in time. Never changes, so it is read without any lock. */
+    static final class Version {
+        private final Chunk[] chunks;
+        private final long[] lastKeys;
+        private final int[] starts; // rank of the first entry of each chunk
+        private final int size;
+
+        private Version(Chunk[] chunks, long[] lastKeys, int[] starts, int size) {
+            this.chunks = chunks;
+            this.lastKeys = lastKeys;
+            this.starts = starts;
+            this.size = size;
+        }
+
+        int size() { return size; }
+
+        /** The book at this rank, 0 being the lowest. */
+        Book get(int rank) {
+            if (rank < 0 || rank >= size) throw new IndexOutOfBoundsException("Rank " + rank + ", size " + size);
+            int pos = Arrays.binarySearch(starts, rank);
+            int c = pos >= 0 ? pos : -pos - 2;
+            return chunks[c].books[rank - starts[c]];
+        }
+
+        /** Rank of the first book whose key is at least key; size() if there is none. */
+        int rankOf(long key) {
+            if (size == 0) return 0;
+            int c = firstChunkFrom(lastKeys, chunks.length, key);
+            if (c == chunks.length) return size;
+            return starts[c] + lowerBound(chunks[c], key);
+        }
+
+        /** Rank of the first book whose key is above key; size() if there is none. */
+        int rankAfter(long key) {
+            return key == Long.MAX_VALUE ? size : rankOf(key + 1);
+        }
+    }
+
+    // Makes the writers' state a Version; the chunks in it are copied before they are changed again
+    private void publish() {
+        int n = chunks.size();
+        Chunk[] frozen = chunks.toArray(new Chunk[n]);
+        int[] starts = new int[n];
+        int rank = 0;
+        for (int c = 0; c < n; c++) {
+            starts[c] = rank;
+            rank += frozen[c].size;
+        }
+        published = new Version(frozen, Arrays.copyOf(lastKeys, n), starts, size);
+        owner = new Object();
+    }
+
+    // Catalog events
+
+    @Override
+    public synchronized void bookAdded(Book book, int row) {
+        refile();
+        insert(keyOf(book), book);
+    }
+
+    @Override
+    public synchronized void bookRemoved(Book book, int row) {
+        refile();
+        remove(filedKey(book), book);
+    }
+
+    @Override
+    public synchronized void bookChanging(Book book, int row) {
+        refile();
+        changing = book;
+        changingKey = filedKey(book);
+        changingTitle = field == Field.TITLE ? book.getTitle() : null;
+    }
+
+    @Override
+    public synchronized void bookChanged(Book book, int row) {
+        // Most changes are to another field, and leave the book where it is
+        long key = keyOf(book);
+        boolean moved = book != changing || key != changingKey
+                || field == Field.TITLE && !book.getTitle().equals(changingTitle);
+        if (moved && book == changing) remove(changingKey, book);
+        changing = null;
+        changingTitle = null;
+        if (moved) insert(key, book);
+    }
+
+    @Override
+    public void stockChanged(Book book, int row) {
+        if (field != Field.STOCK) return;
+        if (restockedCount.incrementAndGet() <= MAX_RESTOCKED) {
+            restocked.add(book);
+        } else {
+            restockedCount.decrementAndGet();
+            restockedOverflow = true;
+        }
+    }
+
+    // Moves the queued books to where their stock now files them
+    private void refile() {
+        if (filed == null) return;
+        for (Book book; (book = restocked.poll()) != null; ) {
+            restockedCount.decrementAndGet();
+            refile(book);
+        }
+        if (restockedOverflow) {
+            restockedOverflow = false;
+            for (Book book : catalog) refile(book);
+        }
+    }
+
+    private void refile(Book book) {
+        // The book being changed is refiled by bookChanged
+        if (book == changing || !filed.containsKey(book.getId())) return;
+        long key = keyOf(book);
+        long old = filed.get(book.getId());
+        // Only a book still in the index goes back in; one deleted since is found by id but not by identity
+        if (key != old && remove(old, book)) insert(key, book);
+    }
+
+    // Entries
+
+    private long filedKey(Book book) {
+        return filed != null ? filed.get(book.getId()) : keyOf(book);
+    }
+
+    private int compare(long key, Book book, long otherKey, Book other) {
+        if (key != otherKey) return Long.compare(key, otherKey);
+        if (book == other) return 0;
+        if (field == Field.TITLE) {
+            int byTitle = titleOf(book).compareToIgnoreCase(titleOf(other));
+            if (byTitle != 0) return byTitle;
+        }
+        return Integer.compare(book.getId(), other.getId());
+    }
+
+    // A book being renamed is still filed under its old title
+    private String titleOf(Book book) {
+        return book == changing ? changingTitle : book.getTitle();
+    }
+
+    // First chunk whose last key is not below key, or the number of chunks
+    private int firstChunkFrom(long key) {
+        return firstChunkFrom(lastKeys, chunks.size(), key);
+    }
+
+    private static int firstChunkFrom(long[] lastKeys, int count, long key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lastKeys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // First chunk whose last entry is not below (key, book), or the last chunk
+    private int chunkFor(long key, Book book) {
+        // Only chunks ending on this very key need the full comparison
+        int lo = Math.min(firstChunkFrom(key), chunks.size() - 1);
+        int hi = key == Long.MAX_VALUE ? chunks.size() - 1 : Math.min(firstChunkFrom(key + 1), chunks.size() - 1);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Chunk chunk = chunks.get(mid);
+            if (compare(chunk.keys[chunk.size - 1], chunk.books[chunk.size - 1], key, book) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int positionIn(Chunk chunk, long key, Book book) {
+        int lo = lowerBound(chunk, key);
+        int hi = key == Long.MAX_VALUE ? chunk.size : lowerBound(chunk, key + 1);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(chunk.keys[mid], chunk.books[mid], key, book) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Position of the first key not below key
+    private static int lowerBound(Chunk chunk, long key) {
+        int lo = 0, hi = chunk.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunk.keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // A chunk the writers may change in place: copied first if a published Version has it
+    private Chunk editable(int c) {
+        Chunk chunk = chunks.get(c);
+        if (chunk.owner != owner) {
+            chunk = new Chunk(chunk.keys.clone(), chunk.books.clone(), chunk.size, owner);
+            chunks.set(c, chunk);
+        }
+        return chunk;
+    }
+
+    private void insert(long key, Book book) {
+        if (filed != null) filed.put(book.getId(), key);
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(owner));
+            updateLastKeys();
+        }
+        int c = chunkFor(key, book);
+        Chunk chunk = editable(c);
+        if (chunk.size == CHUNK) {
+            // Split in half and insert into whichever half the entry belongs to
+            Chunk upper = new Chunk(owner);
+            int half = CHUNK / 2;
+            System.arraycopy(chunk.keys, half, upper.keys, 0, CHUNK - half);
+            System.arraycopy(chunk.books, half, upper.books, 0, CHUNK - half);
+            Arrays.fill(chunk.books, half, CHUNK, null);
+            upper.size = CHUNK - half;
+            chunk.size = half;
+            chunks.add(c + 1, upper);
+            updateLastKeys();
+            if (compare(chunk.keys[half - 1], chunk.books[half - 1], key, book) < 0) {
+                chunk = upper;
+                c++;
+            }
+        }
+        int pos = positionIn(chunk, key, book);
+        System.arraycopy(chunk.keys, pos, chunk.keys, pos + 1, chunk.size - pos);
+        System.arraycopy(chunk.books, pos, chunk.books, pos + 1, chunk.size - pos);
+        chunk.keys[pos] = key;
+        chunk.books[pos] = book;
+        chunk.size++;
+        if (pos == chunk.size - 1) lastKeys[c] = key;
+        size++;
+        published = null;
+    }
+
+    private boolean remove(long key, Book book) {
+        if (chunks.isEmpty()) return false;
+        int c = chunkFor(key, book);
+        Chunk chunk = chunks.get(c);
+        int pos = positionIn(chunk, key, book);
+        if (pos == chunk.size || chunk.books[pos] != book) return false;
+        chunk = editable(c);
+        System.arraycopy(chunk.keys, pos + 1, chunk.keys, pos, chunk.size - pos - 1);
+        System.arraycopy(chunk.books, pos + 1, chunk.books, pos, chunk.size - pos - 1);
+        chunk.books[--chunk.size] = null;
+        size--;
+        if (filed != null) filed.remove(book.getId());
+        // Fold a chunk that has run low into its neighbour, so deletes don't leave a trail of tiny chunks
+        if (chunk.size == 0 && chunks.size() > 1) {
+            chunks.remove(c);
+            updateLastKeys();
+        } else if (chunk.size < CHUNK / 4 && c + 1 < chunks.size() && chunk.size + chunks.get(c + 1).size <= CHUNK) {
+            Chunk next = chunks.remove(c + 1);
+            System.arraycopy(next.keys, 0, chunk.keys, chunk.size, next.size);
+            System.arraycopy(next.books, 0, chunk.books, chunk.size, next.size);
+            chunk.size += next.size;
+            updateLastKeys();
+        } else {
+            lastKeys[c] = chunk.size == 0 ? Long.MAX_VALUE : chunk.keys[chunk.size - 1];
+        }
+        published = null;
+        return true;
+    }
+
+    // After chunks are added or removed; an empty chunk (only ever the sole one) counts as ending high
+    private void updateLastKeys() {
+        if (lastKeys.length < chunks.size()) lastKeys = new long[chunks.size() * 2];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            lastKeys[c] = chunk.size == 0 ? Long.MAX_VALUE : chunk.keys[chunk.size - 1];
+        }
+    }
+
+    // Sorts the catalog once, filling chunks three-quarters full to leave room for inserts
+    private void build(Catalog catalog) {
+        int n = catalog.size();
+        long[] keys = new long[n];
+        Integer[] order = new Integer[n];
+        Book[] books = new Book[n];
+        for (int i = 0; i < n; i++) {
+            books[i] = catalog.bookAt(i);
+            keys[i] = keyOf(books[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(keys[a], books[a], keys[b], books[b]));
+        int fill = CHUNK * 3 / 4;
+        for (int i = 0; i < n; i += fill) {
+            Chunk chunk = new Chunk(owner);
+            chunk.size = Math.min(fill, n - i);
+            for (int j = 0; j < chunk.size; j++) {
+                int from = order[i + j];
+                chunk.keys[j] = keys[from];
+                chunk.books[j] = books[from];
+                if (filed != null) filed.put(books[from].getId(), keys[from]);
+            }
+            chunks.add(chunk);
+        }
+        size = n;
+        updateLastKeys();
+        publish();
+    }
+}
@@ -0,0 +1,12 @@
+package bookstore;
+
+/**
+ * A store operation was refused, e.g. a duplicate id or an empty cart. The
+ * message is meant for the user and is shown as is.
+ */
+class StoreException extends RuntimeException {
+
+    StoreException(String message) {
+        super(message);
+    }
+}
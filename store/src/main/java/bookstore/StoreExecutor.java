@@ -0,0 +1,129 @@
+package bookstore;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded worker pool for store operations. Uses a virtual thread per task
+ * when the JDK has them (21+), with a semaphore capping how many run at once
+ * and a counter capping how many wait for it; otherwise a fixed pool of
+ * platform threads with a bounded queue. Either way at most QUEUE_CAPACITY
+ * tasks wait, and a flood of requests beyond that is refused instead of
+ * piling up without limit.
+ *
+ * Tasks come back as CompletableFutures. Cancelling one also interrupts the
+ * worker running it.
+ */
+class StoreExecutor {
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final ExecutorService executor;
+    // Only used with virtual threads: tasks running or waiting for a permit, and the most allowed
+    private final Semaphore permits;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxAdmitted;
+    private final boolean virtual;
+
+    StoreExecutor(int maxConcurrent) {
+        this(maxConcurrent, "store-worker");
+    }
+
+    /** @param name prefix of the pool's thread names, when it uses platform threads */
+    StoreExecutor(int maxConcurrent, String name) {
+        ExecutorService v = newVirtualThreadExecutor();
+        this.virtual = v != null;
+        this.maxAdmitted = maxConcurrent + QUEUE_CAPACITY;
+        if (virtual) {
+            this.executor = v;
+            this.permits = new Semaphore(maxConcurrent);
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                        Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.permits = null;
+        }
+    }
+
+    boolean usesVirtualThreads() { return virtual; }
+
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        AtomicReference<Future<?>> running = new AtomicReference<>();
+        CompletableFuture<T> result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                Future<?> f = running.get();
+                if (cancelled && f != null) f.cancel(true);
+                return cancelled;
+            }
+        };
+        if (virtual) {
+            if (admitted.incrementAndGet() > maxAdmitted) {
+                admitted.decrementAndGet();
+                result.completeExceptionally(busy());
+                return result;
+            }
+            // Completed, failed or cancelled; a cancelled task may never get to run
+            result.whenComplete((value, error) -> admitted.decrementAndGet());
+        }
+        try {
+            running.set(executor.submit(() -> run(task, result)));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(busy());
+        }
+        if (result.isCancelled()) running.get().cancel(true);
+        return result;
+    }
+
+    private static StoreException busy() {
+        return new StoreException("The store is busy, please try again");
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> void run(Callable<T> task, CompletableFuture<T> result) {
+        if (result.isDone()) return;
+        boolean acquired = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+            if (!result.isDone()) result.complete(task.call());
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            if (acquired) permits.release();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() through reflection, so the store still builds on older JDKs;
+    // null when the JDK has no virtual threads
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
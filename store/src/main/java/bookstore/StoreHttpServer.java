@@ -0,0 +1,428 @@
+package bookstore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless mode: StoreService as a JSON API on the JDK's HttpServer, bound
+ * to the loopback interface only. Each request runs on a virtual thread of
+ * its own when the JDK has them (21+), otherwise on a fixed pool
+ * (-Dbookstore.httpThreads, default 256).
+ *
+ * Parameters come from the query string or a form-encoded body. A logged-in
+ * client sends its session id in the X-Session header. Refusals come back as
+ * {"error": "..."}: 400 for a refused operation, 401 for a missing or
+ * expired session, 403 for admin operations from a shopper, 404 and 405 for
+ * unknown paths and methods.
+ *
+ * <pre>
+ *   POST   /api/register          username, password
+ *   POST   /api/login             username, password   -> {"session", "username", "admin"}
+ *   POST   /api/logout
+ *   GET    /api/books             q (search) or offset; limit; sort (price, stock, title), order (asc, desc),
+ *                                  minPrice, maxPrice, inStock (true)
+ *   GET    /api/books/{id}
+ *   GET    /api/books/{id}/also-bought               -> books most often bought with it
+ *   GET    /api/cart
+ *   POST   /api/cart              bookId
+ *   DELETE /api/cart/{bookId}
+ *   GET    /api/orders            cursor, limit        -> {"orders", "next", "total"}
+ *   POST   /api/orders            places the cart as an order
+ *   POST   /api/admin/books       id, title, author, price, stock
+ *   PUT    /api/admin/books/{id}  title, author, price, stock
+ *   DELETE /api/admin/books/{id}
+ *   GET    /api/admin/sales       top, days, hours     -> {"orders", "units", "revenue", "topBooks", "topCustomers",
+ *                                                          "days", "hours"}
+ * </pre>
+ */
+class StoreHttpServer {
+
+    // Where headless mode listens (-Dbookstore.httpPort, default 8080)
+    static final int PORT = Integer.getInteger("bookstore.httpPort", 8080);
+
+    private static final int THREADS = Integer.getInteger("bookstore.httpThreads", 256);
+    private static final int BACKLOG = 4096;
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_BODY = 64 * 1024;
+
+    /** An HTTP-level refusal with its status code. */
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final StoreService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /** Binds to 127.0.0.1:port (0 for any free port); call start() to serve. */
+    StoreHttpServer(StoreService service, int port) throws IOException {
+        this.service = service;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.createContext("/api/", this::handle);
+        ExecutorService virtual = StoreExecutor.newVirtualThreadExecutor();
+        if (virtual != null) {
+            executor = virtual;
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread t = new Thread(r, "http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        server.setExecutor(executor);
+    }
+
+    void start() { server.start(); }
+
+    int port() { return server.getAddress().getPort(); }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Runs the store with no window, serving the API until the JVM is stopped. */
+    static void runHeadless(int port) throws IOException {
+        BookStore store = new BookStore();
+        store.initSampleData();
+        StoreService service = new StoreService(store);
+        StoreHttpServer http = new StoreHttpServer(service, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            http.stop();
+            service.shutdown();
+        }, "store-shutdown"));
+        http.start();
+        System.out.println("Serving the store at http://127.0.0.1:" + http.port() + "/api/");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (SessionExpiredException e) {
+            status = 401;
+            body = error(e.getMessage());
+        } catch (AdminRequiredException e) {
+            status = 403;
+            body = error(e.getMessage());
+        } catch (StoreException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error("Bad request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error("Unexpected error: " + e);
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> params = params(exchange);
+        String session = exchange.getRequestHeaders().getFirst("X-Session");
+
+        switch (path[0]) {
+            case "register":
+                expect(method, "POST");
+                await(service.register(required(params, "username"), required(params, "password")));
+                return ok();
+            case "login": {
+                expect(method, "POST");
+                Session opened = await(service.login(required(params, "username"), required(params, "password")));
+                return new Json().beginObject().field("session", opened.id).field("username", opened.user.username)
+                        .field("admin", opened.user.isAdmin).endObject().toString();
+            }
+            case "logout":
+                expect(method, "POST");
+                await(service.logout(session));
+                return ok();
+            case "books":
+                expect(method, "GET");
+                if (path.length == 3 && path[2].equals("also-bought")) {
+                    return bookList(service.store().alsoBought(parseInt(path[1])));
+                }
+                if (path.length > 1) {
+                    Book book = service.store().findBook(parseInt(path[1]));
+                    if (book == null) throw new HttpError(404, "Book not found");
+                    return book(new Json(), book).toString();
+                }
+                return books(params);
+            case "cart":
+                if (path.length > 1) {
+                    expect(method, "DELETE");
+                    await(service.removeFromCart(session, parseInt(path[1])));
+                    return ok();
+                }
+                if (method.equals("POST")) {
+                    return book(new Json(), await(service.addToCart(session, parseInt(required(params, "bookId")))))
+                            .toString();
+                }
+                expect(method, "GET");
+                return bookList(await(service.cart(session)));
+            case "orders":
+                if (method.equals("POST")) return order(new Json(), await(service.placeOrder(session))).toString();
+                expect(method, "GET");
+                return orders(await(service.orderHistory(session,
+                        intParam(params, "cursor", OrderStore.NEWEST), limit(params))));
+            case "admin":
+                if (path.length > 1 && path[1].equals("books")) return adminBooks(method, path, params, session);
+                if (path.length == 2 && path[1].equals("sales")) {
+                    expect(method, "GET");
+                    return sales(await(service.salesReport(session, bounded(params, "top", 10),
+                            bounded(params, "days", 30), bounded(params, "hours", 24))));
+                }
+                break;
+            default:
+                break;
+        }
+        throw new HttpError(404, "No such resource");
+    }
+
+    private String adminBooks(String method, String[] path, Map<String, String> params, String session) {
+        if (path.length == 2) {
+            expect(method, "POST");
+            await(service.addBook(session, parseInt(required(params, "id")), required(params, "title"),
+                    required(params, "author"), parseDouble(required(params, "price")),
+                    parseInt(required(params, "stock"))));
+            return ok();
+        }
+        int id = parseInt(path[2]);
+        if (method.equals("DELETE")) {
+            if (!await(service.deleteBook(session, id))) throw new HttpError(404, "Book not found");
+            return ok();
+        }
+        expect(method, "PUT");
+        // Title and author are optional, as in the admin panel; price and stock are set as given
+        await(service.updateBook(session, id, param(params, "title", ""), param(params, "author", ""),
+                parseDouble(required(params, "price")), parseInt(required(params, "stock"))));
+        return ok();
+    }
+
+    private String books(Map<String, String> params) {
+        int limit = limit(params);
+        String query = params.get("q");
+        int[] ids;
+        if (query != null && !query.trim().isEmpty()) {
+            ids = await(service.search(query, limit));
+        } else if (params.containsKey("sort") || params.containsKey("minPrice") || params.containsKey("maxPrice")
+                || params.containsKey("inStock")) {
+            ids = await(service.browse(bookQuery(params, limit)));
+        } else {
+            return bookList(await(service.books(intParam(params, "offset", 0), limit)));
+        }
+        Json json = new Json().beginArray();
+        for (int id : ids) {
+            Book book = service.store().findBook(id);
+            if (book != null) book(json, book);
+        }
+        return json.endArray().toString();
+    }
+
+    private static BookQuery bookQuery(Map<String, String> params, int limit) {
+        BookQuery q = new BookQuery();
+        String sort = params.get("sort");
+        if (sort != null) {
+            try {
+                q.sort = SortedIndex.Field.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new HttpError(400, "sort must be price, stock or title");
+            }
+        }
+        q.descending = param(params, "order", "asc").equalsIgnoreCase("desc");
+        if (params.containsKey("minPrice")) q.minPrice = parseDouble(params.get("minPrice"));
+        if (params.containsKey("maxPrice")) q.maxPrice = parseDouble(params.get("maxPrice"));
+        q.inStockOnly = Boolean.parseBoolean(param(params, "inStock", "false"));
+        q.offset = Math.max(0, intParam(params, "offset", 0));
+        q.limit = limit;
+        return q;
+    }
+
+    private static String bookList(List<Book> books) {
+        Json json = new Json().beginArray();
+        for (Book book : books) book(json, book);
+        return json.endArray().toString();
+    }
+
+    private static Json book(Json json, Book book) {
+        Book.Values values = book.values();
+        return json.beginObject().field("id", book.getId()).field("title", values.title)
+                .field("author", values.author).field("price", values.price)
+                .field("stock", book.getStock()).endObject();
+    }
+
+    private static String orders(OrderStore.Page page) {
+        Json json = new Json().beginObject().name("orders").beginArray();
+        for (Order order : page.orders) order(json, order);
+        return json.endArray().field("next", page.next).field("total", page.total).endObject().toString();
+    }
+
+    private String sales(SalesAnalytics.Report report) {
+        Json json = new Json().beginObject().field("orders", report.orders).field("units", report.units)
+                .field("revenue", report.paise / 100.0).field("books", report.books)
+                .field("customers", report.customers).name("topBooks").beginArray();
+        for (SalesAnalytics.Row row : report.topBooks) {
+            Book book = service.store().findBook((int) row.key);
+            json.beginObject().field("bookId", row.key).field("title", book == null ? null : book.getTitle())
+                    .field("units", row.count).field("revenue", row.paise / 100.0).endObject();
+        }
+        json.endArray().name("topCustomers").beginArray();
+        for (SalesAnalytics.Row row : report.topCustomers) {
+            json.beginObject().field("user", row.label).field("orders", row.count)
+                    .field("spend", row.paise / 100.0).endObject();
+        }
+        json.endArray().name("days");
+        buckets(json, "day", report.days);
+        json.name("hours");
+        buckets(json, "hour", report.hours);
+        return json.endObject().toString();
+    }
+
+    private static void buckets(Json json, String name, List<SalesAnalytics.Row> rows) {
+        json.beginArray();
+        for (SalesAnalytics.Row row : rows) {
+            json.beginObject().field(name, row.label).field("orders", row.count)
+                    .field("revenue", row.paise / 100.0).endObject();
+        }
+        json.endArray();
+    }
+
+    private static Json order(Json json, Order order) {
+        json.beginObject().field("user", order.user).field("placedAt", order.placedAt)
+                .field("total", order.total()).name("lines").beginArray();
+        for (int i = 0; i < order.lineCount(); i++) {
+            json.beginObject().field("bookId", order.bookId(i)).field("quantity", order.quantity(i))
+                    .field("price", order.price(i)).endObject();
+        }
+        return json.endArray().endObject();
+    }
+
+    private static String ok() {
+        return new Json().beginObject().field("ok", true).endObject().toString();
+    }
+
+    private static String error(String message) {
+        return new Json().beginObject().field("error", message).endObject().toString();
+    }
+
+    // Waits for a service call; its refusal is rethrown as is
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static void expect(String method, String allowed) {
+        if (!method.equals(allowed)) throw new HttpError(405, "Use " + allowed);
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new HttpError(400, "Missing parameter: " + name);
+        return value.trim();
+    }
+
+    private static String param(Map<String, String> params, String name, String fallback) {
+        String value = params.get(name);
+        return value == null ? fallback : value.trim();
+    }
+
+    private static int intParam(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        return value == null ? fallback : parseInt(value);
+    }
+
+    private static int bounded(Map<String, String> params, String name, int fallback) {
+        return Math.max(0, Math.min(MAX_LIMIT, intParam(params, name, fallback)));
+    }
+
+    private static int limit(Map<String, String> params) {
+        return Math.max(1, Math.min(MAX_LIMIT, intParam(params, "limit", 50)));
+    }
+
+    private static int parseInt(String s) {
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Not a number: " + s);
+        }
+    }
+
+    private static double parseDouble(String s) {
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Not a number: " + s);
+        }
+    }
+
+    // Query string plus, for form posts, the body; body values win
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+            parseForm(readBody(exchange.getRequestBody()), params);
+        }
+        return params;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        for (int n; (n = in.read(buf)) > 0; ) {
+            body.write(buf, 0, n);
+            if (body.size() > MAX_BODY) throw new HttpError(413, "Request body too large");
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void parseForm(String form, Map<String, String> into) throws UnsupportedEncodingException {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            into.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package bookstore;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Asynchronous front of BookStore, used by the GUI and by StoreHttpServer:
+ * every operation runs on the StoreExecutor pool and completes a
+ * CompletableFuture, so nothing slow ever runs on the EDT. Callers publish
+ * the result back with {@code thenAcceptAsync(..., SwingUtilities::invokeLater)}
+ * or similar.
+ *
+ * Shopper and admin operations name the caller's session, and are refused
+ * for sessions that have expired or lack the rights.
+ */
+class StoreService {
+
+    private static final int WORKERS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final BookStore store;
+    private final StoreExecutor executor = new StoreExecutor(WORKERS);
+
+    StoreService(BookStore store) {
+        this.store = store;
+    }
+
+    BookStore store() { return store; }
+
+    // These two hash passwords, so they run on the store's own password-verify pool
+    CompletableFuture<Session> login(String username, String password) {
+        return store.loginAsync(username, password).thenApply(store::openSession);
+    }
+
+    CompletableFuture<Void> register(String username, String password) {
+        return store.registerAsync(username, password);
+    }
+
+    CompletableFuture<List<Book>> books(int offset, int limit) {
+        return executor.submit(() -> store.books(offset, limit));
+    }
+
+    CompletableFuture<int[]> search(String query, int limit) {
+        return executor.submit(() -> store.search(query, limit));
+    }
+
+    CompletableFuture<int[]> browse(BookQuery query) {
+        return executor.submit(() -> store.browse(query));
+    }
+
+    CompletableFuture<List<Book>> alsoBought(int bookId) {
+        return executor.submit(() -> store.alsoBought(bookId));
+    }
+
+    // Shopper operations name the session; each looks it up, which also keeps it from idling out
+
+    CompletableFuture<List<Book>> cart(String sessionId) {
+        return executor.submit(() -> store.session(sessionId).cart.items());
+    }
+
+    CompletableFuture<Book> addToCart(String sessionId, int bookId) {
+        return executor.submit(() -> store.addToCart(store.session(sessionId).cart, bookId));
+    }
+
+    CompletableFuture<Void> removeFromCart(String sessionId, int bookId) {
+        return executor.submit(() -> {
+            store.removeFromCart(store.session(sessionId).cart, bookId);
+            return null;
+        });
+    }
+
+    CompletableFuture<Order> placeOrder(String sessionId) {
+        Session session;
+        try {
+            session = store.session(sessionId);
+        } catch (StoreException e) {
+            CompletableFuture<Order> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        // The checkout pipeline has its own thread; no worker needs to wait for it.
+        // A copy, so cancelling it doesn't cancel the staged order other callers may share.
+        return store.submitOrder(session.user, session.cart).thenApply(order -> order);
+    }
+
+    CompletableFuture<OrderStore.Page> orderHistory(String sessionId, int cursor, int limit) {
+        return executor.submit(() -> store.orderHistory(store.session(sessionId).user, cursor, limit));
+    }
+
+    /** Closes the session; its cart's stock is given back. */
+    CompletableFuture<Void> logout(String sessionId) {
+        return executor.submit(() -> {
+            store.closeSession(sessionId);
+            return null;
+        });
+    }
+
+    // Admin operations refuse sessions that aren't an admin's
+
+    CompletableFuture<Void> addBook(String sessionId, int id, String title, String author, double price, int stock) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            store.addBook(id, title, author, price, stock);
+            return null;
+        });
+    }
+
+    CompletableFuture<Void> updateBook(String sessionId, int id, String title, String author, double price, int stock) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            store.updateBook(id, title, author, price, stock);
+            return null;
+        });
+    }
+
+    CompletableFuture<Boolean> deleteBook(String sessionId, int id) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            return store.deleteBook(id);
+        });
+    }
+
+    CompletableFuture<CatalogCsv.Result> importBooks(String sessionId, File file, DoubleConsumer progress) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            return store.importBooks(file, progress);
+        });
+    }
+
+    CompletableFuture<Integer> exportBooks(String sessionId, File file, DoubleConsumer progress) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            return store.exportBooks(file, progress);
+        });
+    }
+
+    CompletableFuture<SalesAnalytics.Report> salesReport(String sessionId, int top, int days, int hours) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            return store.salesReport(top, days, hours);
+        });
+    }
+
+    CompletableFuture<Integer> exportSales(String sessionId, File file) {
+        return executor.submit(() -> {
+            store.adminSession(sessionId);
+            return store.exportSales(file);
+        });
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        store.shutdown();
+    }
+}
@@ -0,0 +1,137 @@
+package bookstore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns strings as int codes, so a string repeated across many books (an
+ * author on every one of their titles) is stored once. Strings are kept as
+ * UTF-8 bytes, each behind a one- or four-byte length, in large byte pages
+ * rather than as String objects, and get() decodes a fresh String. A string
+ * too long for a page gets a page of its own. Codes are handed out densely
+ * and never freed.
+ *
+ * intern() is only called under the BookColumns lock. get() may run on any
+ * thread: pages are never copied, so a code obtained through the catalog
+ * always finds its bytes.
+ */
+class StringTable {
+
+    private static final int BYTE_PAGE_BITS = 20; // 1 MB
+    private static final int BYTE_PAGE_SIZE = 1 << BYTE_PAGE_BITS;
+    private static final int CODE_PAGE_BITS = 12;
+    private static final int CODE_PAGE_SIZE = 1 << CODE_PAGE_BITS;
+    private static final int EMPTY = -1;
+
+    // The string bytes, and where each code's string starts: byte page in the high bits, offset in the low
+    private volatile byte[][] bytes = new byte[0][];
+    private volatile int[][] starts = new int[0][];
+    private int size;
+    private int used = BYTE_PAGE_SIZE; // bytes used in the last page; full until the first page exists
+
+    // Open-addressing index from string to code, with the hash of each code's string
+    private int[] codes = newCodes(64);
+    private int mask = 63;
+    private int[] hashes = new int[64];
+
+    String get(int code) {
+        int start = starts[code >>> CODE_PAGE_BITS][code & (CODE_PAGE_SIZE - 1)];
+        byte[] page = bytes[start >>> BYTE_PAGE_BITS];
+        int at = start & (BYTE_PAGE_SIZE - 1);
+        int length = lengthAt(page, at);
+        return new String(page, at + (length < 0x80 ? 1 : 4), length, StandardCharsets.UTF_8);
+    }
+
+    int intern(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int length = utf8.length;
+        int h = hash(utf8, length);
+        int i = h & mask;
+        for (int code; (code = codes[i]) != EMPTY; i = (i + 1) & mask) {
+            if (hashes[code] == h && matches(code, utf8, length)) return code;
+        }
+        int code = size;
+        store(code, utf8, length);
+        if (code == hashes.length) hashes = Arrays.copyOf(hashes, code * 2);
+        hashes[code] = h;
+        codes[i] = code;
+        size++;
+        if (size * 2 > codes.length) rehash(codes.length * 2);
+        return code;
+    }
+
+    int size() { return size; }
+
+    private void store(int code, byte[] utf8, int length) {
+        int header = length < 0x80 ? 1 : 4;
+        if (used + header + length > BYTE_PAGE_SIZE) {
+            byte[][] grown = Arrays.copyOf(bytes, bytes.length + 1);
+            grown[bytes.length] = new byte[Math.max(BYTE_PAGE_SIZE, header + length)];
+            bytes = grown;
+            used = 0;
+        }
+        byte[] page = bytes[bytes.length - 1];
+        int start = (bytes.length - 1) << BYTE_PAGE_BITS | used;
+        if (header == 1) {
+            page[used++] = (byte) length;
+        } else {
+            page[used++] = (byte) (0x80 | length >>> 24);
+            page[used++] = (byte) (length >>> 16);
+            page[used++] = (byte) (length >>> 8);
+            page[used++] = (byte) length;
+        }
+        System.arraycopy(utf8, 0, page, used, length);
+        // An oversized page holds just this string
+        used = Math.min(used + length, BYTE_PAGE_SIZE);
+
+        if ((code >>> CODE_PAGE_BITS) == starts.length) {
+            int[][] grown = Arrays.copyOf(starts, starts.length + 1);
+            grown[starts.length] = new int[CODE_PAGE_SIZE];
+            starts = grown;
+        }
+        starts[code >>> CODE_PAGE_BITS][code & (CODE_PAGE_SIZE - 1)] = start;
+    }
+
+    private boolean matches(int code, byte[] utf8, int length) {
+        int start = starts[code >>> CODE_PAGE_BITS][code & (CODE_PAGE_SIZE - 1)];
+        byte[] page = bytes[start >>> BYTE_PAGE_BITS];
+        int at = start & (BYTE_PAGE_SIZE - 1);
+        int stored = lengthAt(page, at);
+        if (stored != length) return false;
+        at += stored < 0x80 ? 1 : 4;
+        for (int j = 0; j < length; j++) {
+            if (page[at + j] != utf8[j]) return false;
+        }
+        return true;
+    }
+
+    // Lengths under 0x80 take one byte; longer ones four, the first with its top bit set
+    private static int lengthAt(byte[] page, int at) {
+        int first = page[at];
+        if (first >= 0) return first;
+        return (first & 0x7F) << 24 | (page[at + 1] & 0xFF) << 16 | (page[at + 2] & 0xFF) << 8 | page[at + 3] & 0xFF;
+    }
+
+    private static int hash(byte[] utf8, int length) {
+        int h = 1;
+        for (int j = 0; j < length; j++) h = 31 * h + utf8[j];
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newCodes(int capacity) {
+        int[] c = new int[capacity];
+        Arrays.fill(c, EMPTY);
+        return c;
+    }
+
+    private void rehash(int capacity) {
+        codes = newCodes(capacity);
+        mask = capacity - 1;
+        for (int code = 0; code < size; code++) {
+            int i = hashes[code] & mask;
+            while (codes[i] != EMPTY) i = (i + 1) & mask;
+            codes[i] = code;
+        }
+    }
+}
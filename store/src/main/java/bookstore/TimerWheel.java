@@ -0,0 +1,149 @@
+package bookstore;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel for large numbers of timeouts that are usually cancelled
+ * before they fire, such as cart holds. Scheduling and cancelling are O(1)
+ * and lock-free: both just enqueue, and the wheel thread moves new timeouts
+ * into their bucket and unlinks cancelled ones on its next tick. Tasks run
+ * on the wheel thread and should be short.
+ */
+class TimerWheel {
+
+    private static final int INIT = 0, CANCELLED = 1, EXPIRED = 2;
+
+    final class Timeout {
+        private final Runnable task;
+        private final long deadline; // nanos since the wheel started
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev, next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Returns false if the timeout already fired or was cancelled. */
+        boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) return false;
+            cancelled.offer(this);
+            return true;
+        }
+
+        boolean isExpired() { return state.get() == EXPIRED; }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    TimerWheel(String name, long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize * 2 - 1));
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout t = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        added.offer(t);
+        return t;
+    }
+
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    // Wheel thread
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep = deadline - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+                continue;
+            }
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.bucket != null) t.bucket.remove(t);
+        }
+    }
+
+    private void transferAdded() {
+        Timeout t;
+        while ((t = added.poll()) != null) {
+            if (t.state.get() == CANCELLED) continue;
+            long ticks = t.deadline / tickNanos;
+            t.remainingRounds = (ticks - tick) / wheel.length;
+            // Already overdue: fire on the current tick
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(t);
+        }
+    }
+
+    /** Doubly-linked list of timeouts, only touched by the wheel thread. */
+    private static final class Bucket {
+        private Timeout head, tail;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        void expire() {
+            Timeout t = head;
+            while (t != null) {
+                Timeout next = t.next;
+                if (t.remainingRounds <= 0) {
+                    remove(t);
+                    if (t.state.compareAndSet(INIT, EXPIRED)) t.task.run();
+                } else {
+                    t.remainingRounds--;
+                }
+                t = next;
+            }
+        }
+
+        void remove(Timeout t) {
+            if (t.prev != null) t.prev.next = t.next; else head = t.next;
+            if (t.next != null) t.next.prev = t.prev; else tail = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+    }
+}
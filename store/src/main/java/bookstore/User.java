@@ -0,0 +1,14 @@
+package bookstore;
+
+// Data Model
+class User {
+    final String username;
+    final String passwordHash; // from PasswordHasher
+    final boolean isAdmin;
+
+    User(String username, String passwordHash, boolean isAdmin) {
+        this.username = UserDirectory.normalize(username);
+        this.passwordHash = passwordHash;
+        this.isAdmin = isAdmin;
+    }
+}
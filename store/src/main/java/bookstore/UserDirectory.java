@@ -0,0 +1,52 @@
+package bookstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registered users, indexed by normalized username. Lookups are a lock-free
+ * hash probe however many users there are, and add() is an atomic
+ * put-if-absent, so two registrations of one name can't both succeed.
+ *
+ * Writers that also journal the change hold the directory's lock, so a
+ * compaction (which takes it too) never sees a user without its record.
+ */
+class UserDirectory {
+
+    private final ConcurrentHashMap<String, User> byName = new ConcurrentHashMap<>();
+
+    /** The form usernames are stored and looked up in: trimmed and lower case. */
+    static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    User get(String username) {
+        return byName.get(normalize(username));
+    }
+
+    /** Adds the user unless the name is taken; returns whether it was added. */
+    boolean add(User user) {
+        return byName.putIfAbsent(user.username, user) == null;
+    }
+
+    /** Adds or replaces the user, e.g. with an upgraded password hash. */
+    void put(User user) {
+        byName.put(user.username, user);
+    }
+
+    /** Replaces the user only if it is still the given one. */
+    boolean replace(User old, User user) {
+        return byName.replace(old.username, old, user);
+    }
+
+    int size() { return byName.size(); }
+
+    boolean isEmpty() { return byName.isEmpty(); }
+
+    /** A copy of every user, in no particular order. */
+    List<User> all() {
+        return new ArrayList<>(byName.values());
+    }
+}
@@ -0,0 +1,33 @@
+package bookstore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** The checks every way of creating or changing a book goes through. */
+class BookTest {
+
+    @Test
+    void acceptsPricesFromZeroToTheMostAnOrderLineHolds() {
+        assertNull(Book.invalid("Title", "Author", 0.0, 0));
+        assertNull(Book.invalid("Title", "Author", 499.5, 10));
+        assertNull(Book.invalid("Title", "Author", Book.MAX_PRICE, 1));
+    }
+
+    @Test
+    void rejectsPricesThatCannotBeStoredOrShown() {
+        double[] prices = {-0.0, -0.01, Book.MAX_PRICE + 0.01, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double price : prices) {
+            assertNotNull(Book.invalid("Title", "Author", price, 1), "price " + price);
+        }
+    }
+
+    @Test
+    void rejectsBlankNamesAndNegativeStock() {
+        assertNotNull(Book.invalid(" ", "Author", 100, 1));
+        assertNotNull(Book.invalid("Title", "", 100, 1));
+        assertNotNull(Book.invalid("Title", "Author", 100, -1));
+    }
+}
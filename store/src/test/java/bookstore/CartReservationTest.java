@@ -0,0 +1,232 @@
+package bookstore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Holds taken through the store's cart operations: each cart line holds exactly one unit. */
+class CartReservationTest {
+
+    private BookStore store;
+
+    @AfterEach
+    void stop() {
+        if (store != null) store.shutdown();
+    }
+
+    private Book addBook(int id, int stock) {
+        store.addBook(id, "Title " + id, "Author", 100, stock);
+        return store.catalog().get(id);
+    }
+
+    @Test
+    void addingAndRemovingHoldsOneUnit() {
+        store = new BookStore(60_000);
+        Book book = addBook(1, 3);
+        Cart cart = new Cart();
+
+        store.addToCart(cart, 1);
+        assertTrue(cart.contains(1));
+        assertEquals(2, book.getStock());
+        assertEquals(1, book.getReserved());
+
+        store.removeFromCart(cart, 1);
+        assertFalse(cart.contains(1));
+        assertEquals(3, book.getStock());
+        assertEquals(0, book.getReserved());
+    }
+
+    @Test
+    void addingTheSameBookTwiceIsRefusedWithoutHoldingMore() {
+        store = new BookStore(60_000);
+        Book book = addBook(1, 3);
+        Cart cart = new Cart();
+
+        store.addToCart(cart, 1);
+        assertThrows(StoreException.class, () -> store.addToCart(cart, 1));
+        assertEquals(2, book.getStock());
+        assertEquals(1, book.getReserved());
+    }
+
+    @Test
+    void concurrentAddsOfTheSameBookHoldOneUnit() throws Exception {
+        store = new BookStore(60_000);
+        int threads = 8;
+        Book book = addBook(1, 100);
+        for (int round = 0; round < 200; round++) {
+            Cart cart = new Cart();
+            CyclicBarrier start = new CyclicBarrier(threads);
+            AtomicInteger added = new AtomicInteger();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                        store.addToCart(cart, 1);
+                        added.incrementAndGet();
+                    } catch (StoreException e) {
+                        // Lost the race: already in the cart
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) worker.join();
+
+            assertEquals(1, added.get());
+            assertEquals(1, cart.size());
+            assertEquals(99, book.getStock(), "round " + round);
+            assertEquals(1, book.getReserved(), "round " + round);
+            store.releaseCart(cart);
+            assertEquals(100, book.getStock());
+        }
+    }
+
+    @Test
+    void soldOutBookCanNotBeAdded() {
+        store = new BookStore(60_000);
+        Book book = addBook(1, 1);
+        Cart first = new Cart();
+        Cart second = new Cart();
+
+        store.addToCart(first, 1);
+        assertThrows(StoreException.class, () -> store.addToCart(second, 1));
+        assertFalse(second.contains(1));
+        assertEquals(0, book.getStock());
+        assertEquals(1, book.getReserved());
+    }
+
+    @Test
+    void closedSessionGivesItsHoldsBack() {
+        store = new BookStore(60_000);
+        Book book = addBook(1, 3);
+        store.register("shopper", "secret");
+        Session session = store.openSession(store.login("shopper", "secret"));
+
+        store.addToCart(session.cart, 1);
+        store.closeSession(session.id);
+
+        assertEquals(3, book.getStock());
+        assertEquals(0, book.getReserved());
+        assertThrows(StoreException.class, () -> store.addToCart(session.cart, 1));
+        assertEquals(3, book.getStock(), "a closed cart keeps no hold");
+    }
+
+    @Test
+    void expiredHoldLeavesTheCartAndReturnsTheUnit() throws InterruptedException {
+        store = new BookStore(50);
+        Book book = addBook(1, 3);
+        Cart cart = new Cart();
+        CountDownLatch expired = new CountDownLatch(1);
+        List<Book> expiredBooks = new ArrayList<>();
+        store.setHoldExpiredListener((c, b) -> {
+            assertSame(cart, c);
+            expiredBooks.add(b);
+            expired.countDown();
+        });
+
+        store.addToCart(cart, 1);
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+
+        assertFalse(cart.contains(1));
+        assertEquals(1, expiredBooks.size());
+        assertEquals(3, book.getStock());
+        assertEquals(0, book.getReserved());
+    }
+
+    @Test
+    void checkoutSellsExactlyWhatWasHeld() {
+        store = new BookStore(60_000);
+        Book a = addBook(1, 3);
+        Book b = addBook(2, 3);
+        store.register("shopper", "secret");
+        User user = store.login("shopper", "secret");
+        Cart cart = new Cart();
+
+        store.addToCart(cart, 1);
+        store.addToCart(cart, 2);
+        Order order = store.placeOrder(user, cart);
+
+        assertEquals(2, order.lineCount());
+        assertTrue(cart.isEmpty());
+        assertEquals(2, a.getStock());
+        assertEquals(0, a.getReserved());
+        assertEquals(2, b.getOnHand());
+        assertEquals(0, b.getReserved());
+    }
+
+    @Test
+    void lineRemovedWhileTheOrderIsQueuedIsNotSold() throws Exception {
+        store = new BookStore(60_000);
+        Book a = addBook(1, 3);
+        Book b = addBook(2, 3);
+        store.register("shopper", "secret");
+        User user = store.login("shopper", "secret");
+        Cart blocker = new Cart();
+        Cart cart = new Cart();
+        store.addToCart(blocker, 2);
+        store.addToCart(cart, 1);
+        store.addToCart(cart, 2);
+
+        CompletableFuture<Order> order;
+        // The committer waits on the first cart's lock, so the second order stays queued
+        synchronized (blocker) {
+            CompletableFuture<Order> first = store.submitOrder(user, blocker);
+            order = store.submitOrder(user, cart);
+            awaitCommitterBlocked();
+            store.removeFromCart(cart, 1);
+            assertFalse(first.isDone());
+        }
+
+        assertEquals(1, order.get(5, TimeUnit.SECONDS).lineCount());
+        assertEquals(2, order.get().bookId(0));
+        assertFalse(cart.contains(1));
+        assertNull(cart.holdFor(1));
+        assertEquals(3, a.getStock());
+        assertEquals(0, a.getReserved());
+        assertEquals(1, b.getOnHand());
+        assertEquals(0, b.getReserved());
+    }
+
+    @Test
+    void replacingTheHoldOfARemovedLineIsRefused() {
+        store = new BookStore(60_000);
+        Book book = addBook(1, 3);
+        Cart cart = new Cart();
+        store.addToCart(cart, 1);
+        store.removeFromCart(cart, 1);
+
+        ReservationEngine.Hold hold = store.reservations().reserve(book, 1, cart);
+        assertFalse(cart.replaceHold(1, hold));
+        assertFalse(cart.contains(1));
+        assertNull(cart.holdFor(1));
+        store.reservations().release(hold);
+    }
+
+    private static void awaitCommitterBlocked() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                if (t.getName().equals("checkout-committer") && t.getState() == Thread.State.BLOCKED) return;
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("the committer never reached the cart");
+    }
+}
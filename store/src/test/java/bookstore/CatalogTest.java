@@ -0,0 +1,35 @@
+package bookstore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** A snapshot keeps the values its books had when it was taken, in either layout. */
+class CatalogTest {
+
+    @Test
+    void snapshotValuesIgnoreLaterUpdatesAndMoves() {
+        for (boolean columnar : new boolean[] {false, true}) {
+            Catalog catalog = new Catalog(columnar);
+            for (int id = 1; id <= 3; id++) catalog.add(Book.of(id, "Title " + id, "Author " + id, 100 * id, 5));
+            Catalog.Version before = catalog.snapshot();
+
+            catalog.get(1).update("New title", "New author", 999);
+            catalog.remove(2); // book 3 moves into row 1
+            Catalog.Version after = catalog.snapshot();
+
+            assertEquals("Title 1", before.valuesAt(0).title);
+            assertEquals(100.0, before.valuesAt(0).price);
+            assertEquals("Title 2", before.valuesAt(1).title);
+            assertEquals("Author 3", before.valuesOf(3).author);
+
+            assertEquals("New title", after.valuesAt(0).title);
+            assertEquals("New author", after.valuesOf(1).author);
+            assertEquals(999.0, after.valuesOf(1).price);
+            assertEquals("Title 3", after.valuesAt(1).title);
+            assertNull(after.valuesOf(2));
+            assertEquals("New title", catalog.get(1).getTitle(), "columnar " + columnar);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package bookstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retained heap of compact Orders against the shape orders had before (a
+ * list of copied Books and a timestamp string each). A scaled-down run of
+ * OrderFootprintBenchmark: compact orders measure about 5x smaller here,
+ * and the bound leaves some room for the heap the test JVM shares.
+ */
+class OrderFootprintTest {
+
+    private static final int ORDERS = 100_000;
+    private static final int ITEMS = 3;
+    private static final double MIN_RATIO = 4;
+
+    private static final class LegacyOrder {
+        final String user;
+        final List<Book> items;
+        final double total;
+        final String timestamp;
+
+        LegacyOrder(String user, List<Book> items, double total) {
+            this.user = user;
+            this.items = new ArrayList<>(items);
+            this.total = total;
+            this.timestamp = LocalDateTime.now().toString();
+        }
+    }
+
+    @Test
+    void compactOrdersTakeAFractionOfTheHeap() {
+        Book[] catalog = new Book[1000];
+        for (int i = 0; i < catalog.length; i++) {
+            catalog[i] = Book.of(i + 1, "Title of book " + i, "Author " + i % 50, 100 + i, 1_000);
+        }
+
+        long base = usedHeap();
+        List<LegacyOrder> legacy = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            List<Book> cartCopies = new ArrayList<>(ITEMS);
+            double total = 0;
+            for (int j = 0; j < ITEMS; j++) {
+                Book b = bookFor(catalog, i, j);
+                cartCopies.add(Book.of(b.getId(), b.getTitle(), b.getAuthor(), b.getPrice(), b.getStock()));
+                total += b.getPrice();
+            }
+            legacy.add(new LegacyOrder("user" + i % 1000, cartCopies, total));
+        }
+        long legacyBytes = usedHeap() - base;
+        assertEquals(ORDERS, legacy.size()); // keeps the list reachable until measured
+        legacy = null;
+
+        base = usedHeap();
+        List<Order> compact = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            List<Book> items = new ArrayList<>(ITEMS);
+            for (int j = 0; j < ITEMS; j++) items.add(bookFor(catalog, i, j));
+            compact.add(new Order("user" + i % 1000, items));
+        }
+        long compactBytes = usedHeap() - base;
+        assertEquals(ORDERS, compact.size());
+        assertEquals(ITEMS, compact.get(ORDERS - 1).lineCount());
+
+        double ratio = (double) legacyBytes / Math.max(1, compactBytes);
+        assertTrue(ratio >= MIN_RATIO, String.format("legacy %d bytes/order, compact %d bytes/order (%.1fx)",
+                legacyBytes / ORDERS, compactBytes / ORDERS, ratio));
+    }
+
+    private static Book bookFor(Book[] catalog, int order, int line) {
+        return catalog[(order * 7 + line * 131) % catalog.length];
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
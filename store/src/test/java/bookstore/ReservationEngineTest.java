@@ -0,0 +1,177 @@
+package bookstore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationEngineTest {
+
+    private ReservationEngine engine;
+
+    @AfterEach
+    void stop() {
+        if (engine != null) engine.shutdown();
+    }
+
+    @Test
+    void reserveMovesUnitsFromAvailableToReserved() {
+        engine = new ReservationEngine(60_000);
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+
+        ReservationEngine.Hold hold = engine.reserve(book, 2);
+
+        assertNotNull(hold);
+        assertTrue(hold.isActive());
+        assertEquals(3, book.getStock());
+        assertEquals(2, book.getReserved());
+        assertEquals(5, book.getOnHand());
+    }
+
+    @Test
+    void reserveFailsWhenNotEnoughIsAvailable() {
+        engine = new ReservationEngine(60_000);
+        Book book = Book.of(1, "Title", "Author", 100, 1);
+
+        assertNotNull(engine.reserve(book, 1));
+        assertNull(engine.reserve(book, 1));
+        assertEquals(0, book.getStock());
+        assertEquals(1, book.getReserved());
+        assertThrows(IllegalArgumentException.class, () -> engine.reserve(book, 0));
+    }
+
+    @Test
+    void releaseGivesUnitsBackOnlyOnce() {
+        engine = new ReservationEngine(60_000);
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+        ReservationEngine.Hold hold = engine.reserve(book, 2);
+
+        assertTrue(engine.release(hold));
+        assertFalse(engine.release(hold));
+        assertFalse(engine.commit(hold));
+        assertEquals(5, book.getStock());
+        assertEquals(0, book.getReserved());
+    }
+
+    @Test
+    void commitSellsTheHeldUnits() {
+        engine = new ReservationEngine(60_000);
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+        ReservationEngine.Hold hold = engine.reserve(book, 2);
+
+        assertTrue(engine.commit(hold));
+        assertFalse(engine.release(hold));
+        assertEquals(3, book.getStock());
+        assertEquals(0, book.getReserved());
+        assertEquals(3, book.getOnHand());
+    }
+
+    @Test
+    void refundPutsSoldUnitsBackOnlyOnce() {
+        engine = new ReservationEngine(60_000);
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+        ReservationEngine.Hold hold = engine.reserve(book, 2);
+
+        assertFalse(engine.refund(hold), "only a committed hold can be refunded");
+        assertTrue(engine.commit(hold));
+        assertTrue(engine.refund(hold));
+        assertFalse(engine.refund(hold));
+        assertEquals(5, book.getStock());
+        assertEquals(0, book.getReserved());
+        assertEquals(0, engine.committedCount());
+        assertEquals(1, engine.releasedCount());
+    }
+
+    @Test
+    void expiredHoldReturnsItsUnitsAndTellsTheListener() throws InterruptedException {
+        engine = new ReservationEngine(50);
+        CountDownLatch expired = new CountDownLatch(1);
+        List<ReservationEngine.Hold> seen = new ArrayList<>();
+        engine.setExpiryListener(hold -> {
+            synchronized (seen) {
+                seen.add(hold);
+            }
+            expired.countDown();
+        });
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+        ReservationEngine.Hold hold = engine.reserve(book, 2);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(hold.isExpired());
+        assertEquals(5, book.getStock());
+        assertEquals(0, book.getReserved());
+        assertFalse(engine.commit(hold), "an expired hold can't be sold");
+        assertFalse(engine.release(hold), "an expired hold can't be given back twice");
+        assertEquals(5, book.getStock());
+        synchronized (seen) {
+            assertEquals(1, seen.size());
+        }
+        assertEquals(1, engine.expiredCount());
+    }
+
+    @Test
+    void releasedHoldDoesNotExpire() throws InterruptedException {
+        engine = new ReservationEngine(50);
+        AtomicInteger expired = new AtomicInteger();
+        engine.setExpiryListener(hold -> expired.incrementAndGet());
+        Book book = Book.of(1, "Title", "Author", 100, 5);
+
+        assertTrue(engine.release(engine.reserve(book, 1)));
+        Thread.sleep(300);
+
+        assertEquals(0, expired.get());
+        assertEquals(5, book.getStock());
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws InterruptedException {
+        engine = new ReservationEngine(60_000);
+        int stock = 1_000;
+        int threads = 8;
+        Book book = Book.of(1, "Title", "Author", 100, stock);
+        AtomicInteger granted = new AtomicInteger();
+        List<ReservationEngine.Hold> holds = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Every thread asks for more than its share; some are refused
+                for (int i = 0; i < stock / threads * 2; i++) {
+                    ReservationEngine.Hold hold = engine.reserve(book, 1);
+                    if (hold == null) continue;
+                    granted.incrementAndGet();
+                    synchronized (holds) {
+                        holds.add(hold);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+
+        assertEquals(stock, granted.get());
+        assertEquals(0, book.getStock());
+        assertEquals(stock, book.getReserved());
+        for (ReservationEngine.Hold hold : holds) assertTrue(engine.release(hold));
+        assertEquals(stock, book.getStock());
+        assertEquals(0, book.getReserved());
+    }
+}
@@ -0,0 +1,76 @@
+package bookstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The sales report is read from running totals: it agrees with a pass over
+ * every order, and takes next to no time however many orders there are. A
+ * scaled-down run of SalesReportBenchmark.
+ */
+class SalesAnalyticsTest {
+
+    private static final int ORDERS = 200_000;
+    private static final int USERS = 5_000;
+    private static final int BOOKS = 20_000;
+    private static final int TOP = 20;
+    private static final int REPORTS = 50;
+    private static final double REPORT_BUDGET_MS = 50;
+
+    @Test
+    void reportMatchesAScanAndStaysFast() {
+        Random rnd = new Random(11);
+        OrderStore store = new OrderStore();
+        long now = System.currentTimeMillis();
+        long span = 60 * 24 * 3_600_000L;
+        long units = 0, paise = 0;
+        Map<Integer, Long> bookPaise = new HashMap<>();
+        for (int n = 0; n < ORDERS; n++) {
+            int count = 1 + rnd.nextInt(3);
+            int[] lines = new int[count * 3];
+            for (int i = 0; i < count; i++) {
+                // A few books sell far more than the rest
+                int id = rnd.nextInt(4) == 0 ? 1 + rnd.nextInt(100) : 1 + rnd.nextInt(BOOKS);
+                int qty = 1 + rnd.nextInt(2);
+                int price = 10_000 + id % 90_000;
+                lines[i * 3] = id;
+                lines[i * 3 + 1] = qty;
+                lines[i * 3 + 2] = price;
+                units += qty;
+                paise += (long) qty * price;
+                bookPaise.merge(id, (long) qty * price, Long::sum);
+            }
+            store.add(new Order("user" + rnd.nextInt(USERS), now - span + span / ORDERS * n, lines));
+        }
+
+        long[] nanos = new long[REPORTS];
+        SalesAnalytics.Report report = null;
+        for (int i = 0; i < REPORTS; i++) {
+            long start = System.nanoTime();
+            report = store.sales().report(TOP, 30, 24, now);
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        assertEquals(ORDERS, report.orders);
+        assertEquals(units, report.units);
+        assertEquals(paise, report.paise);
+        assertEquals(bookPaise.size(), report.books);
+        assertEquals(TOP, report.topBooks.size());
+        long best = bookPaise.values().stream().mapToLong(Long::longValue).max().getAsLong();
+        assertEquals(best, report.topBooks.get(0).paise);
+        for (SalesAnalytics.Row row : report.topBooks) {
+            assertEquals(bookPaise.get((int) row.key).longValue(), row.paise);
+        }
+
+        Arrays.sort(nanos);
+        double p50 = nanos[REPORTS / 2] / 1e6;
+        assertTrue(p50 < REPORT_BUDGET_MS, String.format("report took %.1f ms at %,d orders", p50, ORDERS));
+    }
+}